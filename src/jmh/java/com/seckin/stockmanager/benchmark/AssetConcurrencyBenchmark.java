@@ -0,0 +1,110 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.StockManagerApplication;
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.service.AssetService;
+import com.seckin.stockmanager.service.CustomerService;
+import com.seckin.stockmanager.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The paths that read asset rows before changing them under each asset concurrency mode:
+ * an order basket reserving from the TRY row and an admin match settling the TRY and
+ * stock rows. Orders are BUY orders at the lowest prize so they rest in the book until
+ * they are matched. With low contention every call picks one of many customers, with
+ * high contention all threads share 2 customers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+@Fork(1)
+public class AssetConcurrencyBenchmark {
+    private static final BigDecimal PRIZE = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class ConcurrencyState {
+        @Param({"pessimistic", "optimistic", "adaptive"})
+        public String concurrencyMode;
+
+        @Param({"low", "high"})
+        public String contention;
+
+        public ConfigurableApplicationContext context;
+        public OrderService orderService;
+        public String[] usernames;
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = new SpringApplicationBuilder(StockManagerApplication.class)
+                    .properties("server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                            "stockmanager.asset.concurrency-mode=" + concurrencyMode,
+                            "stockmanager.retry.max-attempts=50",
+                            "logging.level.root=WARN")
+                    .run();
+            orderService = context.getBean(OrderService.class);
+            AssetService assetService = context.getBean(AssetService.class);
+            CustomerService customerService = context.getBean(CustomerService.class);
+            usernames = new String[contention.equals("high") ? 2 : 1000];
+            for (int i = 0; i < usernames.length; i++) {
+                usernames[i] = "customer" + i;
+                customerService.addNewCustomer(usernames[i], "password");
+                assetService.depositMoney(usernames[i], new BigDecimal("1000000000.00"));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+
+        public String randomUsername() {
+            return usernames[ThreadLocalRandom.current().nextInt(usernames.length)];
+        }
+    }
+
+    private static OrderDTO buyOrder(ConcurrencyState state) {
+        OrderDTO orderDto = new OrderDTO();
+        orderDto.customerUserName = state.randomUsername();
+        orderDto.assetName = "STOCK";
+        orderDto.side = OrderSide.BUY;
+        orderDto.orderSize = BigDecimal.ONE;
+        orderDto.prize = PRIZE;
+        return orderDto;
+    }
+
+    @Benchmark
+    public void createOrderBasket(ConcurrencyState state) {
+        state.orderService.createOrders(List.of(buyOrder(state), buyOrder(state)));
+    }
+
+    @Benchmark
+    public void createThenMatchOrder(ConcurrencyState state) {
+        OrderDTO order = state.orderService.createOrder(buyOrder(state));
+        state.orderService.matchOrder(order.id);
+    }
+}
@@ -0,0 +1,33 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.dto.AssetDTO;
+import com.seckin.stockmanager.dto.PageDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class AssetServiceBenchmark {
+    private static final BigDecimal DEPOSIT_AMOUNT = new BigDecimal("1.00");
+
+    @Benchmark
+    public void depositMoney(StockManagerState state) {
+        state.assetService.depositMoney(state.usernames[state.randomCustomer()], DEPOSIT_AMOUNT);
+    }
+
+    @Benchmark
+    public PageDTO<AssetDTO> listAssets(StockManagerState state) {
+        return state.assetService.listAssets(state.usernames[state.randomCustomer()], null, null, null);
+    }
+}
@@ -0,0 +1,51 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderDtoMappingBenchmark {
+    private Order order;
+    private OrderDTO orderDto;
+
+    @Setup
+    public void setUp() {
+        order = new Order(1L, "AAPL", OrderSide.BUY, 15050, 10, OrderStatus.PENDING);
+        order.setId(1L);
+        order.setCreateDate(Instant.now());
+        orderDto = new OrderDTO(order, "customer", 2, 0);
+        orderDto.prize = new BigDecimal("150.50");
+        orderDto.orderSize = new BigDecimal("10");
+    }
+
+    @Benchmark
+    public OrderDTO toOrderDto() {
+        return new OrderDTO(order, "customer", 2, 0);
+    }
+
+    @Benchmark
+    public Order toOrder() {
+        return orderDto.toOrder(1L, 2, 0);
+    }
+}
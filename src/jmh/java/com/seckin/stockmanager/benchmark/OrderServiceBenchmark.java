@@ -0,0 +1,57 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.model.OrderSide;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservation and settlement paths of {@link com.seckin.stockmanager.service.OrderService}.
+ * Orders are BUY orders at the lowest prize so they rest in the book without matching.
+ * Match and delete need a PENDING order, they are measured together with the
+ * createOrder call that creates it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class OrderServiceBenchmark {
+    private static final BigDecimal PRIZE = new BigDecimal("0.01");
+
+    private static OrderDTO buyOrder(StockManagerState state, int customer) {
+        OrderDTO orderDto = new OrderDTO();
+        orderDto.customerUserName = state.usernames[customer];
+        orderDto.assetName = state.randomAssetName();
+        orderDto.side = OrderSide.BUY;
+        orderDto.orderSize = BigDecimal.ONE;
+        orderDto.prize = PRIZE;
+        return orderDto;
+    }
+
+    @Benchmark
+    public OrderDTO createOrder(StockManagerState state) {
+        return state.orderService.createOrder(buyOrder(state, state.randomCustomer()));
+    }
+
+    @Benchmark
+    public void createThenMatchOrder(StockManagerState state) {
+        OrderDTO order = state.orderService.createOrder(buyOrder(state, state.randomCustomer()));
+        state.orderService.matchOrder(order.id);
+    }
+
+    @Benchmark
+    public void createThenDeleteOrder(StockManagerState state) {
+        int customer = state.randomCustomer();
+        OrderDTO order = state.orderService.createOrder(buyOrder(state, customer));
+        state.orderService.deleteOrder(order.id, state.authentications[customer]);
+    }
+}
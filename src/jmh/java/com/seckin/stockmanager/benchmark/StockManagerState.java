@@ -0,0 +1,94 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.StockManagerApplication;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.service.AssetService;
+import com.seckin.stockmanager.service.CustomerService;
+import com.seckin.stockmanager.service.OrderService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The application started on a fresh embedded H2 database and seeded with the given
+ * number of funded customers, each holding assetsPerCustomer stock assets.
+ */
+@State(Scope.Benchmark)
+public class StockManagerState {
+    private static final int INSERT_CHUNK_SIZE = 1000;
+
+    @Param({"100", "10000"})
+    public int customers;
+
+    @Param({"1", "20"})
+    public int assetsPerCustomer;
+
+    public ConfigurableApplicationContext context;
+    public OrderService orderService;
+    public AssetService assetService;
+    public String[] usernames;
+    public Authentication[] authentications;
+    public String[] assetNames;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(StockManagerApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+        orderService = context.getBean(OrderService.class);
+        assetService = context.getBean(AssetService.class);
+        CustomerService customerService = context.getBean(CustomerService.class);
+        AssetRepository assetRepository = context.getBean(AssetRepository.class);
+
+        assetNames = new String[assetsPerCustomer];
+        for (int i = 0; i < assetsPerCustomer; i++) {
+            assetNames[i] = "STOCK" + i;
+        }
+        usernames = new String[customers];
+        authentications = new Authentication[customers];
+        List<Asset> assets = new ArrayList<>(INSERT_CHUNK_SIZE);
+        for (int i = 0; i < customers; i++) {
+            usernames[i] = "customer" + i;
+            authentications[i] = new UsernamePasswordAuthenticationToken(usernames[i], null);
+            long customerId = customerService.addNewCustomer(usernames[i], "password").id;
+            assetService.depositMoney(usernames[i], new BigDecimal("1000000000.00"));
+            for (String assetName : assetNames) {
+                assets.add(new Asset(customerId, assetName, 1_000_000_000L, 1_000_000_000L));
+            }
+            if (assets.size() >= INSERT_CHUNK_SIZE) {
+                assetRepository.saveAll(assets);
+                assets.clear();
+            }
+        }
+        assetRepository.saveAll(assets);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public int randomCustomer() {
+        return ThreadLocalRandom.current().nextInt(customers);
+    }
+
+    public String randomAssetName() {
+        return assetNames[ThreadLocalRandom.current().nextInt(assetNames.length)];
+    }
+}
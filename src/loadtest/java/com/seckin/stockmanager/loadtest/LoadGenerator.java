@@ -0,0 +1,290 @@
+package com.seckin.stockmanager.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed loop HTTP load driver for a running application. Registers and funds the
+ * customers, then every worker thread sends requests of the configured mix until the
+ * duration is over and the latency of every endpoint is recorded in an HdrHistogram.
+ * <p>
+ * Configured with system properties, see {@link Config}. Run with
+ * {@code ./gradlew loadTest -Dloadtest.customers=200 -Dloadtest.threads=32}.
+ */
+public class LoadGenerator {
+    private static final Pattern ORDER_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final String[] ASSET_NAMES = {"AAPL", "MSFT", "GOOG", "AMZN", "TSLA"};
+    // latencies are recorded in microseconds up to one minute
+    private static final long HIGHEST_LATENCY = 60_000_000L;
+
+    enum Endpoint {
+        CREATE_ORDER, DELETE_ORDER, MATCH_ORDER, LIST_ASSETS
+    }
+
+    record Config(URI baseUrl, int customers, int threads, Duration warmup, Duration duration,
+                  Map<Endpoint, Integer> mix, String adminUsername, String adminPassword,
+                  Path reportDirectory) {
+
+        static Config fromSystemProperties() {
+            Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+            mix.put(Endpoint.CREATE_ORDER, Integer.getInteger("loadtest.mix.create", 60));
+            mix.put(Endpoint.DELETE_ORDER, Integer.getInteger("loadtest.mix.delete", 15));
+            mix.put(Endpoint.MATCH_ORDER, Integer.getInteger("loadtest.mix.match", 10));
+            mix.put(Endpoint.LIST_ASSETS, Integer.getInteger("loadtest.mix.list", 15));
+            return new Config(
+                    URI.create(System.getProperty("loadtest.baseUrl", "http://localhost:8080")),
+                    Integer.getInteger("loadtest.customers", 100),
+                    Integer.getInteger("loadtest.threads", 16),
+                    Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 10)),
+                    Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 60)),
+                    mix,
+                    System.getProperty("loadtest.adminUsername", "admin"),
+                    System.getProperty("loadtest.adminPassword", "password"),
+                    Path.of(System.getProperty("loadtest.reportDirectory", "build/reports/loadtest")));
+        }
+    }
+
+    /**
+     * Latency and outcome of the requests of one endpoint.
+     */
+    static class EndpointStats {
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder lockConflicts = new LongAdder();
+        final LongAdder ioErrors = new LongAdder();
+
+        void reset() {
+            latencies.reset();
+            clientErrors.reset();
+            serverErrors.reset();
+            lockConflicts.reset();
+            ioErrors.reset();
+        }
+    }
+
+    private final Config config;
+    private final HttpClient httpClient;
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+    // PENDING orders that can still be deleted or matched, with their owner
+    private final ConcurrentLinkedQueue<long[]> pendingOrders = new ConcurrentLinkedQueue<>();
+    private final String[] usernames;
+    private final String[] authorizations;
+    private final String adminAuthorization;
+
+    LoadGenerator(Config config) {
+        this.config = config;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Runnable::run)
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        usernames = new String[config.customers()];
+        authorizations = new String[config.customers()];
+        for (int i = 0; i < config.customers(); i++) {
+            usernames[i] = "load-" + runId + "-" + i;
+            authorizations[i] = basic(usernames[i], "password");
+        }
+        adminAuthorization = basic(config.adminUsername(), config.adminPassword());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator(Config.fromSystemProperties());
+        generator.setUp();
+        generator.run();
+        generator.report(System.out);
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString(
+                (username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    void setUp() throws IOException, InterruptedException {
+        System.out.printf("Registering and funding %d customers on %s%n", config.customers(),
+                config.baseUrl());
+        for (int i = 0; i < config.customers(); i++) {
+            expectOk(send("POST", "/register", null,
+                    "{\"username\":\"" + usernames[i] + "\",\"password\":\"password\"}"));
+            expectOk(send("POST", "/assets/deposit", authorizations[i],
+                    "{\"customerUserName\":\"" + usernames[i] + "\",\"amount\":1000000000}"));
+        }
+    }
+
+    private static void expectOk(HttpResponse<String> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Setup request " + response.request().uri()
+                    + " failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    void run() throws InterruptedException {
+        long warmupEnd = System.nanoTime() + config.warmup().toNanos();
+        long end = warmupEnd + config.duration().toNanos();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < config.threads(); i++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    execute(nextEndpoint());
+                }
+            }, "load-worker-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        Thread.sleep(config.warmup().toMillis());
+        stats.values().forEach(EndpointStats::reset);
+        System.out.printf("Warmup done, measuring for %s%n", config.duration());
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private Endpoint nextEndpoint() {
+        int total = config.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Endpoint, Integer> entry : config.mix().entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return Endpoint.CREATE_ORDER;
+    }
+
+    private void execute(Endpoint endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customer = random.nextInt(config.customers());
+        long[] pendingOrder = null;
+        String method;
+        String path;
+        String authorization;
+        String body = null;
+        switch (endpoint) {
+            case CREATE_ORDER -> {
+                method = "POST";
+                path = "/orders";
+                authorization = authorizations[customer];
+                body = "{\"customerUserName\":\"" + usernames[customer] + "\",\"assetName\":\""
+                        + ASSET_NAMES[random.nextInt(ASSET_NAMES.length)]
+                        + "\",\"side\":\"BUY\",\"orderSize\":1,\"prize\":"
+                        + (1 + random.nextInt(100)) + "}";
+            }
+            case DELETE_ORDER, MATCH_ORDER -> {
+                pendingOrder = pendingOrders.poll();
+                if (pendingOrder == null) {
+                    // nothing to delete or match yet, create an order instead
+                    execute(Endpoint.CREATE_ORDER);
+                    return;
+                }
+                boolean delete = endpoint == Endpoint.DELETE_ORDER;
+                method = delete ? "DELETE" : "POST";
+                path = (delete ? "/orders/" : "/orders/match/") + pendingOrder[0];
+                authorization = delete ? authorizations[(int) pendingOrder[1]] : adminAuthorization;
+            }
+            default -> {
+                method = "GET";
+                path = "/assets/list";
+                authorization = authorizations[customer];
+                body = "{\"customerUserName\":\"" + usernames[customer] + "\"}";
+            }
+        }
+
+        EndpointStats endpointStats = stats.get(endpoint);
+        long startTime = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = send(method, path, authorization, body);
+        } catch (IOException e) {
+            endpointStats.ioErrors.increment();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        endpointStats.latencies.recordValue(
+                Math.min((System.nanoTime() - startTime) / 1000, HIGHEST_LATENCY));
+        int status = response.statusCode();
+        if (status == 409 || (status >= 500 && isLockFailure(response.body()))) {
+            endpointStats.lockConflicts.increment();
+        }
+        if (status >= 500) {
+            endpointStats.serverErrors.increment();
+        } else if (status >= 400) {
+            endpointStats.clientErrors.increment();
+        } else if (endpoint == Endpoint.CREATE_ORDER) {
+            Matcher matcher = ORDER_ID.matcher(response.body());
+            if (matcher.find()) {
+                pendingOrders.add(new long[]{Long.parseLong(matcher.group(1)), customer});
+            }
+        }
+    }
+
+    private static boolean isLockFailure(String body) {
+        return body.contains("another transaction") || body.contains("lock");
+    }
+
+    private HttpResponse<String> send(String method, String path, String authorization, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(config.baseUrl().resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() :
+                        HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    void report(PrintStream out) throws IOException {
+        double seconds = config.duration().toNanos() / 1e9;
+        out.printf("%n%-14s %9s %9s %9s %9s %9s %9s %7s %7s %7s %7s%n", "endpoint", "requests",
+                "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "5xx", "lock", "io");
+        Files.createDirectories(config.reportDirectory());
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            Histogram latencies = endpointStats.latencies;
+            out.printf("%-14s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %7d %7d%n",
+                    entry.getKey(), latencies.getTotalCount(), latencies.getTotalCount() / seconds,
+                    latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0,
+                    latencies.getMaxValue() / 1000.0,
+                    endpointStats.clientErrors.sum(), endpointStats.serverErrors.sum(),
+                    endpointStats.lockConflicts.sum(), endpointStats.ioErrors.sum());
+            Path histogramFile = config.reportDirectory()
+                    .resolve(entry.getKey().name().toLowerCase() + ".hgrm");
+            try (PrintStream histogramOut = new PrintStream(Files.newOutputStream(histogramFile))) {
+                // values in milliseconds
+                latencies.outputPercentileDistribution(histogramOut, 1000.0);
+            }
+        }
+        out.printf("%nPercentile distributions written to %s%n", config.reportDirectory());
+    }
+}
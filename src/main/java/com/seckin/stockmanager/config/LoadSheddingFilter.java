@@ -0,0 +1,52 @@
+package com.seckin.stockmanager.config;
+
+import com.seckin.stockmanager.service.AdmissionControl;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Runs before HTTP Basic authentication, so a request shed on overload answers
+ * {@code 503} with {@code Retry-After: 1} without loading the customer first. The slot
+ * of {@link AdmissionControl} is held until the rest of the chain completed. Actuator
+ * endpoints are left out, health checks and metrics have to work especially under load.
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final AdmissionControl admissionControl;
+
+    public LoadSheddingFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getServletPath().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean entered;
+        try {
+            entered = admissionControl.tryEnter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entered = false;
+        }
+        if (!entered) {
+            AdmissionControlFilter.reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            admissionControl.exit();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.seckin.stockmanager.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.mvc.condition.RequestCondition;
+
+import java.util.Enumeration;
+
+/**
+ * Matches requests preferring {@code respond-async}. The {@code Prefer} header (RFC 7240)
+ * may be sent several times and holds comma separated preferences, each a
+ * case-insensitive token with an optional value and parameters, so the header can not be
+ * matched as a whole with {@code headers = "Prefer=respond-async"}. A handler with this
+ * condition is more specific than the same mapping without it.
+ */
+public class RespondAsyncCondition implements RequestCondition<RespondAsyncCondition> {
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    @Override
+    public RespondAsyncCondition combine(RespondAsyncCondition other) {
+        return this;
+    }
+
+    @Override
+    public RespondAsyncCondition getMatchingCondition(HttpServletRequest request) {
+        // a CORS pre-flight request carries no Prefer header of the actual request
+        return CorsUtils.isPreFlightRequest(request) || prefersRespondAsync(request) ? this : null;
+    }
+
+    @Override
+    public int compareTo(RespondAsyncCondition other, HttpServletRequest request) {
+        return 0;
+    }
+
+    private static boolean prefersRespondAsync(HttpServletRequest request) {
+        Enumeration<String> headers = request.getHeaders(PREFER_HEADER);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String preference : headers.nextElement().split(",")) {
+                // the token ends at its value or at the first parameter
+                String token = preference.split("[=;]", 2)[0].trim();
+                if (token.equalsIgnoreCase(RESPOND_ASYNC)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
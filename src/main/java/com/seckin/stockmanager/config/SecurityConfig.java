@@ -1,6 +1,7 @@
 package com.seckin.stockmanager.config;
 
-import com.seckin.stockmanager.model.Customer;
+import com.seckin.stockmanager.service.AdmissionControl;
+import com.seckin.stockmanager.service.CustomerPrincipalCache.CustomerPrincipal;
 import com.seckin.stockmanager.service.CustomerService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +11,7 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -18,9 +20,11 @@ import static org.springframework.security.config.Customizer.withDefaults;
 public class SecurityConfig {
 
     private final CustomerService customerService;
+    private final AdmissionControl admissionControl;
 
-    public SecurityConfig(CustomerService customerService) {
+    public SecurityConfig(CustomerService customerService, AdmissionControl admissionControl) {
         this.customerService = customerService;
+        this.admissionControl = admissionControl;
     }
 
     @Bean
@@ -31,9 +35,15 @@ public class SecurityConfig {
                         authorizeHttpRequests
                                 .requestMatchers( "/register").permitAll()
                                 .requestMatchers("/orders/match/**").hasRole("ADMIN")
+                                .requestMatchers("/orders/bulk/**").hasRole("ADMIN")
+                                .requestMatchers("/assets/valuation/all").hasRole("ADMIN")
+                                .requestMatchers("/actuator/**").hasRole("ADMIN")
                                 .anyRequest().authenticated()
                 )
                 .httpBasic(withDefaults())  // HTTP Basic Authentication
+                // not beans, Spring Boot would register them for every request a second time
+                .addFilterBefore(new LoadSheddingFilter(admissionControl), BasicAuthenticationFilter.class)
+                .addFilterAfter(new AdmissionControlFilter(admissionControl), BasicAuthenticationFilter.class)
                 .headers((headers) ->
                         headers
                                 .frameOptions((frameOptions) -> frameOptions.disable())
@@ -45,14 +55,14 @@ public class SecurityConfig {
     @Bean
     public UserDetailsService userDetailsService() {
         return username -> {
-            Customer customer = customerService.getCustomer(username);
+            CustomerPrincipal customer = customerService.getPrincipal(username);
             if (customer == null) {
                 throw new UsernameNotFoundException("Customer not found");
             }
             return User.builder()
-                    .username(customer.getUsername())
-                    .password(customer.getPassword())
-                    .roles(customer.getRole().toString())
+                    .username(customer.username())
+                    .password(customer.password())
+                    .roles(customer.role().toString())
                     .build();
         };
     }
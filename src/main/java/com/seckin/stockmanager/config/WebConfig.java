@@ -0,0 +1,32 @@
+package com.seckin.stockmanager.config;
+
+import com.seckin.stockmanager.controller.RespondAsync;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.servlet.mvc.condition.RequestCondition;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+
+@Configuration
+public class WebConfig {
+
+    // maps handlers annotated with @RespondAsync through RespondAsyncCondition
+    @Bean
+    public WebMvcRegistrations respondAsyncRegistrations() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+                return new RequestMappingHandlerMapping() {
+                    @Override
+                    protected RequestCondition<?> getCustomMethodCondition(Method method) {
+                        return AnnotatedElementUtils.hasAnnotation(method, RespondAsync.class) ?
+                                new RespondAsyncCondition() : null;
+                    }
+                };
+            }
+        };
+    }
+}
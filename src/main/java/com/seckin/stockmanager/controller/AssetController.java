@@ -1,12 +1,23 @@
 package com.seckin.stockmanager.controller;
 
 import com.seckin.stockmanager.dto.AssetDTO;
+import com.seckin.stockmanager.dto.CommandDTO;
+import com.seckin.stockmanager.dto.CustomerValuationDTO;
 import com.seckin.stockmanager.dto.DepositRequestDTO;
 import com.seckin.stockmanager.dto.ListAssetRequestDTO;
+import com.seckin.stockmanager.dto.PageDTO;
+import com.seckin.stockmanager.dto.PortfolioValuationDTO;
 import com.seckin.stockmanager.dto.WithdrawRequestDTO;
+import com.seckin.stockmanager.model.CommandType;
+import com.seckin.stockmanager.service.AssetCommandExecutor;
 import com.seckin.stockmanager.service.AssetService;
+import com.seckin.stockmanager.service.CommandService;
+import com.seckin.stockmanager.service.CustomerReadModel;
 import com.seckin.stockmanager.service.CustomerService;
+import com.seckin.stockmanager.service.IdempotencyService;
+import com.seckin.stockmanager.service.ValuationService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -19,32 +30,107 @@ import java.util.List;
 public class AssetController {
 
     private AssetService assetService;
+    private AssetCommandExecutor assetCommandExecutor;
     private CustomerService customerService;
+    private CommandService commandService;
+    private ValuationService valuationService;
+    private CustomerReadModel readModel;
+    private IdempotencyService idempotencyService;
 
-    public AssetController(AssetService assetService, CustomerService customerService) {
+    public AssetController(AssetService assetService, AssetCommandExecutor assetCommandExecutor,
+                           CustomerService customerService, CommandService commandService,
+                           ValuationService valuationService, CustomerReadModel readModel,
+                           IdempotencyService idempotencyService) {
         this.assetService = assetService;
+        this.assetCommandExecutor = assetCommandExecutor;
         this.customerService=customerService;
+        this.commandService = commandService;
+        this.valuationService = valuationService;
+        this.readModel = readModel;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/deposit")
-    public ResponseEntity<Void> deposit(@Valid @RequestBody DepositRequestDTO request, Authentication authentication) {
+    public ResponseEntity<Void> deposit(@Valid @RequestBody DepositRequestDTO request,
+                                        @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                        Authentication authentication) {
         this.customerService.validateUserAuthenticated(request.customerUserName,authentication);
-        assetService.depositMoney(request.customerUserName, request.amount);
-        return ResponseEntity.ok().build();
+        idempotencyService.execute(idempotencyKey, request.customerUserName, "POST /assets/deposit",
+                request, Void.class, () -> {
+                    assetCommandExecutor.depositMoney(request.customerUserName, request.amount);
+                    return null;
+                });
+        return ResponseEntity.ok().headers(consistencyToken(request.customerUserName)).build();
+    }
+
+    @PostMapping("/deposit")
+    @RespondAsync
+    public ResponseEntity<CommandDTO> depositAsync(@Valid @RequestBody DepositRequestDTO request,
+                                                   @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                   Authentication authentication) {
+        this.customerService.validateUserAuthenticated(request.customerUserName,authentication);
+        Long commandId = idempotencyService.execute(idempotencyKey, request.customerUserName,
+                "POST /assets/deposit respond-async", request, Long.class,
+                () -> commandService.submit(CommandType.DEPOSIT, request.customerUserName, request).id);
+        return CommandController.accepted(commandService.getCommand(commandId, authentication));
+    }
+
+    @PostMapping("/withdraw")
+    public ResponseEntity<Void> withdraw(@Valid @RequestBody WithdrawRequestDTO request,
+                                         @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                         Authentication authentication){
+        this.customerService.validateUserAuthenticated(request.customerUserName,authentication);
+        idempotencyService.execute(idempotencyKey, request.customerUserName, "POST /assets/withdraw",
+                request, Void.class, () -> {
+                    assetCommandExecutor.withdrawMoney(request.customerUserName, request.amount, request.iban);
+                    return null;
+                });
+        return ResponseEntity.ok().headers(consistencyToken(request.customerUserName)).build();
     }
 
     @PostMapping("/withdraw")
-    public ResponseEntity<Void> withdraw(@Valid @RequestBody WithdrawRequestDTO request,Authentication authentication){
+    @RespondAsync
+    public ResponseEntity<CommandDTO> withdrawAsync(@Valid @RequestBody WithdrawRequestDTO request,
+                                                    @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                    Authentication authentication) {
         this.customerService.validateUserAuthenticated(request.customerUserName,authentication);
-        assetService.withdrawMoney(request.customerUserName,request.amount,request.iban);
-        return ResponseEntity.ok().build();
+        Long commandId = idempotencyService.execute(idempotencyKey, request.customerUserName,
+                "POST /assets/withdraw respond-async", request, Long.class,
+                () -> commandService.submit(CommandType.WITHDRAW, request.customerUserName, request).id);
+        return CommandController.accepted(commandService.getCommand(commandId, authentication));
     }
 
     @GetMapping("/list")
-    public ResponseEntity<List<AssetDTO>> listAssets(@Valid @RequestBody ListAssetRequestDTO request,Authentication authentication){
+    public ResponseEntity<PageDTO<AssetDTO>> listAssets(@Valid @RequestBody ListAssetRequestDTO request,
+                                                        @RequestHeader(value = CustomerReadModel.CONSISTENCY_TOKEN_HEADER, required = false) Long consistencyToken,
+                                                        Authentication authentication){
         this.customerService.validateUserAuthenticated(request.customerUserName,authentication);
-        List<AssetDTO> result=assetService.listAssets(request.customerUserName,
-                request.assetName);
+        PageDTO<AssetDTO> result=assetService.listAssets(request.customerUserName,
+                request.assetName, request.cursor, request.pageSize, consistencyToken);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
+
+    @GetMapping("/valuation")
+    public ResponseEntity<PortfolioValuationDTO> getValuation(@RequestParam String customerUserName,
+                                                              Authentication authentication) {
+        this.customerService.validateUserAuthenticated(customerUserName, authentication);
+        return ResponseEntity.ok(valuationService.getValuation(customerUserName));
+    }
+
+    @GetMapping("/valuation/all")
+    public ResponseEntity<List<CustomerValuationDTO>> getValuations() {
+        return ResponseEntity.ok(valuationService.getValuations());
+    }
+
+    /**
+     * The read model token of the customer after a write, see {@link CustomerReadModel}.
+     */
+    private HttpHeaders consistencyToken(String customerUserName) {
+        HttpHeaders headers = new HttpHeaders();
+        Long token = readModel.getConsistencyToken(customerUserName);
+        if (token != null) {
+            headers.set(CustomerReadModel.CONSISTENCY_TOKEN_HEADER, token.toString());
+        }
+        return headers;
+    }
 }
@@ -0,0 +1,35 @@
+package com.seckin.stockmanager.controller;
+
+import com.seckin.stockmanager.dto.CommandDTO;
+import com.seckin.stockmanager.service.CommandService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/commands")
+public class CommandController {
+    private final CommandService commandService;
+
+    public CommandController(CommandService commandService) {
+        this.commandService = commandService;
+    }
+
+    @GetMapping("/{commandId}")
+    public ResponseEntity<CommandDTO> getCommand(@PathVariable Long commandId, Authentication authentication) {
+        return new ResponseEntity<>(commandService.getCommand(commandId, authentication), HttpStatus.OK);
+    }
+
+    /**
+     * Response of an endpoint called with "Prefer: respond-async", the outcome is read
+     * from the command resource.
+     */
+    static ResponseEntity<CommandDTO> accepted(CommandDTO command) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/commands/" + command.id))
+                .body(command);
+    }
+}
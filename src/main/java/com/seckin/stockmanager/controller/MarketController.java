@@ -0,0 +1,37 @@
+package com.seckin.stockmanager.controller;
+
+import com.seckin.stockmanager.dto.CandleDTO;
+import com.seckin.stockmanager.dto.MarketDepthDTO;
+import com.seckin.stockmanager.service.MarketDataService;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/market")
+@Validated
+public class MarketController {
+    private final MarketDataService marketDataService;
+
+    public MarketController(MarketDataService marketDataService) {
+        this.marketDataService = marketDataService;
+    }
+
+    @GetMapping("/{assetName}/depth")
+    public ResponseEntity<MarketDepthDTO> getDepth(@PathVariable String assetName,
+                                                   @RequestParam(defaultValue = "10")
+                                                   @Min(value = 1, message = "levels must be at least 1") int levels) {
+        return ResponseEntity.ok(marketDataService.getDepth(assetName, levels));
+    }
+
+    @GetMapping("/{assetName}/candles")
+    public ResponseEntity<List<CandleDTO>> getCandles(@PathVariable String assetName,
+                                                      @RequestParam(defaultValue = "1m") String interval,
+                                                      @RequestParam(defaultValue = "100")
+                                                      @Min(value = 1, message = "limit must be at least 1") int limit) {
+        return ResponseEntity.ok(marketDataService.getCandles(assetName, interval, limit));
+    }
+}
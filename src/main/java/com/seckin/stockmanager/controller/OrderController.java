@@ -1,14 +1,29 @@
 package com.seckin.stockmanager.controller;
 
+import com.seckin.stockmanager.dto.BatchOrderRequestDTO;
+import com.seckin.stockmanager.dto.BatchOrderResultDTO;
+import com.seckin.stockmanager.dto.BulkOrderRequestDTO;
+import com.seckin.stockmanager.dto.CommandDTO;
 import com.seckin.stockmanager.dto.ListOrderRequestDTO;
 import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.dto.OrderExportFormat;
+import com.seckin.stockmanager.dto.PageDTO;
+import com.seckin.stockmanager.model.CommandType;
+import com.seckin.stockmanager.service.BulkOrderService;
+import com.seckin.stockmanager.service.CommandService;
+import com.seckin.stockmanager.service.CustomerReadModel;
 import com.seckin.stockmanager.service.CustomerService;
+import com.seckin.stockmanager.service.IdempotencyService;
+import com.seckin.stockmanager.service.OrderExportService;
 import com.seckin.stockmanager.service.OrderService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -17,26 +32,101 @@ import java.util.List;
 public class OrderController {
     private final OrderService orderService;
     private final CustomerService customerService;
+    private final OrderExportService orderExportService;
+    private final CommandService commandService;
+    private final BulkOrderService bulkOrderService;
+    private final CustomerReadModel readModel;
+    private final IdempotencyService idempotencyService;
 
-    public OrderController(OrderService orderService,CustomerService customerService) {
+    public OrderController(OrderService orderService,CustomerService customerService,
+                           OrderExportService orderExportService, CommandService commandService,
+                           BulkOrderService bulkOrderService, CustomerReadModel readModel,
+                           IdempotencyService idempotencyService) {
         this.orderService = orderService;
         this.customerService=customerService;
+        this.orderExportService = orderExportService;
+        this.commandService = commandService;
+        this.bulkOrderService = bulkOrderService;
+        this.readModel = readModel;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping
-    public ResponseEntity<OrderDTO> createOrder(@Valid @RequestBody OrderDTO order, Authentication authentication) {
+    public ResponseEntity<OrderDTO> createOrder(@Valid @RequestBody OrderDTO order,
+                                                @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                Authentication authentication) {
         customerService.validateUserAuthenticated(order.customerUserName,authentication);
-        OrderDTO createdOrderDto = orderService.createOrder(order);
-        return new ResponseEntity<>(createdOrderDto, HttpStatus.CREATED);
+        OrderDTO createdOrderDto = idempotencyService.execute(idempotencyKey, order.customerUserName,
+                "POST /orders", order, OrderDTO.class, () -> orderService.createOrder(order));
+        return new ResponseEntity<>(createdOrderDto, consistencyToken(order.customerUserName),
+                HttpStatus.CREATED);
+    }
+
+    @PostMapping
+    @RespondAsync
+    public ResponseEntity<CommandDTO> createOrderAsync(@Valid @RequestBody OrderDTO order,
+                                                       @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                       Authentication authentication) {
+        customerService.validateUserAuthenticated(order.customerUserName,authentication);
+        // a repeated request answers with the current state of the command it queued first
+        Long commandId = idempotencyService.execute(idempotencyKey, order.customerUserName,
+                "POST /orders respond-async", order, Long.class,
+                () -> commandService.submit(CommandType.CREATE_ORDER, order.customerUserName, order).id);
+        return CommandController.accepted(commandService.getCommand(commandId, authentication));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchOrderResultDTO>> createOrders(@Valid @RequestBody BatchOrderRequestDTO request,
+                                                                  Authentication authentication) {
+        request.orders.stream().map(order -> order.customerUserName).distinct()
+                .forEach(customerUserName ->
+                        customerService.validateUserAuthenticated(customerUserName, authentication));
+        List<BatchOrderResultDTO> results = orderService.createOrders(request.orders);
+        HttpHeaders headers = new HttpHeaders();
+        request.orders.stream().map(order -> order.customerUserName).distinct()
+                .forEach(customerUserName -> headers.addAll(consistencyToken(customerUserName)));
+        return new ResponseEntity<>(results, headers, HttpStatus.OK);
     }
 
     @GetMapping("/list")
-    public ResponseEntity<List<OrderDTO>> listOrders(@Valid @RequestBody ListOrderRequestDTO listOrderRequestDTO,Authentication authentication) {
+    public ResponseEntity<PageDTO<OrderDTO>> listOrders(@Valid @RequestBody ListOrderRequestDTO listOrderRequestDTO,
+                                                       @RequestHeader(value = CustomerReadModel.CONSISTENCY_TOKEN_HEADER, required = false) Long consistencyToken,
+                                                       Authentication authentication) {
         customerService.validateUserAuthenticated(listOrderRequestDTO.customerUserName,authentication);
-        return new ResponseEntity<>(orderService.listOrders(listOrderRequestDTO),
+        return new ResponseEntity<>(orderService.listOrders(listOrderRequestDTO, consistencyToken),
                 HttpStatus.OK);
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam String customerUserName,
+                                                              @RequestParam(defaultValue = "NDJSON") OrderExportFormat format,
+                                                              Authentication authentication) {
+        customerService.validateUserAuthenticated(customerUserName, authentication);
+        StreamingResponseBody body = outputStream ->
+                orderExportService.exportOrders(customerUserName, format, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders."
+                        + format.getFileExtension() + "\"")
+                .body(body);
+    }
+
+    @PostMapping("/bulk/match")
+    public ResponseEntity<StreamingResponseBody> matchOrders(@Valid @RequestBody BulkOrderRequestDTO request) {
+        List<Long> orderIds = bulkOrderService.selectOrderIds(request);
+        StreamingResponseBody body = outputStream -> bulkOrderService.matchOrders(orderIds, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(OrderExportFormat.NDJSON.getContentType()))
+                .body(body);
+    }
+
+    @PostMapping("/bulk/cancel")
+    public ResponseEntity<StreamingResponseBody> cancelOrders(@Valid @RequestBody BulkOrderRequestDTO request) {
+        List<Long> orderIds = bulkOrderService.selectOrderIds(request);
+        StreamingResponseBody body = outputStream -> bulkOrderService.cancelOrders(orderIds, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(OrderExportFormat.NDJSON.getContentType()))
+                .body(body);
+    }
+
     @DeleteMapping("/{orderId}")
     public ResponseEntity<Void> deleteOrder(@PathVariable Long orderId,Authentication authentication) {
         orderService.deleteOrder(orderId,authentication);
@@ -48,4 +138,22 @@ public class OrderController {
         orderService.matchOrder(orderId);
         return ResponseEntity.ok().build();
     }
+
+    @PostMapping("/match/{orderId}")
+    @RespondAsync
+    public ResponseEntity<CommandDTO> matchOrderAsync(@PathVariable Long orderId, Authentication authentication){
+        return CommandController.accepted(commandService.submit(CommandType.MATCH_ORDER, authentication.getName(), orderId));
+    }
+
+    /**
+     * The read model token of the customer after a write, see {@link CustomerReadModel}.
+     */
+    private HttpHeaders consistencyToken(String customerUserName) {
+        HttpHeaders headers = new HttpHeaders();
+        Long token = readModel.getConsistencyToken(customerUserName);
+        if (token != null) {
+            headers.set(CustomerReadModel.CONSISTENCY_TOKEN_HEADER, token.toString());
+        }
+        return headers;
+    }
 }
@@ -0,0 +1,17 @@
+package com.seckin.stockmanager.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps the annotated handler only to requests whose {@code Prefer} header contains the
+ * {@code respond-async} preference, next to other preferences or parameters like
+ * {@code Prefer: respond-async, wait=10}. See
+ * {@link com.seckin.stockmanager.config.RespondAsyncCondition}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RespondAsync {
+}
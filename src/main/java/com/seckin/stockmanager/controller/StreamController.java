@@ -0,0 +1,22 @@
+package com.seckin.stockmanager.controller;
+
+import com.seckin.stockmanager.service.CustomerEventStream;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+public class StreamController {
+    private final CustomerEventStream customerEventStream;
+
+    public StreamController(CustomerEventStream customerEventStream) {
+        this.customerEventStream = customerEventStream;
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(Authentication authentication) {
+        return customerEventStream.subscribe(authentication.getName());
+    }
+}
@@ -1,6 +1,9 @@
 package com.seckin.stockmanager.dto;
 
 import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.FixedPoint;
+
+import java.math.BigDecimal;
 
 public class AssetDTO {
     public Long id;
@@ -9,15 +12,15 @@ public class AssetDTO {
 
     public String name;
 
-    public Double size;
+    public BigDecimal size;
 
-    public Double usableSize;
+    public BigDecimal usableSize;
 
-    public AssetDTO(Asset asset,String customerUserName){
+    public AssetDTO(Asset asset,String customerUserName,int scale){
         this.id=asset.getId();
         this.customerUserName=customerUserName;
         this.name= asset.getName();;
-        this.size= asset.getSize();;
-        this.usableSize= asset.getUsableSize();
+        this.size= FixedPoint.toDecimal(asset.getSize(), scale);
+        this.usableSize= FixedPoint.toDecimal(asset.getUsableSize(), scale);
     }
 }
@@ -0,0 +1,18 @@
+package com.seckin.stockmanager.dto;
+
+import java.math.BigDecimal;
+
+public class AssetValuationDTO {
+    public String name;
+    public BigDecimal size;
+    // last traded prize in TRY, null when the asset has not been traded
+    public BigDecimal prize;
+    public BigDecimal value;
+
+    public AssetValuationDTO(String name, BigDecimal size, BigDecimal prize, BigDecimal value) {
+        this.name = name;
+        this.size = size;
+        this.prize = prize;
+        this.value = value;
+    }
+}
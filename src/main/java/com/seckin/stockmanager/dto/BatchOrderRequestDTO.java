@@ -0,0 +1,13 @@
+package com.seckin.stockmanager.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BatchOrderRequestDTO {
+    @NotEmpty(message = "Orders must not be empty")
+    @Size(max = 1000, message = "A batch can contain at most 1000 orders")
+    public List<@Valid OrderDTO> orders;
+}
@@ -0,0 +1,20 @@
+package com.seckin.stockmanager.dto;
+
+public class BatchOrderResultDTO {
+    public int index;
+    public boolean accepted;
+    public OrderDTO order;
+    public String error;
+
+    public BatchOrderResultDTO(int index, OrderDTO order) {
+        this.index = index;
+        this.accepted = true;
+        this.order = order;
+    }
+
+    public BatchOrderResultDTO(int index, String error) {
+        this.index = index;
+        this.accepted = false;
+        this.error = error;
+    }
+}
@@ -0,0 +1,18 @@
+package com.seckin.stockmanager.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+
+import java.util.List;
+
+public class BulkOrderRequestDTO {
+    public List<Long> orderIds;
+    public String assetName;
+    public String customerUserName;
+
+    @AssertTrue(message = "Orders must be selected either by orderIds or by assetName and/or customerUserName")
+    public boolean isSelectionValid() {
+        boolean byIds = orderIds != null && !orderIds.isEmpty();
+        boolean byFilter = assetName != null || customerUserName != null;
+        return byIds != byFilter;
+    }
+}
@@ -0,0 +1,22 @@
+package com.seckin.stockmanager.dto;
+
+import com.seckin.stockmanager.model.OrderStatus;
+
+public class BulkOrderResultDTO {
+    public long orderId;
+    public boolean accepted;
+    public OrderStatus status;
+    public String error;
+
+    public BulkOrderResultDTO(long orderId, OrderStatus status) {
+        this.orderId = orderId;
+        this.accepted = true;
+        this.status = status;
+    }
+
+    public BulkOrderResultDTO(long orderId, String error) {
+        this.orderId = orderId;
+        this.accepted = false;
+        this.error = error;
+    }
+}
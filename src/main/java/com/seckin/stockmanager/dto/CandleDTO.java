@@ -0,0 +1,27 @@
+package com.seckin.stockmanager.dto;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.FixedPoint;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class CandleDTO {
+    public Instant openTime;
+    public BigDecimal open;
+    public BigDecimal high;
+    public BigDecimal low;
+    public BigDecimal close;
+    public BigDecimal volume;
+    public int tradeCount;
+
+    public CandleDTO(Candle candle, int prizeScale, int sizeScale) {
+        this.openTime = candle.getOpenTime();
+        this.open = FixedPoint.toDecimal(candle.getOpenPrize(), prizeScale);
+        this.high = FixedPoint.toDecimal(candle.getHighPrize(), prizeScale);
+        this.low = FixedPoint.toDecimal(candle.getLowPrize(), prizeScale);
+        this.close = FixedPoint.toDecimal(candle.getClosePrize(), prizeScale);
+        this.volume = FixedPoint.toDecimal(candle.getVolume(), sizeScale);
+        this.tradeCount = candle.getTradeCount();
+    }
+}
@@ -0,0 +1,29 @@
+package com.seckin.stockmanager.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.seckin.stockmanager.model.AsyncCommand;
+import com.seckin.stockmanager.model.CommandStatus;
+import com.seckin.stockmanager.model.CommandType;
+
+import java.time.Instant;
+
+public class CommandDTO {
+    public long id;
+    public CommandType type;
+    public CommandStatus status;
+    @JsonRawValue
+    public String result;
+    public String error;
+    public Instant createdDate;
+    public Instant completedDate;
+
+    public CommandDTO(AsyncCommand command) {
+        this.id = command.getId();
+        this.type = command.getType();
+        this.status = command.getStatus();
+        this.result = command.getResult();
+        this.error = command.getError();
+        this.createdDate = command.getCreateDate();
+        this.completedDate = command.getCompleteDate();
+    }
+}
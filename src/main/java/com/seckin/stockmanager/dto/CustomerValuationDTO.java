@@ -0,0 +1,13 @@
+package com.seckin.stockmanager.dto;
+
+import java.math.BigDecimal;
+
+public class CustomerValuationDTO {
+    public long customerId;
+    public BigDecimal totalValue;
+
+    public CustomerValuationDTO(long customerId, BigDecimal totalValue) {
+        this.customerId = customerId;
+        this.totalValue = totalValue;
+    }
+}
@@ -1,5 +1,7 @@
 package com.seckin.stockmanager.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 public class ListAssetRequestDTO {
@@ -7,4 +9,8 @@ public class ListAssetRequestDTO {
     @NotNull(message = "customerName must not be null")
     public String customerUserName;
     public String assetName;
+    public String cursor;
+    @Min(value = 1, message = "pageSize must be at least 1")
+    @Max(value = 1000, message = "pageSize must be at most 1000")
+    public Integer pageSize;
 }
@@ -1,6 +1,9 @@
 package com.seckin.stockmanager.dto;
 
 import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.time.Instant;
@@ -12,4 +15,9 @@ public class ListOrderRequestDTO {
     public Instant maxDate;
     public OrderSide orderSide;
     public String assetName;
+    public OrderStatus status;
+    public String cursor;
+    @Min(value = 1, message = "pageSize must be at least 1")
+    @Max(value = 1000, message = "pageSize must be at most 1000")
+    public Integer pageSize;
 }
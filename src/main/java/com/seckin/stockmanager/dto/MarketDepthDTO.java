@@ -0,0 +1,15 @@
+package com.seckin.stockmanager.dto;
+
+import java.util.List;
+
+public class MarketDepthDTO {
+    public String assetName;
+    public List<PriceLevelDTO> bids;
+    public List<PriceLevelDTO> asks;
+
+    public MarketDepthDTO(String assetName, List<PriceLevelDTO> bids, List<PriceLevelDTO> asks) {
+        this.assetName = assetName;
+        this.bids = bids;
+        this.asks = asks;
+    }
+}
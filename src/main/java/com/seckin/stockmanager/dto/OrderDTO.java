@@ -1,12 +1,15 @@
 package com.seckin.stockmanager.dto;
 
+import com.seckin.stockmanager.model.FixedPoint;
 import com.seckin.stockmanager.model.Order;
 import com.seckin.stockmanager.model.OrderSide;
 import com.seckin.stockmanager.model.OrderStatus;
+import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 
 public class OrderDTO {
@@ -19,29 +22,35 @@ public class OrderDTO {
     public OrderSide side;
     @NotNull(message = "The amount must not be null")
     @Positive(message = "The amount must be greater than 0")
-    public Double orderSize;
+    public BigDecimal orderSize;
     @NotNull(message = "Prize can not be null")
-    public Double prize;
+    public BigDecimal prize;
     public OrderStatus status;
     public Instant createdDate;
+    @Future(message = "expiresAt must be in the future")
+    public Instant expiresAt;
 
     public OrderDTO() {
     }
 
-    public Order toOrder(long customerId) {
-        return new Order(customerId, assetName, side, prize, orderSize,
-                OrderStatus.PENDING);
+    public Order toOrder(long customerId, int prizeScale, int sizeScale) {
+        Order order = new Order(customerId, assetName, side, FixedPoint.toUnits(prize, prizeScale),
+                FixedPoint.toUnits(orderSize, sizeScale), OrderStatus.PENDING);
+        order.setCreateDate(Instant.now());
+        order.setExpiresAt(expiresAt);
+        return order;
     }
 
-    public OrderDTO(Order order,String customerUserName) {
+    public OrderDTO(Order order,String customerUserName,int prizeScale,int sizeScale) {
         this.id = order.getId();
         this.customerUserName = customerUserName;
         this.assetName = order.getAssetName();
         this.side = order.getOrderSide();
-        this.orderSize = order.getSize();
-        this.prize = order.getPrize();
+        this.orderSize = FixedPoint.toDecimal(order.getSize(), sizeScale);
+        this.prize = FixedPoint.toDecimal(order.getPrize(), prizeScale);
         this.status = order.getStatus();
         this.createdDate = order.getCreateDate();
+        this.expiresAt = order.getExpiresAt();
     }
 
 }
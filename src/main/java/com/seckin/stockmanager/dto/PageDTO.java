@@ -0,0 +1,14 @@
+package com.seckin.stockmanager.dto;
+
+import java.util.List;
+
+public class PageDTO<T> {
+    public List<T> items;
+    // null on the last page, otherwise passed as cursor to get the next page
+    public String nextCursor;
+
+    public PageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,18 @@
+package com.seckin.stockmanager.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class PortfolioValuationDTO {
+    public String customerUserName;
+    // TRY value of the priced assets
+    public BigDecimal totalValue;
+    public List<AssetValuationDTO> assets;
+
+    public PortfolioValuationDTO(String customerUserName, BigDecimal totalValue,
+                                 List<AssetValuationDTO> assets) {
+        this.customerUserName = customerUserName;
+        this.totalValue = totalValue;
+        this.assets = assets;
+    }
+}
@@ -0,0 +1,18 @@
+package com.seckin.stockmanager.dto;
+
+import com.seckin.stockmanager.model.FixedPoint;
+import com.seckin.stockmanager.service.OrderBook;
+
+import java.math.BigDecimal;
+
+public class PriceLevelDTO {
+    public BigDecimal prize;
+    public BigDecimal size;
+    public int orderCount;
+
+    public PriceLevelDTO(OrderBook.PriceLevel level, int prizeScale, int sizeScale) {
+        this.prize = FixedPoint.toDecimal(level.prize(), prizeScale);
+        this.size = FixedPoint.toDecimal(level.size(), sizeScale);
+        this.orderCount = level.orderCount();
+    }
+}
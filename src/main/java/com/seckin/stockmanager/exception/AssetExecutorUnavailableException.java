@@ -0,0 +1,7 @@
+package com.seckin.stockmanager.exception;
+
+public class AssetExecutorUnavailableException extends RuntimeException {
+    public AssetExecutorUnavailableException(String message) {
+        super(message);
+    }
+}
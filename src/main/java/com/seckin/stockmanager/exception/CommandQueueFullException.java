@@ -0,0 +1,7 @@
+package com.seckin.stockmanager.exception;
+
+public class CommandQueueFullException extends RuntimeException {
+    public CommandQueueFullException(String message) {
+        super(message);
+    }
+}
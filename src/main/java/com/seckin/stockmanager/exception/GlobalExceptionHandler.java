@@ -1,5 +1,6 @@
 package com.seckin.stockmanager.exception;
 
+import com.seckin.stockmanager.service.StockManagerMetrics;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -9,6 +10,12 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final StockManagerMetrics metrics;
+
+    public GlobalExceptionHandler(StockManagerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @ExceptionHandler(jakarta.validation.ConstraintViolationException.class)
     public ResponseEntity<String> handleValidationException(jakarta.validation.ConstraintViolationException ex) {
         return ResponseEntity
@@ -26,18 +33,63 @@ public class GlobalExceptionHandler {
     }
     @ExceptionHandler(AssetUsableSizeNotEnoughException.class)
     public ResponseEntity<String> handleAssetUsableSizeNotEnoughException(AssetUsableSizeNotEnoughException ex){
+        metrics.failure(ex);
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidAmountException.class)
+    public ResponseEntity<String> handleInvalidAmountException(InvalidAmountException ex){
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
                 .body(ex.getMessage());
     }
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex){
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidCandleIntervalException.class)
+    public ResponseEntity<String> handleInvalidCandleIntervalException(InvalidCandleIntervalException ex){
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<String> handleInvalidIdempotencyKeyException(InvalidIdempotencyKeyException ex){
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ex.getMessage());
+    }
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex){
+        return ResponseEntity
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(ex.getMessage());
+    }
     @ExceptionHandler(CustomerExistsException.class)
     public ResponseEntity<String> handleCustomerExistsException(CustomerExistsException ex){
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
                 .body(ex.getMessage());
     }
+    @ExceptionHandler(CommandQueueFullException.class)
+    public ResponseEntity<String> handleCommandQueueFullException(CommandQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+    @ExceptionHandler(AssetExecutorUnavailableException.class)
+    public ResponseEntity<String> handleAssetExecutorUnavailableException(AssetExecutorUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+    @ExceptionHandler(LockConflictException.class)
+    public ResponseEntity<String> handleLockConflictException(LockConflictException ex) {
+        metrics.failure(ex);
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<String> handleResourceNotFound(ResourceNotFoundException ex) {
+        metrics.failure(ex);
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 }
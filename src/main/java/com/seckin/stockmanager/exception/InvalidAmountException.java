@@ -0,0 +1,7 @@
+package com.seckin.stockmanager.exception;
+
+public class InvalidAmountException extends RuntimeException {
+    public InvalidAmountException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.seckin.stockmanager.exception;
+
+public class InvalidCandleIntervalException extends RuntimeException {
+    public InvalidCandleIntervalException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.seckin.stockmanager.exception;
+
+public class LockConflictException extends RuntimeException {
+    public LockConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
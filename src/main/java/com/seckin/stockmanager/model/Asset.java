@@ -11,29 +11,42 @@ import jakarta.persistence.*;
 public class Asset {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "assets_seq")
+    @SequenceGenerator(name = "assets_seq", sequenceName = "assets_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private long customerId;
     @Column(nullable = false)
     private String name;
+    // sizes are fixed point units, see AssetScales
     @Column(nullable = false)
-    private Double size;
+    private long size;
 
     @Column(nullable = false)
-    private Double usableSize;
+    private long usableSize;
     @Version
     private Integer version;
 
 
     public Asset(){}
-    public Asset(long customerId, String name, Double size, Double usableSize) {
+    public Asset(long customerId, String name, long size, long usableSize) {
         this.customerId = customerId;
         this.name = name;
         this.size = size;
         this.usableSize = usableSize;
     }
 
+    // detached copy of a row's state, read after a bulk update to journal it
+    public Asset(long customerId, String name, long size, long usableSize, Integer version) {
+        this(customerId, name, size, usableSize);
+        this.version = version;
+    }
+
+    public Asset(Long id, long customerId, String name, long size, long usableSize, Integer version) {
+        this(customerId, name, size, usableSize, version);
+        this.id = id;
+    }
+
     public Long getId() {
         return id;
     }
@@ -54,20 +67,24 @@ public class Asset {
         this.name = name;
     }
 
-    public Double getSize() {
+    public long getSize() {
         return size;
     }
 
-    public void setSize(Double size) {
+    public void setSize(long size) {
         this.size = size;
     }
 
-    public Double getUsableSize() {
+    public long getUsableSize() {
         return usableSize;
     }
 
-    public void setUsableSize(Double usableSize) {
+    public void setUsableSize(long usableSize) {
         this.usableSize = usableSize;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
 }
@@ -0,0 +1,13 @@
+package com.seckin.stockmanager.model;
+
+/**
+ * Published when the balance of an asset changes. Carries a copy of the asset as it was
+ * at that point of the transaction, with the version the row is committed with.
+ */
+public record AssetChangedEvent(Asset asset, AssetMutationType mutationType) {
+
+    public static AssetChangedEvent of(Asset asset, Integer version, AssetMutationType mutationType) {
+        return new AssetChangedEvent(new Asset(asset.getId(), asset.getCustomerId(), asset.getName(),
+                asset.getSize(), asset.getUsableSize(), version), mutationType);
+    }
+}
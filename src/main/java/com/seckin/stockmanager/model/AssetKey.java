@@ -0,0 +1,18 @@
+package com.seckin.stockmanager.model;
+
+import java.util.Comparator;
+
+/**
+ * Identifies an asset row of a customer. Keys are ordered by customer id and asset
+ * name, locks on several assets are taken in this order.
+ */
+public record AssetKey(long customerId, String name) implements Comparable<AssetKey> {
+
+    private static final Comparator<AssetKey> ORDER =
+            Comparator.comparingLong(AssetKey::customerId).thenComparing(AssetKey::name);
+
+    @Override
+    public int compareTo(AssetKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,5 @@
+package com.seckin.stockmanager.model;
+
+public enum AssetMutationType {
+    DEPOSIT, WITHDRAW, RESERVE, RELEASE, SETTLE, RESTORE
+}
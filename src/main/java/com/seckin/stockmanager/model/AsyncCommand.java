@@ -0,0 +1,105 @@
+package com.seckin.stockmanager.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+
+/**
+ * A request accepted for asynchronous processing. The row is written before the
+ * command is queued, so QUEUED commands survive a restart and are applied on startup.
+ */
+@Entity
+@Table(name = "async_commands", indexes = {
+        @Index(name = "idx_async_commands_status", columnList = "status, id")
+})
+public class AsyncCommand {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "async_commands_seq")
+    @SequenceGenerator(name = "async_commands_seq", sequenceName = "async_commands_seq", allocationSize = 50)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CommandType type;
+    @Column(nullable = false)
+    private String customerUserName;
+    // request body as json
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CommandStatus status;
+    // response body as json for succeeded commands
+    @Lob
+    private String result;
+    private String error;
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private Instant createDate;
+    private Instant completeDate;
+
+    public AsyncCommand() {
+    }
+
+    public AsyncCommand(CommandType type, String customerUserName, String payload) {
+        this.type = type;
+        this.customerUserName = customerUserName;
+        this.payload = payload;
+        this.status = CommandStatus.QUEUED;
+    }
+
+    public void succeed(String result) {
+        this.status = CommandStatus.SUCCEEDED;
+        this.result = result;
+        this.error = null;
+        this.completeDate = Instant.now();
+    }
+
+    public void fail(String error) {
+        this.status = CommandStatus.FAILED;
+        this.result = null;
+        this.error = error;
+        this.completeDate = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public String getCustomerUserName() {
+        return customerUserName;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public CommandStatus getStatus() {
+        return status;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getCreateDate() {
+        return createDate;
+    }
+
+    public Instant getCompleteDate() {
+        return completeDate;
+    }
+}
@@ -0,0 +1,95 @@
+package com.seckin.stockmanager.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A closed OHLCV candle of an asset. Prizes are in TRY units and the volume in units of
+ * the asset, see AssetScales.
+ */
+@Entity
+@Table(name = "candles", indexes = {
+        @Index(name = "idx_candles_asset_interval_open_time", columnList = "assetName, candleInterval, openTime")
+})
+public class Candle {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "candles_seq")
+    @SequenceGenerator(name = "candles_seq", sequenceName = "candles_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    private String assetName;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CandleInterval candleInterval;
+    @Column(nullable = false)
+    private Instant openTime;
+    @Column(nullable = false)
+    private long openPrize;
+    @Column(nullable = false)
+    private long highPrize;
+    @Column(nullable = false)
+    private long lowPrize;
+    @Column(nullable = false)
+    private long closePrize;
+    @Column(nullable = false)
+    private long volume;
+    @Column(nullable = false)
+    private int tradeCount;
+
+    public Candle() {
+    }
+
+    public Candle(String assetName, CandleInterval candleInterval, Instant openTime, long openPrize,
+                  long highPrize, long lowPrize, long closePrize, long volume, int tradeCount) {
+        this.assetName = assetName;
+        this.candleInterval = candleInterval;
+        this.openTime = openTime;
+        this.openPrize = openPrize;
+        this.highPrize = highPrize;
+        this.lowPrize = lowPrize;
+        this.closePrize = closePrize;
+        this.volume = volume;
+        this.tradeCount = tradeCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAssetName() {
+        return assetName;
+    }
+
+    public CandleInterval getCandleInterval() {
+        return candleInterval;
+    }
+
+    public Instant getOpenTime() {
+        return openTime;
+    }
+
+    public long getOpenPrize() {
+        return openPrize;
+    }
+
+    public long getHighPrize() {
+        return highPrize;
+    }
+
+    public long getLowPrize() {
+        return lowPrize;
+    }
+
+    public long getClosePrize() {
+        return closePrize;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public int getTradeCount() {
+        return tradeCount;
+    }
+}
@@ -0,0 +1,45 @@
+package com.seckin.stockmanager.model;
+
+import com.seckin.stockmanager.exception.InvalidCandleIntervalException;
+
+import java.time.Duration;
+
+/**
+ * Candle lengths kept per asset, with the number of most recent candles held in memory.
+ */
+public enum CandleInterval {
+    SECOND("1s", Duration.ofSeconds(1), 300),
+    MINUTE("1m", Duration.ofMinutes(1), 1440),
+    HOUR("1h", Duration.ofHours(1), 720);
+
+    private final String label;
+    private final Duration length;
+    private final int capacity;
+
+    CandleInterval(String label, Duration length, int capacity) {
+        this.label = label;
+        this.length = length;
+        this.capacity = capacity;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Duration getLength() {
+        return length;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public static CandleInterval fromLabel(String label) {
+        for (CandleInterval interval : values()) {
+            if (interval.label.equals(label)) {
+                return interval;
+            }
+        }
+        throw new InvalidCandleIntervalException("Invalid candle interval:" + label);
+    }
+}
@@ -0,0 +1,5 @@
+package com.seckin.stockmanager.model;
+
+public enum CommandStatus {
+    QUEUED, SUCCEEDED, FAILED
+}
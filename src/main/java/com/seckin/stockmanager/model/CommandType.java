@@ -0,0 +1,5 @@
+package com.seckin.stockmanager.model;
+
+public enum CommandType {
+    CREATE_ORDER, MATCH_ORDER, DEPOSIT, WITHDRAW
+}
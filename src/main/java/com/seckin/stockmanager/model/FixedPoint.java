@@ -0,0 +1,46 @@
+package com.seckin.stockmanager.model;
+
+import com.seckin.stockmanager.exception.InvalidAmountException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversion and arithmetic helpers for amounts stored as long units of 10^-scale.
+ */
+public final class FixedPoint {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+            100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L,
+            1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L,
+            1_000_000_000_000_000_000L
+    };
+
+    private FixedPoint() {
+    }
+
+    public static long toUnits(BigDecimal value, int scale) {
+        try {
+            return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount " + value.toPlainString()
+                    + " does not fit into " + scale + " decimal places");
+        }
+    }
+
+    public static BigDecimal toDecimal(long units, int scale) {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    /**
+     * Value in prize units of size units at the given prize, rounded up so a
+     * reservation always covers the trade.
+     */
+    public static long notional(long prize, long size, int sizeScale) {
+        long value = Math.multiplyExact(prize, size);
+        long divisor = POWERS_OF_TEN[sizeScale];
+        return Math.floorDiv(value, divisor) + (Math.floorMod(value, divisor) == 0 ? 0 : 1);
+    }
+}
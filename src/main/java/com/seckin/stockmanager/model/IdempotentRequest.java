@@ -0,0 +1,86 @@
+package com.seckin.stockmanager.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+
+/**
+ * A request sent with an {@code Idempotency-Key}. The row is written before the request
+ * is executed and completed with its response afterwards, a row without complete date
+ * belongs to a request still in flight or one interrupted by a crash.
+ */
+@Entity
+@Table(name = "idempotent_requests",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"customerUserName", "idempotencyKey"}),
+        indexes = @Index(name = "idx_idempotent_requests_create_date", columnList = "createDate"))
+public class IdempotentRequest {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "idempotent_requests_seq")
+    @SequenceGenerator(name = "idempotent_requests_seq", sequenceName = "idempotent_requests_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    private String customerUserName;
+    @Column(nullable = false)
+    private String idempotencyKey;
+    // hash of the operation and request body, a key is only replayed for the same request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+    // response body as json, null for responses without body
+    @Lob
+    private String response;
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private Instant createDate;
+    private Instant completeDate;
+
+    public IdempotentRequest() {
+    }
+
+    public IdempotentRequest(String customerUserName, String idempotencyKey, String requestHash) {
+        this.customerUserName = customerUserName;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+    }
+
+    public void complete(String response) {
+        this.response = response;
+        this.completeDate = Instant.now();
+    }
+
+    public boolean isCompleted() {
+        return completeDate != null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCustomerUserName() {
+        return customerUserName;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public Instant getCreateDate() {
+        return createDate;
+    }
+
+    public void setCreateDate(Instant createDate) {
+        this.createDate = createDate;
+    }
+
+    public Instant getCompleteDate() {
+        return completeDate;
+    }
+}
@@ -1,15 +1,19 @@
 package com.seckin.stockmanager.model;
 
 import jakarta.persistence.*;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.Instant;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_customer_create_date", columnList = "customerId, createDate, id"),
+        @Index(name = "idx_orders_customer_status", columnList = "customerId, status"),
+        @Index(name = "idx_orders_status_expires_at", columnList = "status, expiresAt")
+})
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private long customerId;
@@ -17,21 +21,24 @@ public class Order {
     private String assetName;
     @Column(nullable = false)
     private OrderSide orderSide;
+    // prize is in TRY units and size in units of the asset, see AssetScales
     @Column(nullable = false)
-    private Double prize;
+    private long prize;
     @Column(nullable = false)
-    private Double size;
+    private long size;
     @Enumerated(EnumType.STRING)
     private OrderStatus status;
-    @CreationTimestamp
+    // assigned before the insert, which a pooled sequence id defers until the flush
     @Column(nullable = false, updatable = false)
     private Instant createDate;
+    // PENDING orders are expired by OrderExpiryScheduler after this time, null never expires
+    private Instant expiresAt;
 
     public Order() {
     }
 
-    public Order(long customerId, String assetName, OrderSide orderSide, Double prize,
-                 Double size, OrderStatus status) {
+    public Order(long customerId, String assetName, OrderSide orderSide, long prize,
+                 long size, OrderStatus status) {
         this.customerId = customerId;
         this.assetName = assetName;
         this.orderSide = orderSide;
@@ -40,6 +47,13 @@ public class Order {
         this.status = status;
     }
 
+    @PrePersist
+    void onCreate() {
+        if (createDate == null) {
+            createDate = Instant.now();
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -72,19 +86,19 @@ public class Order {
         this.orderSide = orderSide;
     }
 
-    public Double getPrize() {
+    public long getPrize() {
         return prize;
     }
 
-    public void setPrize(Double prize) {
+    public void setPrize(long prize) {
         this.prize = prize;
     }
 
-    public Double getSize() {
+    public long getSize() {
         return size;
     }
 
-    public void setSize(Double size) {
+    public void setSize(long size) {
         this.size = size;
     }
 
@@ -103,4 +117,12 @@ public class Order {
     public void setCreateDate(Instant createDate) {
         this.createDate = createDate;
     }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
 }
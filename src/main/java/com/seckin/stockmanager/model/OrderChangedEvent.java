@@ -0,0 +1,17 @@
+package com.seckin.stockmanager.model;
+
+/**
+ * Published when an order is created or its status or size changes. Carries a copy of
+ * the order as it was at that point of the transaction.
+ */
+public record OrderChangedEvent(Order order) {
+
+    public static OrderChangedEvent of(Order order, OrderStatus status) {
+        Order copy = new Order(order.getCustomerId(), order.getAssetName(), order.getOrderSide(),
+                order.getPrize(), order.getSize(), status);
+        copy.setId(order.getId());
+        copy.setCreateDate(order.getCreateDate());
+        copy.setExpiresAt(order.getExpiresAt());
+        return new OrderChangedEvent(copy);
+    }
+}
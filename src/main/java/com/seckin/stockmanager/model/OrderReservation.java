@@ -0,0 +1,9 @@
+package com.seckin.stockmanager.model;
+
+/**
+ * The columns of an order needed to compute its reservation, read without loading
+ * the order entity.
+ */
+public record OrderReservation(Long id, long customerId, String assetName, OrderSide orderSide,
+                               long prize, long size) {
+}
@@ -3,5 +3,6 @@ package com.seckin.stockmanager.model;
 public enum OrderStatus {
     PENDING,
     MATCHED,
-    CANCELLED
+    CANCELLED,
+    EXPIRED
 }
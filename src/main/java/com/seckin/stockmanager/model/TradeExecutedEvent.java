@@ -0,0 +1,11 @@
+package com.seckin.stockmanager.model;
+
+import java.time.Instant;
+
+/**
+ * Published for every trade settled by the matching engine, prize in TRY units and
+ * quantity in units of the asset. Admin matches settle an order at its own limit prize
+ * without a counterparty and are not published.
+ */
+public record TradeExecutedEvent(String assetName, long prize, long quantity, Instant executedAt) {
+}
@@ -0,0 +1,26 @@
+package com.seckin.stockmanager.repository;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface AssetLockRepository {
+    /**
+     * Locks the rows of all given assets with one SELECT ... FOR UPDATE ordered by id and
+     * inserts the missing ones with zero sizes. The ordering makes lock cycles between
+     * such transactions unlikely but does not rule them out: H2 does not promise to lock
+     * the rows in ORDER BY order, and a caller may already hold one of the rows, like the
+     * taker's row reserved by OrderService#createOrder. A cycle ends in a detected
+     * deadlock or a lock timeout, both retried by {@code @RetryOnConflict}.
+     */
+    Map<AssetKey, Asset> lockAssets(Collection<AssetKey> keys);
+
+    /**
+     * Reads the rows of all given assets with one SELECT without a lock and inserts the
+     * missing ones like {@link #lockAssets}. A concurrent change of a read row fails the
+     * flush on the version column.
+     */
+    Map<AssetKey, Asset> readAssets(Collection<AssetKey> keys);
+}
@@ -0,0 +1,95 @@
+package com.seckin.stockmanager.repository;
+
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class AssetLockRepositoryImpl implements AssetLockRepository {
+
+    private final EntityManager entityManager;
+
+    public AssetLockRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Map<AssetKey, Asset> lockAssets(Collection<AssetKey> keys) {
+        return loadAssets(keys, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    @Override
+    public Map<AssetKey, Asset> readAssets(Collection<AssetKey> keys) {
+        return loadAssets(keys, LockModeType.NONE);
+    }
+
+    private Map<AssetKey, Asset> loadAssets(Collection<AssetKey> keys, LockModeType lockMode) {
+        Map<AssetKey, Asset> assets = new HashMap<>();
+        if (keys.isEmpty()) {
+            return assets;
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Asset> query = builder.createQuery(Asset.class);
+        Root<Asset> asset = query.from(Asset.class);
+        List<Predicate> keyPredicates = new ArrayList<>(keys.size());
+        for (AssetKey key : new TreeSet<>(keys)) {
+            keyPredicates.add(builder.and(builder.equal(asset.get("customerId"), key.customerId()),
+                    builder.equal(asset.get("name"), key.name())));
+        }
+        query.select(asset)
+                .where(builder.or(keyPredicates.toArray(Predicate[]::new)))
+                .orderBy(builder.asc(asset.get("id")));
+        entityManager.createQuery(query)
+                .setLockMode(lockMode)
+                .getResultList()
+                .forEach(it -> assets.put(new AssetKey(it.getCustomerId(), it.getName()), it));
+
+        // missing rows are inserted in key order, a row inserted concurrently by another
+        // transaction fails on the unique key and the whole transaction is retried
+        boolean inserted = false;
+        for (AssetKey key : new TreeSet<>(keys)) {
+            if (!assets.containsKey(key)) {
+                Asset missingAsset = new Asset(key.customerId(), key.name(), 0, 0);
+                entityManager.persist(missingAsset);
+                assets.put(key, missingAsset);
+                inserted = true;
+            }
+        }
+        if (inserted) {
+            try {
+                entityManager.flush();
+            } catch (PersistenceException e) {
+                // Hibernate reports the unique key violation wrapped or unwrapped
+                // depending on where the flush fails
+                if (!isConstraintViolation(e)) {
+                    throw e;
+                }
+                throw new LockConflictException("The record was updated by another transaction", e);
+            }
+        }
+        return assets;
+    }
+
+    private static boolean isConstraintViolation(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,21 +2,91 @@ package com.seckin.stockmanager.repository;
 
 import com.seckin.stockmanager.model.Asset;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface AssetRepository extends JpaRepository<Asset, Long> {
+public interface AssetRepository extends JpaRepository<Asset, Long>, AssetLockRepository {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Asset> findByCustomerIdAndName(long customerId, String name);
+    @Query("SELECT a FROM Asset a WHERE a.customerId = :customerId AND a.name = :name")
+    Optional<Asset> findAsset(
+            @Param("customerId") long customerId,
+            @Param("name") String name
+    );
+    @Query("SELECT new com.seckin.stockmanager.model.Asset(a.id, a.customerId, a.name, a.size, a.usableSize, "
+            + "a.version) FROM Asset a WHERE a.customerId = :customerId AND a.name = :name")
+    Optional<Asset> findSnapshot(
+            @Param("customerId") long customerId,
+            @Param("name") String name
+    );
+    // the bulk updates below change the row in one statement and increment its
+    // version, so concurrent entity updates of the same row fail on the version check
+    @Modifying
+    @Query("UPDATE Asset a SET a.size = a.size + :amount, a.usableSize = a.usableSize + :amount, "
+            + "a.version = a.version + 1 WHERE a.customerId = :customerId AND a.name = :name")
+    int addToAsset(
+            @Param("customerId") long customerId,
+            @Param("name") String name,
+            @Param("amount") long amount
+    );
+    @Modifying
+    @Query("UPDATE Asset a SET a.size = a.size - :amount, a.usableSize = a.usableSize - :amount, "
+            + "a.version = a.version + 1 WHERE a.customerId = :customerId AND a.name = :name "
+            + "AND a.usableSize >= :amount")
+    int removeFromAsset(
+            @Param("customerId") long customerId,
+            @Param("name") String name,
+            @Param("amount") long amount
+    );
+    @Modifying
+    @Query("UPDATE Asset a SET a.usableSize = a.usableSize - :amount, a.version = a.version + 1 "
+            + "WHERE a.customerId = :customerId AND a.name = :name AND a.usableSize >= :amount")
+    int reserveAsset(
+            @Param("customerId") long customerId,
+            @Param("name") String name,
+            @Param("amount") long amount
+    );
+    @Modifying
+    @Query("UPDATE Asset a SET a.usableSize = a.usableSize + :amount, a.version = a.version + 1 "
+            + "WHERE a.customerId = :customerId AND a.name = :name")
+    int releaseAsset(
+            @Param("customerId") long customerId,
+            @Param("name") String name,
+            @Param("amount") long amount
+    );
+    @Query("SELECT new com.seckin.stockmanager.model.Asset(a.customerId, a.name, a.size, a.usableSize, a.version) "
+            + "FROM Asset a WHERE a.customerId BETWEEN :fromCustomerId AND :toCustomerId")
+    List<Asset> findHoldings(
+            @Param("fromCustomerId") long fromCustomerId,
+            @Param("toCustomerId") long toCustomerId
+    );
+    @Query("SELECT MIN(a.customerId) FROM Asset a")
+    Long findMinCustomerId();
+    @Query("SELECT MAX(a.customerId) FROM Asset a")
+    Long findMaxCustomerId();
+    // first page and pages after a cursor, see OrderRepository#findOrdersAfter
     @Query("SELECT a FROM Asset a WHERE a.customerId = :customerId "
-            + "AND (:name IS NULL OR a.name = :name)")
+            + "AND (:name IS NULL OR a.name = :name) "
+            + "ORDER BY a.id")
     List<Asset> findAssets(
             @Param("customerId") Long customerId,
-            @Param("name") String name
+            @Param("name") String name,
+            Pageable pageable
+    );
+    @Query("SELECT a FROM Asset a WHERE a.customerId = :customerId AND a.id > :cursorId "
+            + "AND (:name IS NULL OR a.name = :name) "
+            + "ORDER BY a.id")
+    List<Asset> findAssetsAfter(
+            @Param("customerId") Long customerId,
+            @Param("name") String name,
+            @Param("cursorId") long cursorId,
+            Pageable pageable
     );
 }
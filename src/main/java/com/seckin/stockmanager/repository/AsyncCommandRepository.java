@@ -0,0 +1,14 @@
+package com.seckin.stockmanager.repository;
+
+import com.seckin.stockmanager.model.AsyncCommand;
+import com.seckin.stockmanager.model.CommandStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface AsyncCommandRepository extends JpaRepository<AsyncCommand, Long> {
+    @Query("SELECT c.id FROM AsyncCommand c WHERE c.status = :status ORDER BY c.id")
+    List<Long> findIdsByStatus(@Param("status") CommandStatus status);
+}
@@ -0,0 +1,17 @@
+package com.seckin.stockmanager.repository;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.CandleInterval;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CandleRepository extends JpaRepository<Candle, Long> {
+    // the last candle of every asset, served by idx_candles_asset_interval_open_time
+    @Query("SELECT c FROM Candle c WHERE c.candleInterval = :candleInterval AND c.openTime = "
+            + "(SELECT MAX(l.openTime) FROM Candle l WHERE l.assetName = c.assetName "
+            + "AND l.candleInterval = :candleInterval)")
+    List<Candle> findLatest(@Param("candleInterval") CandleInterval candleInterval);
+}
@@ -2,9 +2,14 @@ package com.seckin.stockmanager.repository;
 
 import com.seckin.stockmanager.model.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByUsername(String username);
+
+    @Query("SELECT c.id FROM Customer c")
+    List<Long> findAllIds();
 }
\ No newline at end of file
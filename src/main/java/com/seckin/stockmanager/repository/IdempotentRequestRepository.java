@@ -0,0 +1,25 @@
+package com.seckin.stockmanager.repository;
+
+import com.seckin.stockmanager.model.IdempotentRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface IdempotentRequestRepository extends JpaRepository<IdempotentRequest, Long> {
+    Optional<IdempotentRequest> findByCustomerUserNameAndIdempotencyKey(String customerUserName,
+                                                                        String idempotencyKey);
+    @Modifying
+    @Query("DELETE FROM IdempotentRequest r WHERE r.createDate < :createdBefore")
+    int deleteCreatedBefore(@Param("createdBefore") Instant createdBefore);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotentRequest r WHERE r.id = :id AND r.completeDate IS NULL"
+            + " AND r.createDate < :claimedBefore")
+    int deleteStaleClaim(@Param("id") Long id, @Param("claimedBefore") Instant claimedBefore);
+}
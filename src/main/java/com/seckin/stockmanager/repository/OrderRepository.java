@@ -1,29 +1,109 @@
 package com.seckin.stockmanager.repository;
 
 import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderReservation;
 import com.seckin.stockmanager.model.OrderSide;
 import com.seckin.stockmanager.model.OrderStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order,Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Order> findByIdAndStatus(long id, OrderStatus status);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.status = :status ORDER BY o.id")
+    List<Order> findForUpdate(@Param("ids") Collection<Long> ids, @Param("status") OrderStatus status);
+    // plain reads, the books of the assets are locked before the order rows
+    @Query("SELECT o.assetName FROM Order o WHERE o.id = :id")
+    Optional<String> findAssetNameById(@Param("id") long id);
+    @Query("SELECT DISTINCT o.assetName FROM Order o WHERE o.id IN :ids")
+    List<String> findAssetNames(@Param("ids") Collection<Long> ids);
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status "
+            + "AND (:customerId IS NULL OR o.customerId = :customerId) "
+            + "AND (:assetName IS NULL OR o.assetName = :assetName) "
+            + "ORDER BY o.id")
+    List<Long> findIds(
+            @Param("customerId") Long customerId,
+            @Param("assetName") String assetName,
+            @Param("status") OrderStatus status
+    );
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :newStatus WHERE o.id IN :ids AND o.status = :status")
+    int updateStatus(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") OrderStatus status,
+            @Param("newStatus") OrderStatus newStatus
+    );
+    // served by idx_orders_status_expires_at, oldest expiry first
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND o.expiresAt <= :now "
+            + "ORDER BY o.expiresAt")
+    List<Long> findExpiredIds(
+            @Param("status") OrderStatus status,
+            @Param("now") Instant now,
+            Pageable pageable
+    );
+    @Query("SELECT new com.seckin.stockmanager.model.OrderReservation(o.id, o.customerId, o.assetName, "
+            + "o.orderSide, o.prize, o.size) FROM Order o WHERE o.id IN :ids AND o.status = :status")
+    List<OrderReservation> findReservations(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") OrderStatus status
+    );
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT o FROM Order o WHERE o.customerId = :customerId ORDER BY o.createDate, o.id")
+    Stream<Order> streamByCustomerId(@Param("customerId") long customerId);
+    List<Order> findByStatus(OrderStatus status);
+    List<Order> findByAssetNameAndStatus(String assetName, OrderStatus status);
+    // the first page and the pages after a cursor are separate queries, so the cursor is
+    // a plain range on idx_orders_customer_create_date the index seeks to
     @Query("SELECT o FROM Order o WHERE o.customerId = :customerId "
             + "AND (:minDate IS NULL OR o.createDate >= :minDate) "
             + "AND (:maxDate IS NULL OR o.createDate <= :maxDate) "
             + "AND (:orderSide IS NULL OR o.orderSide = :orderSide) "
-            + "AND (:assetName IS NULL OR o.assetName = :assetName)")
+            + "AND (:assetName IS NULL OR o.assetName = :assetName) "
+            + "AND (:status IS NULL OR o.status = :status) "
+            + "ORDER BY o.createDate DESC, o.id DESC")
     List<Order> findOrders(
             @Param("customerId") Long customerId,
             @Param("minDate") Instant minDate,
             @Param("maxDate") Instant maxDate,
             @Param("orderSide") OrderSide orderSide,
-            @Param("assetName") String assetName
+            @Param("assetName") String assetName,
+            @Param("status") OrderStatus status,
+            Pageable pageable
+    );
+    @Query("SELECT o FROM Order o WHERE o.customerId = :customerId "
+            + "AND o.createDate <= :cursorDate "
+            + "AND (o.createDate < :cursorDate OR o.id < :cursorId) "
+            + "AND (:minDate IS NULL OR o.createDate >= :minDate) "
+            + "AND (:maxDate IS NULL OR o.createDate <= :maxDate) "
+            + "AND (:orderSide IS NULL OR o.orderSide = :orderSide) "
+            + "AND (:assetName IS NULL OR o.assetName = :assetName) "
+            + "AND (:status IS NULL OR o.status = :status) "
+            + "ORDER BY o.createDate DESC, o.id DESC")
+    List<Order> findOrdersAfter(
+            @Param("customerId") Long customerId,
+            @Param("minDate") Instant minDate,
+            @Param("maxDate") Instant maxDate,
+            @Param("orderSide") OrderSide orderSide,
+            @Param("assetName") String assetName,
+            @Param("status") OrderStatus status,
+            @Param("cursorDate") Instant cursorDate,
+            @Param("cursorId") long cursorId,
+            Pageable pageable
     );
 }
 
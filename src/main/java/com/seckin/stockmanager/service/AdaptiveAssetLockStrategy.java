@@ -0,0 +1,116 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.repository.AssetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads asset rows optimistically until a row sees conflictThreshold version conflicts
+ * within one conflict window. Such a row is then read with a PESSIMISTIC_WRITE lock for
+ * the pessimistic period, after which it goes back to optimistic reads.
+ */
+@Service
+@ConditionalOnProperty(name = "stockmanager.asset.concurrency-mode", havingValue = "adaptive")
+public class AdaptiveAssetLockStrategy implements AssetLockStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveAssetLockStrategy.class);
+    // expired entries are dropped once the map grows beyond this size
+    private static final int CLEANUP_SIZE = 10_000;
+
+    private final AssetRepository assetRepository;
+    private final int conflictThreshold;
+    private final long conflictWindowNanos;
+    private final long pessimisticPeriodNanos;
+    private final Map<AssetKey, Contention> contentions = new ConcurrentHashMap<>();
+
+    private record Contention(int conflicts, long windowStart, long pessimisticUntil) {
+    }
+
+    public AdaptiveAssetLockStrategy(AssetRepository assetRepository,
+                                     @Value("${stockmanager.asset.adaptive.conflict-threshold:3}") int conflictThreshold,
+                                     @Value("${stockmanager.asset.adaptive.conflict-window:PT10S}") Duration conflictWindow,
+                                     @Value("${stockmanager.asset.adaptive.pessimistic-period:PT1M}") Duration pessimisticPeriod) {
+        this.assetRepository = assetRepository;
+        this.conflictThreshold = conflictThreshold;
+        this.conflictWindowNanos = conflictWindow.toNanos();
+        this.pessimisticPeriodNanos = pessimisticPeriod.toNanos();
+    }
+
+    @Override
+    public Asset getAssetForUpdate(long customerId, String assetName) {
+        return isPessimistic(new AssetKey(customerId, assetName)) ?
+                assetRepository.findByCustomerIdAndName(customerId, assetName).orElse(null) :
+                assetRepository.findAsset(customerId, assetName).orElse(null);
+    }
+
+    /**
+     * Locks all rows when one of them is locked pessimistically, so a hot row is never
+     * changed next to rows that were only read.
+     */
+    @Override
+    public Map<AssetKey, Asset> getAssetsForUpdate(Collection<AssetKey> keys) {
+        for (AssetKey key : keys) {
+            if (isPessimistic(key)) {
+                return assetRepository.lockAssets(keys);
+            }
+        }
+        return assetRepository.readAssets(keys);
+    }
+
+    public boolean isPessimistic(AssetKey key) {
+        Contention contention = contentions.get(key);
+        return contention != null && System.nanoTime() - contention.pessimisticUntil() < 0;
+    }
+
+    @Override
+    public void onConflict(RuntimeException conflict) {
+        Object assetId = conflictingAssetId(conflict);
+        if (assetId instanceof Long id) {
+            // runs between the attempts outside of a transaction, conflicts are rare
+            // enough to resolve the key of the row with a query
+            assetRepository.findById(id).ifPresent(asset ->
+                    recordConflict(new AssetKey(asset.getCustomerId(), asset.getName())));
+        }
+    }
+
+    public void recordConflict(AssetKey key) {
+        long now = System.nanoTime();
+        Contention contention = contentions.compute(key, (k, current) -> {
+            if (current == null || now - current.windowStart() > conflictWindowNanos) {
+                current = new Contention(0, now, current == null ? now : current.pessimisticUntil());
+            }
+            int conflicts = current.conflicts() + 1;
+            return conflicts >= conflictThreshold ?
+                    new Contention(0, now, now + pessimisticPeriodNanos) :
+                    new Contention(conflicts, current.windowStart(), current.pessimisticUntil());
+        });
+        if (contention.pessimisticUntil() - now == pessimisticPeriodNanos) {
+            logger.info("Asset {} of customer:{} is locked pessimistically after repeated conflicts",
+                    key.name(), key.customerId());
+        }
+        if (contentions.size() > CLEANUP_SIZE) {
+            contentions.values().removeIf(it -> now - it.windowStart() > conflictWindowNanos
+                    && now - it.pessimisticUntil() >= 0);
+        }
+    }
+
+    private static Object conflictingAssetId(Throwable conflict) {
+        for (Throwable cause = conflict; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ObjectOptimisticLockingFailureException e
+                    && Asset.class.getName().equals(e.getPersistentClassName())) {
+                return e.getIdentifier();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.seckin.stockmanager.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a request may run, used by the load shedding and admission control
+ * filters of the security filter chain. Both limits are off unless configured.
+ * <p>
+ * Every customer has a {@link TokenBucket} per endpoint group, so one client flooding
+ * {@code POST /orders} is throttled before its requests queue up on the row locks of
+ * its assets, without slowing down its other requests or other customers. Independent
+ * of the customer at most {@code stockmanager.load-shedding.max-concurrent-requests}
+ * requests run at once, a request waits up to {@code queue-timeout} for a free slot
+ * and is shed otherwise, before the connection pool and the worker threads are used up.
+ */
+@Component
+public class AdmissionControl {
+
+    private final boolean rateLimitEnabled;
+    private final Map<EndpointGroup, Limit> limits;
+    private final Map<BucketKey, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Semaphore slots;
+    private final long queueTimeoutNanos;
+    private final StockManagerMetrics metrics;
+
+    public AdmissionControl(StockManagerMetrics metrics,
+                            @Value("${stockmanager.rate-limit.enabled:false}") boolean rateLimitEnabled,
+                            @Value("${stockmanager.rate-limit.order-writes.rate:20}") double orderWriteRate,
+                            @Value("${stockmanager.rate-limit.order-writes.burst:40}") int orderWriteBurst,
+                            @Value("${stockmanager.rate-limit.asset-writes.rate:5}") double assetWriteRate,
+                            @Value("${stockmanager.rate-limit.asset-writes.burst:10}") int assetWriteBurst,
+                            @Value("${stockmanager.rate-limit.reads.rate:50}") double readRate,
+                            @Value("${stockmanager.rate-limit.reads.burst:100}") int readBurst,
+                            @Value("${stockmanager.load-shedding.max-concurrent-requests:0}") int maxConcurrentRequests,
+                            @Value("${stockmanager.load-shedding.queue-timeout:PT0.05S}") Duration queueTimeout) {
+        this.metrics = metrics;
+        this.rateLimitEnabled = rateLimitEnabled;
+        this.limits = Map.of(
+                EndpointGroup.ORDER_WRITES, new Limit(orderWriteRate, orderWriteBurst),
+                EndpointGroup.ASSET_WRITES, new Limit(assetWriteRate, assetWriteBurst),
+                EndpointGroup.READS, new Limit(readRate, readBurst));
+        // no limit when not configured
+        this.slots = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests) : null;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+    }
+
+    /**
+     * Takes a token of the customer for the endpoint. Returns 0 when the request may
+     * run, otherwise the nanos after which the customer may try again.
+     */
+    public long tryAcquireToken(String customerUserName, String method, String path) {
+        return tryAcquireToken(customerUserName, method, path, System.nanoTime());
+    }
+
+    long tryAcquireToken(String customerUserName, String method, String path, long nowNanos) {
+        if (!rateLimitEnabled) {
+            return 0;
+        }
+        EndpointGroup group = EndpointGroup.of(method, path);
+        long waitNanos = buckets.computeIfAbsent(new BucketKey(customerUserName, group),
+                key -> limits.get(group).newBucket(nowNanos)).tryAcquire(nowNanos);
+        if (waitNanos > 0) {
+            metrics.requestRejected("rate-limit");
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Takes one of the request slots, has to be followed by {@link #exit} when true.
+     */
+    public boolean tryEnter() throws InterruptedException {
+        if (slots == null || slots.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        metrics.requestRejected("overload");
+        return false;
+    }
+
+    public void exit() {
+        if (slots != null) {
+            slots.release();
+        }
+    }
+
+    /**
+     * Drops the buckets that refilled completely, a new bucket behaves the same.
+     */
+    @Scheduled(fixedDelayString = "${stockmanager.rate-limit.cleanup-interval:PT1M}")
+    public void removeFullBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    enum EndpointGroup {
+        ORDER_WRITES, ASSET_WRITES, READS;
+
+        static EndpointGroup of(String method, String path) {
+            if ("GET".equals(method)) {
+                return READS;
+            }
+            if (path.startsWith("/orders")) {
+                return ORDER_WRITES;
+            }
+            return path.startsWith("/assets") ? ASSET_WRITES : READS;
+        }
+    }
+
+    private record Limit(double ratePerSecond, int burst) {
+
+        private TokenBucket newBucket(long nowNanos) {
+            return new TokenBucket(ratePerSecond, burst, nowNanos);
+        }
+    }
+
+    private record BucketKey(String customerUserName, EndpointGroup group) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.seckin.stockmanager.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry point for customer initiated asset mutations. The implementation is selected
+ * with the stockmanager.asset.execution-mode property.
+ */
+public interface AssetCommandExecutor {
+
+    void depositMoney(String customerUserName, BigDecimal amount);
+
+    void withdrawMoney(String customerUserName, BigDecimal amount, String iban);
+}
@@ -0,0 +1,24 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetMutationType;
+
+/**
+ * Durable log of asset balances kept next to the database, see
+ * {@link MappedAssetJournal}.
+ */
+public interface AssetJournal {
+
+    /**
+     * Journals the state of a saved asset right before the current transaction commits,
+     * or right away without a transaction. A failed write fails the commit.
+     */
+    void record(Asset asset, AssetMutationType mutationType);
+
+    /**
+     * False when records are dropped, callers can skip reading the state to journal.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+}
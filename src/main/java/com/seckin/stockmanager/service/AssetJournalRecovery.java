@@ -0,0 +1,84 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.repository.CustomerRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Restores asset rows that are missing from the database, e.g. after a restart of the
+ * in-memory database, from the journal before the application serves requests. The
+ * journal is then checkpointed with the database state, so it continues from the
+ * versions of the restored rows.
+ * <p>
+ * Only balances are journaled. Rows of customers the database does not know are not
+ * restored, their ids may be given to customers registered later. Orders are not
+ * journaled either, so a restored row gets the size reserved by its lost orders back.
+ */
+@Component
+@ConditionalOnProperty(name = "stockmanager.journal.enabled", havingValue = "true")
+public class AssetJournalRecovery {
+    private static final Logger logger = LoggerFactory.getLogger(AssetJournalRecovery.class);
+
+    private final MappedAssetJournal journal;
+    private final AssetRepository assetRepository;
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public AssetJournalRecovery(MappedAssetJournal journal, AssetRepository assetRepository,
+                                CustomerRepository customerRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.journal = journal;
+        this.assetRepository = assetRepository;
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        long startTime = System.nanoTime();
+        Map<AssetKey, MappedAssetJournal.Entry> journaled = journal.recover();
+        List<MappedAssetJournal.Entry> current = transactionTemplate.execute(status -> {
+            List<Asset> assets = assetRepository.findAll();
+            Set<AssetKey> existing = assets.stream()
+                    .map(asset -> new AssetKey(asset.getCustomerId(), asset.getName()))
+                    .collect(Collectors.toSet());
+            Set<Long> customerIds = new HashSet<>(customerRepository.findAllIds());
+            List<Asset> restored = new ArrayList<>();
+            int skipped = 0;
+            for (MappedAssetJournal.Entry entry : journaled.values()) {
+                if (existing.contains(entry.key())) {
+                    continue;
+                }
+                if (!customerIds.contains(entry.customerId())) {
+                    skipped++;
+                    continue;
+                }
+                restored.add(new Asset(entry.customerId(), entry.name(), entry.size(), entry.size()));
+            }
+            assets.addAll(assetRepository.saveAll(restored));
+            assetRepository.flush();
+            logger.info("Restored {} asset rows from the journal, skipped {} rows of unknown customers",
+                    restored.size(), skipped);
+            return assets.stream().map(MappedAssetJournal.Entry::of).toList();
+        });
+        journal.checkpoint(current);
+        journal.start();
+        logger.info("Asset journal recovery took {} ms", (System.nanoTime() - startTime) / 1_000_000);
+    }
+}
@@ -0,0 +1,29 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads an asset row that the current transaction is going to change. Selected with
+ * {@code stockmanager.asset.concurrency-mode}: pessimistic (row lock), optimistic
+ * (version check on flush) or adaptive (row lock only for rows with recent conflicts).
+ */
+public interface AssetLockStrategy {
+
+    Asset getAssetForUpdate(long customerId, String assetName);
+
+    /**
+     * Reads several asset rows at once and creates the missing ones. Used by every change
+     * of more than one asset, a locking strategy takes the row locks in id order.
+     */
+    Map<AssetKey, Asset> getAssetsForUpdate(Collection<AssetKey> keys);
+
+    /**
+     * Called with every conflict before the failed transaction is retried.
+     */
+    default void onConflict(RuntimeException conflict) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.seckin.stockmanager.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+
+/**
+ * Number of decimal places kept for the sizes of each asset. Order prizes are TRY
+ * amounts and use the TRY scale.
+ */
+@Component
+@ConfigurationProperties(prefix = "stockmanager.asset.scale")
+public class AssetScales {
+
+    private int defaultScale = 0;
+    private Map<String, Integer> assets = new HashMap<>(Map.of(TRY_ASSET_NAME, 2));
+
+    public int scaleOf(String assetName) {
+        return assets.getOrDefault(assetName, defaultScale);
+    }
+
+    public int prizeScale() {
+        return scaleOf(TRY_ASSET_NAME);
+    }
+
+    public int getDefaultScale() {
+        return defaultScale;
+    }
+
+    public void setDefaultScale(int defaultScale) {
+        this.defaultScale = defaultScale;
+    }
+
+    public Map<String, Integer> getAssets() {
+        return assets;
+    }
+
+    public void setAssets(Map<String, Integer> assets) {
+        this.assets = assets;
+    }
+}
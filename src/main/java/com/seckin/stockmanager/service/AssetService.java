@@ -1,81 +1,224 @@
 package com.seckin.stockmanager.service;
 
 import com.seckin.stockmanager.dto.AssetDTO;
+import com.seckin.stockmanager.dto.PageDTO;
 import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.exception.ResourceNotFoundException;
 import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.FixedPoint;
 import com.seckin.stockmanager.repository.AssetRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.PessimisticLockException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
 
 @Service
 public class AssetService {
     private static final Logger logger = LoggerFactory.getLogger(AssetService.class);
+    // asset tag of the lock meters of getAssetsWithLock
+    private static final String MULTIPLE_ASSETS_TAG = "*";
 
 
     private final AssetRepository assetRepository;
     private final CustomerService customerService;
+    private final AssetScales assetScales;
+    private final AssetJournal assetJournal;
+    private final AssetLockStrategy assetLockStrategy;
+    private final StockManagerMetrics metrics;
+    private final CustomerEventPublisher customerEvents;
+    private final CustomerReadModel readModel;
 
 
     public AssetService(AssetRepository assetRepository,
-                        CustomerService customerService) {
+                        CustomerService customerService, AssetScales assetScales,
+                        AssetJournal assetJournal, AssetLockStrategy assetLockStrategy,
+                        StockManagerMetrics metrics, CustomerEventPublisher customerEvents,
+                        CustomerReadModel readModel) {
         this.assetRepository = assetRepository;
         this.customerService = customerService;
+        this.assetScales = assetScales;
+        this.assetJournal = assetJournal;
+        this.assetLockStrategy = assetLockStrategy;
+        this.metrics = metrics;
+        this.customerEvents = customerEvents;
+        this.readModel = readModel;
     }
 
+    /**
+     * Reads an asset the current transaction is going to change, locked according to
+     * the configured {@link AssetLockStrategy}.
+     */
     public Asset getAssetWithLock(Long customerId, String assetName) {
-        return assetRepository.findByCustomerIdAndName(customerId, assetName).orElse(null);
+        try {
+            return metrics.recordLockWait(assetName, () ->
+                    assetLockStrategy.getAssetForUpdate(customerId, assetName));
+        } catch (PessimisticLockingFailureException e) {
+            metrics.lockConflict(assetName);
+            throw e;
+        }
     }
 
-    public Asset saveAsset(Asset asset) {
+    /**
+     * Reads several assets at once and creates the missing ones, locked according to the
+     * configured {@link AssetLockStrategy}. Used by every change of more than one asset.
+     */
+    public Map<AssetKey, Asset> getAssetsWithLock(Collection<AssetKey> keys) {
         try {
-            return assetRepository.save(asset);
+            return metrics.recordLockWait(MULTIPLE_ASSETS_TAG, () -> assetLockStrategy.getAssetsForUpdate(keys));
+        } catch (PessimisticLockingFailureException e) {
+            metrics.lockConflict(MULTIPLE_ASSETS_TAG);
+            throw e;
+        }
+    }
+
+    public Asset getAsset(Long customerId, String assetName) {
+        return assetRepository.findAsset(customerId, assetName).orElse(null);
+    }
+
+    /**
+     * Saves the asset and journals its new state, see {@link AssetJournal}.
+     */
+    public Asset saveAsset(Asset asset, AssetMutationType mutationType) {
+        try {
+            boolean created = asset.getId() == null;
+            Asset savedAsset = assetRepository.save(asset);
+            assetJournal.record(savedAsset, mutationType);
+            Integer version = savedAsset.getVersion();
+            // the version of an existing row is incremented when the change is flushed
+            customerEvents.assetChanged(savedAsset, created || version == null ? version : version + 1,
+                    mutationType);
+            return savedAsset;
         } catch (PessimisticLockException e) {
             logger.error("PessimisticLockException");
-            throw new RuntimeException("The record was updated by another transaction",
+            metrics.lockConflict(asset.getName());
+            throw new LockConflictException("The record was updated by another transaction",
                     e);
         }
     }
 
+    /**
+     * Adds the amount with one UPDATE statement. The first deposit of a customer creates
+     * the TRY row through {@link AssetRepository#lockAssets} and updates it again.
+     */
     @Transactional
-    public void depositMoney(String customerUserName, Double amount) {
+    @RetryOnConflict
+    @Timed(value = "stockmanager.asset.deposit", extraTags = {"mode", "transactional"}, histogram = true)
+    public void depositMoney(String customerUserName, BigDecimal amount) {
         long customerId = customerService.getCustomerId(customerUserName);
-        Asset tryAsset = getAssetWithLock(customerId, TRY_ASSET_NAME);
-        if (tryAsset == null) {
-            tryAsset = new Asset(customerId, TRY_ASSET_NAME, 0d, 0d);
+        long amountUnits = FixedPoint.toUnits(amount, assetScales.scaleOf(TRY_ASSET_NAME));
+        if (assetRepository.addToAsset(customerId, TRY_ASSET_NAME, amountUnits) == 0) {
+            assetRepository.lockAssets(List.of(new AssetKey(customerId, TRY_ASSET_NAME)));
+            assetRepository.addToAsset(customerId, TRY_ASSET_NAME, amountUnits);
         }
-        tryAsset.setSize(tryAsset.getSize() + amount);
-        tryAsset.setUsableSize(tryAsset.getUsableSize() + amount);
-        saveAsset(tryAsset);
+        recordUpdatedAsset(customerId, TRY_ASSET_NAME, AssetMutationType.DEPOSIT);
     }
 
+    /**
+     * Removes the amount with one conditional UPDATE statement, no row is updated when
+     * the usable size is not enough.
+     */
     @Transactional
-    public void withdrawMoney(String customerUserName, Double amount, String iban) {
+    @RetryOnConflict
+    @Timed(value = "stockmanager.asset.withdraw", extraTags = {"mode", "transactional"}, histogram = true)
+    public void withdrawMoney(String customerUserName, BigDecimal amount, String iban) {
         long customerId = customerService.getCustomerId(customerUserName);
-        Asset tryAsset = getAssetWithLock(customerId, TRY_ASSET_NAME);
-        if (tryAsset == null || tryAsset.getUsableSize().compareTo(amount) < 0) {
+        long amountUnits = FixedPoint.toUnits(amount, assetScales.scaleOf(TRY_ASSET_NAME));
+        if (assetRepository.removeFromAsset(customerId, TRY_ASSET_NAME, amountUnits) == 0) {
             logger.error("Insufficient Asset Usable Size for customer:"+customerUserName);
             throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
         }
-        tryAsset.setUsableSize(tryAsset.getUsableSize() - amount);
-        tryAsset.setSize(tryAsset.getSize() - amount);
-        saveAsset(tryAsset);
+        recordUpdatedAsset(customerId, TRY_ASSET_NAME, AssetMutationType.WITHDRAW);
         sendAmountToIban(customerId, amount, iban);
     }
 
-    public void sendAmountToIban(long customerId, Double amount, String iban) {
+    /**
+     * Reserves the usable size of an order with one conditional UPDATE statement.
+     */
+    public void reserveAsset(long customerId, String assetName, long amount) {
+        if (assetRepository.reserveAsset(customerId, assetName, amount) == 0) {
+            // only the failed reservation pays for the second read
+            if (assetRepository.findAsset(customerId, assetName).isEmpty()) {
+                logger.error("Selling Asset Not Found");
+                throw new ResourceNotFoundException("Selling Asset Not Found");
+            }
+            throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
+        }
+        recordUpdatedAsset(customerId, assetName, AssetMutationType.RESERVE);
+    }
+
+    /**
+     * Gives back reserved usable size with one UPDATE statement, used to release the
+     * summed reservations of many orders at once.
+     */
+    public void releaseAsset(long customerId, String assetName, long amount) {
+        if (assetRepository.releaseAsset(customerId, assetName, amount) == 0) {
+            logger.error("Reserved asset {} not found for customer:{}", assetName, customerId);
+            throw new ResourceNotFoundException("Reserved Asset Not Found");
+        }
+        recordUpdatedAsset(customerId, assetName, AssetMutationType.RELEASE);
+    }
+
+    /**
+     * Journals and publishes a row changed by an UPDATE statement, the row is only read
+     * back when the journal is enabled or the customer is observed, see
+     * {@link CustomerEventPublisher#isObserved}.
+     */
+    private void recordUpdatedAsset(long customerId, String assetName, AssetMutationType mutationType) {
+        if (assetJournal.isEnabled() || customerEvents.isObserved(customerId)) {
+            assetRepository.findSnapshot(customerId, assetName).ifPresent(asset -> {
+                assetJournal.record(asset, mutationType);
+                customerEvents.assetChanged(asset, asset.getVersion(), mutationType);
+            });
+        }
+    }
+
+    public void sendAmountToIban(long customerId, BigDecimal amount, String iban) {
         // call send to iban service
     }
 
-    public List<AssetDTO> listAssets(String customerUserName, String assetName) {
+    public PageDTO<AssetDTO> listAssets(String customerUserName, String assetName,
+                                        String cursor, Integer pageSize) {
+        return listAssets(customerUserName, assetName, cursor, pageSize, null);
+    }
+
+    /**
+     * Lists the assets from the {@link CustomerReadModel} when it is enabled and has
+     * seen the changes up to {@code consistencyToken}, from the database otherwise.
+     */
+    public PageDTO<AssetDTO> listAssets(String customerUserName, String assetName,
+                                        String cursor, Integer pageSize, Long consistencyToken) {
         long customerId = customerService.getCustomerId(customerUserName);
-        return assetRepository.findAssets(customerId, assetName)
-                .stream().map(it -> new AssetDTO(it, customerUserName)).toList();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        int size = PageCursor.pageSize(pageSize);
+        Long cursorId = pageCursor == null ? null : pageCursor.id();
+        List<Asset> assets = readModel.findAssets(customerId, assetName, cursorId, size + 1,
+                consistencyToken);
+        if (assets == null) {
+            assets = cursorId == null ?
+                    assetRepository.findAssets(customerId, assetName, PageRequest.of(0, size + 1)) :
+                    assetRepository.findAssetsAfter(customerId, assetName, cursorId,
+                            PageRequest.of(0, size + 1));
+        }
+        String nextCursor = null;
+        if (assets.size() > size) {
+            assets = assets.subList(0, size);
+            nextCursor = new PageCursor(null, assets.get(size - 1).getId()).encode();
+        }
+        return new PageDTO<>(assets.stream().map(it -> new AssetDTO(it, customerUserName,
+                assetScales.scaleOf(it.getName()))).toList(), nextCursor);
     }
 }
@@ -0,0 +1,89 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seckin.stockmanager.dto.BulkOrderRequestDTO;
+import com.seckin.stockmanager.dto.BulkOrderResultDTO;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Matches or cancels every selected PENDING order and streams one NDJSON result line
+ * per order. Orders are processed in chunks of chunkSize, each chunk in its own
+ * transaction, so a large selection never holds its locks for the whole request and
+ * the results of a chunk are written as soon as it commits.
+ */
+@Service
+public class BulkOrderService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkOrderService.class);
+
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BulkOrderService(OrderService orderService, OrderRepository orderRepository,
+                            CustomerService customerService, ObjectMapper objectMapper,
+                            @Value("${stockmanager.orders.bulk-chunk-size:500}") int chunkSize) {
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Resolves the selection before the response starts, so an unknown customer is
+     * still answered with an error status.
+     */
+    public List<Long> selectOrderIds(BulkOrderRequestDTO request) {
+        if (request.orderIds != null && !request.orderIds.isEmpty()) {
+            return request.orderIds.stream().distinct().toList();
+        }
+        Long customerId = request.customerUserName == null ? null :
+                customerService.getCustomerId(request.customerUserName);
+        return orderRepository.findIds(customerId, request.assetName, OrderStatus.PENDING);
+    }
+
+    public void matchOrders(List<Long> orderIds, OutputStream out) throws IOException {
+        run("match", orderIds, orderService::matchOrders, out);
+    }
+
+    public void cancelOrders(List<Long> orderIds, OutputStream out) throws IOException {
+        run("cancel", orderIds, orderService::cancelOrders, out);
+    }
+
+    private void run(String operation, List<Long> orderIds,
+                     Function<List<Long>, List<BulkOrderResultDTO>> chunkOperation,
+                     OutputStream out) throws IOException {
+        long accepted = 0;
+        for (int from = 0; from < orderIds.size(); from += chunkSize) {
+            List<Long> chunk = orderIds.subList(from, Math.min(from + chunkSize, orderIds.size()));
+            List<BulkOrderResultDTO> results;
+            try {
+                results = chunkOperation.apply(chunk);
+            } catch (RuntimeException e) {
+                logger.warn("Bulk {} of {} orders failed", operation, chunk.size(), e);
+                results = chunk.stream().map(id -> new BulkOrderResultDTO(id, e.getMessage())).toList();
+            }
+            for (BulkOrderResultDTO result : results) {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+                if (result.accepted) {
+                    accepted++;
+                }
+            }
+            out.flush();
+        }
+        logger.info("Bulk {} accepted {} of {} orders", operation, accepted, orderIds.size());
+    }
+}
@@ -0,0 +1,133 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.CandleInterval;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ring buffer of the most recent candles of one asset and interval. The candle of a
+ * trade is found by dividing its time by the interval length, so adding a trade costs
+ * the same however many trades or candles there are. A slot is reused when the ring
+ * wraps around, candles have to be flushed before that. A trade arriving after its
+ * candle was drained, or after its slot was reused, is dropped and counted.
+ */
+public class CandleSeries {
+
+    private final String assetName;
+    private final CandleInterval interval;
+    private final long lengthMillis;
+    private final Slot[] slots;
+    private long lastBucket = -1;
+    private long flushedBucket = -1;
+    private long droppedTrades;
+
+    public CandleSeries(String assetName, CandleInterval interval) {
+        this.assetName = assetName;
+        this.interval = interval;
+        this.lengthMillis = interval.getLength().toMillis();
+        this.slots = new Slot[interval.getCapacity()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public synchronized void add(long prize, long quantity, Instant executedAt) {
+        long bucket = executedAt.toEpochMilli() / lengthMillis;
+        Slot slot = slotOf(bucket);
+        if (bucket <= flushedBucket || slot.bucket > bucket) {
+            // the candle of the trade has already been flushed or left the ring
+            droppedTrades++;
+            return;
+        }
+        if (slot.bucket != bucket) {
+            slot.open(bucket, prize);
+        }
+        slot.add(prize, quantity);
+        lastBucket = Math.max(lastBucket, bucket);
+    }
+
+    /**
+     * Up to {@code limit} most recent candles, oldest first. The last one may still be
+     * open.
+     */
+    public synchronized List<Candle> latest(int limit) {
+        List<Candle> candles = new ArrayList<>(Math.min(limit, slots.length));
+        for (long bucket = lastBucket; bucket > lastBucket - slots.length && bucket >= 0
+                && candles.size() < limit; bucket--) {
+            Slot slot = slotOf(bucket);
+            if (slot.bucket == bucket) {
+                candles.add(slot.toCandle());
+            }
+        }
+        Collections.reverse(candles);
+        return candles;
+    }
+
+    /**
+     * Candles closed before {@code closedBefore} that were not drained yet, oldest first.
+     * They count as flushed from now on, in the same step so no trade can change them
+     * between the snapshot and the mark.
+     */
+    public synchronized List<Candle> drainClosed(Instant closedBefore) {
+        long closedBucket = closedBefore.toEpochMilli() / lengthMillis - 1;
+        List<Candle> candles = new ArrayList<>();
+        for (long bucket = Math.max(flushedBucket + 1, closedBucket - slots.length + 1);
+             bucket <= closedBucket; bucket++) {
+            Slot slot = slotOf(bucket);
+            if (slot.bucket == bucket) {
+                candles.add(slot.toCandle());
+            }
+        }
+        flushedBucket = Math.max(flushedBucket, closedBucket);
+        return candles;
+    }
+
+    /**
+     * Trades dropped since the last call, see {@link #add}.
+     */
+    public synchronized long takeDroppedTrades() {
+        long dropped = droppedTrades;
+        droppedTrades = 0;
+        return dropped;
+    }
+
+    private Slot slotOf(long bucket) {
+        return slots[(int) (bucket % slots.length)];
+    }
+
+    private class Slot {
+        private long bucket = -1;
+        private long openPrize;
+        private long highPrize;
+        private long lowPrize;
+        private long closePrize;
+        private long volume;
+        private int tradeCount;
+
+        private void open(long bucket, long prize) {
+            this.bucket = bucket;
+            openPrize = prize;
+            highPrize = prize;
+            lowPrize = prize;
+            volume = 0;
+            tradeCount = 0;
+        }
+
+        private void add(long prize, long quantity) {
+            highPrize = Math.max(highPrize, prize);
+            lowPrize = Math.min(lowPrize, prize);
+            closePrize = prize;
+            volume += quantity;
+            tradeCount++;
+        }
+
+        private Candle toCandle() {
+            return new Candle(assetName, interval, Instant.ofEpochMilli(bucket * lengthMillis),
+                    openPrize, highPrize, lowPrize, closePrize, volume, tradeCount);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.CandleInterval;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.CandleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OHLCV candles of every traded asset, built from the committed trades in one
+ * {@link CandleSeries} per asset and interval. Closed candles are written to the
+ * candles table every {@code stockmanager.candles.flush-interval}, a candle counts as
+ * closed {@code stockmanager.candles.close-delay} after its end so trades committed
+ * a little late are still included. Trades committed later than that are dropped, they
+ * are counted in {@code stockmanager.candles.dropped.trades} and logged. Candles whose
+ * write failed are written again by the next run.
+ */
+@Service
+public class CandleService {
+    private static final Logger logger = LoggerFactory.getLogger(CandleService.class);
+
+    private final CandleRepository candleRepository;
+    private final StockManagerMetrics metrics;
+    private final Duration closeDelay;
+    private final Map<String, Map<CandleInterval, CandleSeries>> series = new ConcurrentHashMap<>();
+    // drained candles whose write failed, written before the candles of the next run
+    private final List<Candle> unwrittenCandles = new ArrayList<>();
+
+    public CandleService(CandleRepository candleRepository, StockManagerMetrics metrics,
+                         @Value("${stockmanager.candles.close-delay:PT1S}") Duration closeDelay) {
+        this.candleRepository = candleRepository;
+        this.metrics = metrics;
+        this.closeDelay = closeDelay;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTradeExecuted(TradeExecutedEvent trade) {
+        series.computeIfAbsent(trade.assetName(), CandleService::newSeries).values()
+                .forEach(it -> it.add(trade.prize(), trade.quantity(), trade.executedAt()));
+    }
+
+    /**
+     * Up to {@code limit} most recent candles of an asset held in memory, oldest first.
+     */
+    public List<Candle> getCandles(String assetName, CandleInterval interval, int limit) {
+        Map<CandleInterval, CandleSeries> assetSeries = series.get(assetName);
+        return assetSeries == null ? List.of() : assetSeries.get(interval).latest(limit);
+    }
+
+    @Scheduled(fixedDelayString = "${stockmanager.candles.flush-interval:PT5S}")
+    public synchronized void flushClosedCandles() {
+        Instant closedBefore = Instant.now().minus(closeDelay);
+        List<Candle> candles = new ArrayList<>(unwrittenCandles);
+        series.forEach((assetName, assetSeries) -> assetSeries.forEach((interval, it) -> {
+            candles.addAll(it.drainClosed(closedBefore));
+            long droppedTrades = it.takeDroppedTrades();
+            if (droppedTrades > 0) {
+                metrics.candleTradesDropped(interval, droppedTrades);
+                logger.warn("Dropped {} trades of {} committed after their {} candle was flushed",
+                        droppedTrades, assetName, interval);
+            }
+        }));
+        unwrittenCandles.clear();
+        if (candles.isEmpty()) {
+            return;
+        }
+        try {
+            candleRepository.saveAll(candles);
+        } catch (RuntimeException e) {
+            logger.error("{} closed candles could not be written, retrying with the next run",
+                    candles.size(), e);
+            // the failed insert may have assigned ids, copies are inserted as new rows
+            candles.forEach(it -> unwrittenCandles.add(new Candle(it.getAssetName(), it.getCandleInterval(),
+                    it.getOpenTime(), it.getOpenPrize(), it.getHighPrize(), it.getLowPrize(),
+                    it.getClosePrize(), it.getVolume(), it.getTradeCount())));
+        }
+    }
+
+    private static Map<CandleInterval, CandleSeries> newSeries(String assetName) {
+        Map<CandleInterval, CandleSeries> assetSeries = new EnumMap<>(CandleInterval.class);
+        for (CandleInterval interval : CandleInterval.values()) {
+            assetSeries.put(interval, new CandleSeries(assetName, interval));
+        }
+        return assetSeries;
+    }
+}
@@ -0,0 +1,23 @@
+package com.seckin.stockmanager.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries the ids of persisted {@link com.seckin.stockmanager.model.AsyncCommand}s from
+ * the request threads to the command consumer. The command rows are the durable
+ * record, a broker only has to deliver the ids in publish order.
+ */
+public interface CommandBroker {
+
+    /**
+     * Returns false without blocking when the broker can not take more commands.
+     */
+    boolean publish(long commandId);
+
+    /**
+     * Waits up to the timeout for the first command id and returns it together with
+     * the ids already available, at most maxBatchSize in total.
+     */
+    List<Long> poll(int maxBatchSize, long timeout, TimeUnit unit) throws InterruptedException;
+}
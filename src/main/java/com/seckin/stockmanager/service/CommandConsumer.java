@@ -0,0 +1,83 @@
+package com.seckin.stockmanager.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single thread that applies queued commands in batches. Commands left QUEUED by a
+ * previous run are applied first, ids delivered again by the broker are skipped once
+ * their command is completed. The commands of a batch that fails as a whole are marked
+ * FAILED.
+ */
+@Component
+public class CommandConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(CommandConsumer.class);
+
+    private final CommandService commandService;
+    private final CommandBroker commandBroker;
+    private final int batchSize;
+    private Thread thread;
+
+    public CommandConsumer(CommandService commandService, CommandBroker commandBroker,
+                           @Value("${stockmanager.commands.batch-size:100}") int batchSize) {
+        this.commandService = commandService;
+        this.commandBroker = commandBroker;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        thread = new Thread(this::run, "command-consumer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        List<Long> queuedCommandIds = commandService.getQueuedCommandIds();
+        if (!queuedCommandIds.isEmpty()) {
+            logger.info("Applying {} commands queued before startup", queuedCommandIds.size());
+        }
+        for (int i = 0; i < queuedCommandIds.size(); i += batchSize) {
+            processBatch(queuedCommandIds.subList(i, Math.min(i + batchSize, queuedCommandIds.size())));
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                processBatch(commandBroker.poll(batchSize, 1, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void processBatch(List<Long> commandIds) {
+        if (commandIds.isEmpty()) {
+            return;
+        }
+        try {
+            commandService.processBatch(commandIds);
+        } catch (RuntimeException e) {
+            logger.error("Command batch failed", e);
+            try {
+                commandService.failQueued(commandIds, "Command batch failed");
+            } catch (RuntimeException failure) {
+                // the commands stay QUEUED and are applied again on the next startup
+                logger.error("Commands of the failed batch could not be marked failed", failure);
+            }
+        }
+    }
+}
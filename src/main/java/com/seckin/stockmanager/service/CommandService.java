@@ -0,0 +1,218 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seckin.stockmanager.dto.BatchOrderResultDTO;
+import com.seckin.stockmanager.dto.CommandDTO;
+import com.seckin.stockmanager.dto.DepositRequestDTO;
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.dto.WithdrawRequestDTO;
+import com.seckin.stockmanager.exception.CommandQueueFullException;
+import com.seckin.stockmanager.exception.ResourceNotFoundException;
+import com.seckin.stockmanager.model.AsyncCommand;
+import com.seckin.stockmanager.model.CommandStatus;
+import com.seckin.stockmanager.model.CommandType;
+import com.seckin.stockmanager.repository.AsyncCommandRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Accepts requests as {@link AsyncCommand}s and applies them for the command consumer.
+ * A command is applied in the same transaction that records its outcome, so a command
+ * found QUEUED after a restart has not changed any asset or order yet. The services
+ * join that transaction and so do not retry conflicts themselves, the whole transaction
+ * is retried here through the {@link ConflictRetryAspect} instead.
+ */
+@Service
+public class CommandService {
+    private static final Logger logger = LoggerFactory.getLogger(CommandService.class);
+
+    private final AsyncCommandRepository commandRepository;
+    private final CommandBroker commandBroker;
+    private final OrderService orderService;
+    private final AssetService assetService;
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final StockManagerMetrics metrics;
+    private final ConflictRetryAspect conflictRetry;
+
+    public CommandService(AsyncCommandRepository commandRepository, CommandBroker commandBroker,
+                          OrderService orderService, AssetService assetService,
+                          CustomerService customerService, ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager, StockManagerMetrics metrics,
+                          ConflictRetryAspect conflictRetry) {
+        this.commandRepository = commandRepository;
+        this.commandBroker = commandBroker;
+        this.orderService = orderService;
+        this.assetService = assetService;
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        this.conflictRetry = conflictRetry;
+    }
+
+    /**
+     * Stores the already validated request and queues it. Only the command row is
+     * written here, the request thread never waits for asset or order locks.
+     */
+    public CommandDTO submit(CommandType type, String customerUserName, Object payload) {
+        AsyncCommand command = commandRepository.save(new AsyncCommand(type, customerUserName,
+                toJson(payload)));
+        if (!commandBroker.publish(command.getId())) {
+            logger.warn("Command queue is full, rejecting {} command of customer:{}", type,
+                    customerUserName);
+            command.fail("Command queue is full");
+            commandRepository.save(command);
+            throw new CommandQueueFullException("Command queue is full");
+        }
+        return new CommandDTO(command);
+    }
+
+    public CommandDTO getCommand(Long commandId, Authentication authentication) {
+        AsyncCommand command = commandRepository.findById(commandId).orElseThrow(() ->
+                new ResourceNotFoundException("Command with ID " + commandId + " not found"));
+        customerService.validateUserAuthenticated(command.getCustomerUserName(), authentication);
+        return new CommandDTO(command);
+    }
+
+    public List<Long> getQueuedCommandIds() {
+        return commandRepository.findIdsByStatus(CommandStatus.QUEUED);
+    }
+
+    /**
+     * Applies the QUEUED commands among the given ids in id order. Consecutive order
+     * creations are applied together as one basket through
+     * {@link OrderService#createOrders}, every other command in its own transaction.
+     */
+    public void processBatch(List<Long> commandIds) {
+        List<AsyncCommand> commands = commandRepository.findAllById(commandIds).stream()
+                .filter(command -> command.getStatus() == CommandStatus.QUEUED)
+                .sorted(Comparator.comparing(AsyncCommand::getId))
+                .toList();
+        List<AsyncCommand> orderCommands = new ArrayList<>();
+        for (AsyncCommand command : commands) {
+            if (command.getType() == CommandType.CREATE_ORDER) {
+                orderCommands.add(command);
+                continue;
+            }
+            applyOrderCommands(orderCommands);
+            orderCommands.clear();
+            applyCommand(command);
+        }
+        applyOrderCommands(orderCommands);
+    }
+
+    /**
+     * Fails the commands among the given ids that are still QUEUED, used when their batch
+     * failed as a whole. A QUEUED command has not changed anything yet, so failing it
+     * is safe and its status no longer shows it as pending.
+     */
+    public void failQueued(List<Long> commandIds, String error) {
+        List<AsyncCommand> commands = commandRepository.findAllById(commandIds).stream()
+                .filter(command -> command.getStatus() == CommandStatus.QUEUED)
+                .toList();
+        commands.forEach(command -> command.fail(error));
+        commandRepository.saveAll(commands);
+    }
+
+    private void applyOrderCommands(List<AsyncCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        if (commands.size() == 1) {
+            applyCommand(commands.get(0));
+            return;
+        }
+        try {
+            inTransaction("CommandService.applyOrderCommands", () -> {
+                List<BatchOrderResultDTO> results = orderService.createOrders(commands.stream()
+                        .map(command -> fromJson(command.getPayload(), OrderDTO.class))
+                        .toList());
+                for (int i = 0; i < commands.size(); i++) {
+                    BatchOrderResultDTO result = results.get(i);
+                    if (result.accepted) {
+                        commands.get(i).succeed(toJson(result.order));
+                    } else {
+                        commands.get(i).fail(result.error);
+                    }
+                }
+                commandRepository.saveAll(commands);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Order basket of {} commands failed, applying them one by one",
+                    commands.size(), e);
+            commands.forEach(this::applyCommand);
+        }
+    }
+
+    private void applyCommand(AsyncCommand command) {
+        try {
+            inTransaction("CommandService.applyCommand", () -> {
+                command.succeed(toJson(apply(command)));
+                commandRepository.save(command);
+            });
+        } catch (RuntimeException e) {
+            logger.info("Command:{} failed: {}", command.getId(), e.getMessage());
+            metrics.failure(e);
+            command.fail(e.getMessage());
+            commandRepository.save(command);
+        }
+    }
+
+    /**
+     * Runs the action in a new transaction, retried as a whole when it fails on a
+     * conflict.
+     */
+    private void inTransaction(String method, Runnable action) {
+        conflictRetry.execute(method, () -> transactionTemplate.execute(status -> {
+            action.run();
+            return null;
+        }));
+    }
+
+    private Object apply(AsyncCommand command) {
+        switch (command.getType()) {
+            case CREATE_ORDER:
+                return orderService.createOrder(fromJson(command.getPayload(), OrderDTO.class));
+            case MATCH_ORDER:
+                orderService.matchOrder(fromJson(command.getPayload(), Long.class));
+                return null;
+            case DEPOSIT:
+                DepositRequestDTO deposit = fromJson(command.getPayload(), DepositRequestDTO.class);
+                assetService.depositMoney(deposit.customerUserName, deposit.amount);
+                return null;
+            case WITHDRAW:
+                WithdrawRequestDTO withdraw = fromJson(command.getPayload(), WithdrawRequestDTO.class);
+                assetService.withdrawMoney(withdraw.customerUserName, withdraw.amount, withdraw.iban);
+                return null;
+            default:
+                throw new IllegalArgumentException("Invalid command type:" + command.getType());
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return value == null ? null : objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Command could not be serialized", e);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Command could not be deserialized", e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.LockConflictException;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Retries {@link RetryOnConflict} methods that failed on a pessimistic lock, lock
+ * timeout, optimistic version conflict or on the unique key of a row another
+ * transaction inserted first. Runs outside of the transaction advice so
+ * every attempt gets a new transaction, and sleeps a random time up to an exponentially
+ * growing backoff between attempts (full jitter) so conflicting requests spread out.
+ * <p>
+ * A call joining a transaction that is already active is not retried, its conflict
+ * marks the outer transaction rollback-only and is left to the outermost retry.
+ * When the attempts are used up the conflict is thrown as {@link LockConflictException}.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+    private static final Logger logger = LoggerFactory.getLogger(ConflictRetryAspect.class);
+
+    private final StockManagerMetrics metrics;
+    private final AssetLockStrategy assetLockStrategy;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public ConflictRetryAspect(StockManagerMetrics metrics, AssetLockStrategy assetLockStrategy,
+                               @Value("${stockmanager.retry.max-attempts:5}") int maxAttempts,
+                               @Value("${stockmanager.retry.initial-backoff:PT0.01S}") Duration initialBackoff,
+                               @Value("${stockmanager.retry.max-backoff:PT0.5S}") Duration maxBackoff) {
+        this.metrics = metrics;
+        this.assetLockStrategy = assetLockStrategy;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    @Around("@annotation(com.seckin.stockmanager.service.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        return retry(joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+                + joinPoint.getSignature().getName(), joinPoint::proceed);
+    }
+
+    /**
+     * Runs the action with the same retries as a {@link RetryOnConflict} method, for
+     * callers that open the transaction themselves, e.g. through a TransactionTemplate,
+     * and so have to retry the whole transaction instead of the calls inside it.
+     */
+    public <T> T execute(String method, Supplier<T> action) {
+        try {
+            return retry(method, action::get);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockConflictException("Interrupted while waiting to retry", e);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> T retry(String method, Attempt<T> attempt) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return attempt.run();
+        }
+        for (int attemptCount = 1; ; attemptCount++) {
+            try {
+                return attempt.run();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                assetLockStrategy.onConflict(e);
+                if (attemptCount >= maxAttempts) {
+                    logger.warn("{} failed on a conflict after {} attempts", method, attemptCount);
+                    metrics.conflictRetriesExhausted(method);
+                    throw e instanceof LockConflictException ? e :
+                            new LockConflictException("The record was updated by another transaction", e);
+                }
+                metrics.conflictRetry(method);
+                backoff(attemptCount);
+            }
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedException {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        long sleepNanos = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+    }
+
+    static boolean isConflict(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof LockConflictException
+                    || cause instanceof PessimisticLockingFailureException
+                    || cause instanceof OptimisticLockingFailureException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof DuplicateKeyException
+                    || cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface Attempt<T> {
+        T run() throws Throwable;
+    }
+}
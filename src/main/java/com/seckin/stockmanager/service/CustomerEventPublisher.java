@@ -0,0 +1,60 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetChangedEvent;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import com.seckin.stockmanager.model.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes order and asset changes of a customer as application events, delivered to
+ * {@link CustomerEventStream} and {@link CustomerReadModel} after the changing
+ * transaction commits. Nothing is published for a customer nobody observes, that is
+ * when the read model is disabled and the customer has no open stream.
+ */
+@Component
+public class CustomerEventPublisher {
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final CustomerEventStream eventStream;
+    private final boolean readModelEnabled;
+
+    public CustomerEventPublisher(ApplicationEventPublisher eventPublisher, CustomerEventStream eventStream,
+                                  @Value("${stockmanager.read-model.enabled:false}") boolean readModelEnabled) {
+        this.eventPublisher = eventPublisher;
+        this.eventStream = eventStream;
+        this.readModelEnabled = readModelEnabled;
+    }
+
+    public boolean isObserved(long customerId) {
+        return readModelEnabled || eventStream.isSubscribed(customerId);
+    }
+
+    public void orderChanged(Order order) {
+        orderChanged(order, order.getStatus());
+    }
+
+    /**
+     * Publishes a change of an order whose new status was written by a bulk UPDATE
+     * and not to the entity.
+     */
+    public void orderChanged(Order order, OrderStatus status) {
+        if (isObserved(order.getCustomerId())) {
+            eventPublisher.publishEvent(OrderChangedEvent.of(order, status));
+        }
+    }
+
+    /**
+     * Publishes the new state of an asset, {@code version} is the version the row is
+     * committed with.
+     */
+    public void assetChanged(Asset asset, Integer version, AssetMutationType mutationType) {
+        if (isObserved(asset.getCustomerId())) {
+            eventPublisher.publishEvent(AssetChangedEvent.of(asset, version, mutationType));
+        }
+    }
+}
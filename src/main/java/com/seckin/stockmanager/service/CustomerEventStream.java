@@ -0,0 +1,173 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.dto.AssetDTO;
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetChangedEvent;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pushes order and asset changes of a customer to its open {@code GET /stream}
+ * connections as server-sent events.
+ * <p>
+ * Changes are published by {@link CustomerEventPublisher} and delivered after the
+ * changing transaction commits. Every connection buffers at most
+ * {@code stockmanager.stream.buffer-size} events that are written by a small pool of
+ * sender threads, a connection whose buffer overflows is closed so the client can
+ * reconnect and read the current state again.
+ */
+@Service
+public class CustomerEventStream {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerEventStream.class);
+
+    private final CustomerService customerService;
+    private final AssetScales assetScales;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+    private final Map<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    public CustomerEventStream(CustomerService customerService, AssetScales assetScales,
+                               @Value("${stockmanager.stream.buffer-size:256}") int bufferSize,
+                               @Value("${stockmanager.stream.timeout:PT1H}") Duration timeout,
+                               @Value("${stockmanager.stream.sender-threads:4}") int senderThreads) {
+        this.customerService = customerService;
+        this.assetScales = assetScales;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "event-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscriptions.values().forEach(it -> it.forEach(Subscription::close));
+    }
+
+    public SseEmitter subscribe(String customerUserName) {
+        long customerId = customerService.getCustomerId(customerUserName);
+        Subscription subscription = new Subscription(customerId, customerUserName);
+        subscriptions.compute(customerId, (id, customerSubscriptions) -> {
+            Set<Subscription> updated = customerSubscriptions == null ?
+                    ConcurrentHashMap.newKeySet() : customerSubscriptions;
+            updated.add(subscription);
+            return updated;
+        });
+        return subscription.emitter;
+    }
+
+    public boolean isSubscribed(long customerId) {
+        return subscriptions.containsKey(customerId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        Order order = event.order();
+        send(order.getCustomerId(), subscription -> SseEmitter.event().name("order")
+                .data(new OrderDTO(order, subscription.customerUserName, assetScales.prizeScale(),
+                        assetScales.scaleOf(order.getAssetName()))));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssetChanged(AssetChangedEvent event) {
+        Asset asset = event.asset();
+        send(asset.getCustomerId(), subscription -> SseEmitter.event().name("asset")
+                .data(new AssetDTO(asset, subscription.customerUserName,
+                        assetScales.scaleOf(asset.getName()))));
+    }
+
+    private void send(long customerId, Function<Subscription, SseEmitter.SseEventBuilder> event) {
+        Set<Subscription> customerSubscriptions = subscriptions.get(customerId);
+        if (customerSubscriptions != null) {
+            customerSubscriptions.forEach(subscription -> subscription.offer(event.apply(subscription)));
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.computeIfPresent(subscription.customerId, (customerId, customerSubscriptions) -> {
+            customerSubscriptions.remove(subscription);
+            return customerSubscriptions.isEmpty() ? null : customerSubscriptions;
+        });
+    }
+
+    private class Subscription {
+        private final long customerId;
+        private final String customerUserName;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer;
+        // true while a sender owns the connection, events are written by one thread at a time
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscription(long customerId, String customerUserName) {
+            this.customerId = customerId;
+            this.customerUserName = customerUserName;
+            this.emitter = new SseEmitter(timeoutMillis);
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            emitter.onCompletion(() -> remove(this));
+            emitter.onTimeout(() -> remove(this));
+            emitter.onError(e -> remove(this));
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (!buffer.offer(event)) {
+                logger.warn("Event buffer of customer:{} is full, closing the stream", customerId);
+                close();
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            SseEmitter.SseEventBuilder event;
+            try {
+                while ((event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Stream of customer:{} is closed", customerId, e);
+                close();
+                return;
+            } finally {
+                sending.set(false);
+            }
+            // an event offered while the sender was finishing is picked up here
+            if (!buffer.isEmpty() && sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void close() {
+            remove(this);
+            buffer.clear();
+            emitter.complete();
+        }
+    }
+}
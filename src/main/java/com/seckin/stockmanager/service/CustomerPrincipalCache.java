@@ -0,0 +1,89 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Customer;
+import com.seckin.stockmanager.model.CustomerRole;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded least recently used cache of resolved customers, shared by the security layer
+ * and the services so a request does not look its customer up more than once.
+ * Entries are evicted when the customer is saved.
+ */
+@Component
+public class CustomerPrincipalCache implements MeterBinder {
+
+    private final Map<String, CustomerPrincipal> principals;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CustomerPrincipalCache(@Value("${stockmanager.principal-cache.max-size:10000}") int maxSize) {
+        this.principals = Collections.synchronizedMap(
+                new LinkedHashMap<String, CustomerPrincipal>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CustomerPrincipal> eldest) {
+                        return size() > maxSize;
+                    }
+                });
+    }
+
+    /**
+     * Returns the cached principal or resolves it with the loader. Unknown usernames
+     * are not cached.
+     */
+    public CustomerPrincipal get(String username, Function<String, CustomerPrincipal> loader) {
+        CustomerPrincipal principal = principals.get(username);
+        if (principal != null) {
+            hits.increment();
+            return principal;
+        }
+        misses.increment();
+        principal = loader.apply(username);
+        if (principal != null) {
+            principals.put(username, principal);
+        }
+        return principal;
+    }
+
+    public void evict(String username) {
+        principals.remove(username);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stockmanager.principal.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("stockmanager.principal.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("stockmanager.principal.cache.hit.ratio", this, CustomerPrincipalCache::hitRatio)
+                .register(registry);
+        Gauge.builder("stockmanager.principal.cache.size", principals, Map::size)
+                .register(registry);
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public record CustomerPrincipal(Long id, String username, String password, CustomerRole role) {
+
+        public static CustomerPrincipal of(Customer customer) {
+            return new CustomerPrincipal(customer.getId(), customer.getUsername(),
+                    customer.getPassword(), customer.getRole());
+        }
+    }
+}
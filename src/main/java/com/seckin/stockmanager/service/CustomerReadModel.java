@@ -0,0 +1,326 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetChangedEvent;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional in-memory projection of the assets and most recent orders of a customer,
+ * serving {@code /assets/list} and {@code /orders/list} without a database query.
+ * <p>
+ * The view of a customer is loaded on its first read and then follows the committed
+ * {@link OrderChangedEvent}s and {@link AssetChangedEvent}s. Events arriving while the
+ * view loads are buffered and replayed on top of it. An asset is only replaced by an
+ * equal or newer version and an order never leaves a final status or grows, so a
+ * replayed or late event can not take the view back. Every event increases the version
+ * of the view, which is handed to clients as a consistency token; a read with a token
+ * the view has not reached yet is served by the database. At most
+ * {@code stockmanager.read-model.max-customers} views are kept, least recently used
+ * first out, each with the newest {@code stockmanager.read-model.max-orders} orders.
+ */
+@Component
+public class CustomerReadModel {
+    private static final Logger logger = LoggerFactory.getLogger(CustomerReadModel.class);
+    public static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
+
+    // newest order first, the order of OrderRepository#findOrders
+    private static final Comparator<OrderKey> NEWEST_FIRST =
+            Comparator.comparing(OrderKey::createDate).thenComparingLong(OrderKey::id).reversed();
+
+    private final AssetRepository assetRepository;
+    private final OrderRepository orderRepository;
+    private final CustomerService customerService;
+    private final boolean enabled;
+    private final int maxOrders;
+    private final Map<Long, CustomerView> views;
+    // shared by all views, so a view loaded again never hands out a token it handed out before
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CustomerReadModel(AssetRepository assetRepository, OrderRepository orderRepository,
+                             CustomerService customerService,
+                             @Value("${stockmanager.read-model.enabled:false}") boolean enabled,
+                             @Value("${stockmanager.read-model.max-customers:10000}") int maxCustomers,
+                             @Value("${stockmanager.read-model.max-orders:1000}") int maxOrders) {
+        this.assetRepository = assetRepository;
+        this.orderRepository = orderRepository;
+        this.customerService = customerService;
+        this.enabled = enabled;
+        this.maxOrders = maxOrders;
+        this.views = Collections.synchronizedMap(
+                new LinkedHashMap<Long, CustomerView>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, CustomerView> eldest) {
+                        return size() > maxCustomers;
+                    }
+                });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The token a client sends back with a list request to read its own writes, null
+     * when the read model is disabled.
+     */
+    public Long getConsistencyToken(String customerUserName) {
+        if (!enabled) {
+            return null;
+        }
+        CustomerView view = views.get(customerService.getCustomerId(customerUserName));
+        return view == null ? sequence.get() : view.getVersion();
+    }
+
+    /**
+     * Same rows as {@link AssetRepository#findAssets} and
+     * {@link AssetRepository#findAssetsAfter}, null when the view can not serve the read
+     * and the database has to.
+     */
+    public List<Asset> findAssets(long customerId, String name, Long cursorId, int limit,
+                                  Long consistencyToken) {
+        CustomerView view = readableView(customerId, consistencyToken);
+        return view == null ? null : view.findAssets(name, cursorId, limit);
+    }
+
+    /**
+     * Same rows as {@link OrderRepository#findOrders} and
+     * {@link OrderRepository#findOrdersAfter}, null when the view can not serve the read
+     * and the database has to, e.g. when the page reaches past the orders kept in memory.
+     */
+    public List<Order> findOrders(long customerId, Instant minDate, Instant maxDate, OrderSide orderSide,
+                                  String assetName, OrderStatus status, Instant cursorDate, Long cursorId,
+                                  int limit, Long consistencyToken) {
+        CustomerView view = readableView(customerId, consistencyToken);
+        return view == null ? null : view.findOrders(new OrderFilter(minDate, maxDate, orderSide,
+                assetName, status), cursorDate == null ? null : new OrderKey(cursorDate, cursorId), limit);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        apply(event.order().getCustomerId(), event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssetChanged(AssetChangedEvent event) {
+        apply(event.asset().getCustomerId(), event);
+    }
+
+    private void apply(long customerId, Object event) {
+        if (!enabled) {
+            return;
+        }
+        CustomerView view = views.get(customerId);
+        if (view != null) {
+            view.apply(event);
+        }
+    }
+
+    private CustomerView readableView(long customerId, Long consistencyToken) {
+        if (!enabled) {
+            return null;
+        }
+        CustomerView view = views.computeIfAbsent(customerId, it -> new CustomerView(sequence.get()));
+        if (view.startLoading()) {
+            load(customerId, view);
+        }
+        return view.isReadable(consistencyToken) ? view : null;
+    }
+
+    /**
+     * Reads the view outside of its lock, events committed meanwhile are buffered by the
+     * view until the rows are in place.
+     */
+    private void load(long customerId, CustomerView view) {
+        try {
+            List<Asset> assets = assetRepository.findAssets(customerId, null, Pageable.unpaged());
+            // one extra row tells whether the customer has more orders than are kept
+            List<Order> orders = orderRepository.findOrders(customerId, null, null, null, null, null,
+                    PageRequest.of(0, maxOrders + 1));
+            view.load(assets, orders);
+        } catch (RuntimeException e) {
+            logger.warn("Read model of customer:{} could not be loaded", customerId, e);
+            view.loadFailed();
+        }
+    }
+
+    private class CustomerView {
+        private final NavigableMap<Long, Asset> assets = new TreeMap<>();
+        private final NavigableMap<OrderKey, Order> orders = new TreeMap<>(NEWEST_FIRST);
+        private final Map<Long, OrderKey> orderKeys = new HashMap<>();
+        private final List<Object> bufferedEvents = new ArrayList<>();
+        private long version;
+        private boolean loading;
+        private boolean loaded;
+        // false when the customer has older orders than the ones kept
+        private boolean complete;
+
+        private CustomerView(long version) {
+            this.version = version;
+        }
+
+        private synchronized long getVersion() {
+            return version;
+        }
+
+        private synchronized boolean startLoading() {
+            if (loaded || loading) {
+                return false;
+            }
+            loading = true;
+            return true;
+        }
+
+        private synchronized void loadFailed() {
+            loading = false;
+            bufferedEvents.clear();
+        }
+
+        private synchronized void load(List<Asset> loadedAssets, List<Order> loadedOrders) {
+            loadedAssets.forEach(asset -> assets.put(asset.getId(), asset));
+            complete = loadedOrders.size() <= maxOrders;
+            loadedOrders.stream().limit(maxOrders).forEach(this::putOrder);
+            bufferedEvents.forEach(this::applyLoaded);
+            bufferedEvents.clear();
+            loading = false;
+            loaded = true;
+        }
+
+        private synchronized boolean isReadable(Long consistencyToken) {
+            return loaded && (consistencyToken == null || version >= consistencyToken);
+        }
+
+        private synchronized void apply(Object event) {
+            version = sequence.incrementAndGet();
+            if (loaded) {
+                applyLoaded(event);
+            } else if (loading) {
+                bufferedEvents.add(event);
+            }
+            // otherwise the next load reads the committed change from the database
+        }
+
+        private void applyLoaded(Object event) {
+            if (event instanceof OrderChangedEvent orderChanged) {
+                applyOrder(orderChanged.order());
+            } else if (event instanceof AssetChangedEvent assetChanged) {
+                applyAsset(assetChanged.asset());
+            }
+        }
+
+        private void applyAsset(Asset asset) {
+            if (asset.getId() == null) {
+                return;
+            }
+            Asset current = assets.get(asset.getId());
+            // changes of one transaction share the version of the row they commit
+            if (current == null || current.getVersion() == null || asset.getVersion() == null
+                    || asset.getVersion() >= current.getVersion()) {
+                assets.put(asset.getId(), asset);
+            }
+        }
+
+        private void applyOrder(Order order) {
+            OrderKey key = orderKeys.get(order.getId());
+            if (key == null) {
+                // an order without create date is only known by id, e.g. an expired one
+                if (order.getCreateDate() != null && (complete || orders.isEmpty()
+                        || NEWEST_FIRST.compare(new OrderKey(order.getCreateDate(), order.getId()),
+                        orders.lastKey()) < 0)) {
+                    putOrder(order);
+                }
+                return;
+            }
+            Order current = orders.get(key);
+            if (current.getStatus() != OrderStatus.PENDING
+                    || order.getStatus() == OrderStatus.PENDING && order.getSize() > current.getSize()) {
+                // a late event of an order that already moved on
+                return;
+            }
+            if (order.getCreateDate() == null) {
+                // the event is shared with other listeners, the merged order is a copy
+                Order merged = OrderChangedEvent.of(order, order.getStatus()).order();
+                merged.setCreateDate(current.getCreateDate());
+                merged.setExpiresAt(current.getExpiresAt());
+                order = merged;
+            }
+            orders.put(key, order);
+        }
+
+        private void putOrder(Order order) {
+            OrderKey key = new OrderKey(order.getCreateDate(), order.getId());
+            orders.put(key, order);
+            orderKeys.put(order.getId(), key);
+            if (orders.size() > maxOrders) {
+                Order oldest = orders.pollLastEntry().getValue();
+                orderKeys.remove(oldest.getId());
+                complete = false;
+            }
+        }
+
+        private synchronized List<Asset> findAssets(String name, Long cursorId, int limit) {
+            List<Asset> page = new ArrayList<>(Math.min(limit, assets.size()));
+            for (Asset asset : (cursorId == null ? assets : assets.tailMap(cursorId, false)).values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (name == null || name.equals(asset.getName())) {
+                    page.add(asset);
+                }
+            }
+            return page;
+        }
+
+        private synchronized List<Order> findOrders(OrderFilter filter, OrderKey cursor, int limit) {
+            List<Order> page = new ArrayList<>(Math.min(limit, orders.size()));
+            for (Order order : (cursor == null ? orders : orders.tailMap(cursor, false)).values()) {
+                if (page.size() == limit) {
+                    return page;
+                }
+                if (filter.matches(order)) {
+                    page.add(order);
+                }
+            }
+            // the rest of the page may be older than the orders kept
+            return page.size() == limit || complete ? page : null;
+        }
+    }
+
+    private record OrderKey(Instant createDate, long id) {
+    }
+
+    private record OrderFilter(Instant minDate, Instant maxDate, OrderSide orderSide, String assetName,
+                               OrderStatus status) {
+
+        private boolean matches(Order order) {
+            return (minDate == null || !order.getCreateDate().isBefore(minDate))
+                    && (maxDate == null || !order.getCreateDate().isAfter(maxDate))
+                    && (orderSide == null || orderSide == order.getOrderSide())
+                    && (assetName == null || assetName.equals(order.getAssetName()))
+                    && (status == null || status == order.getStatus());
+        }
+    }
+}
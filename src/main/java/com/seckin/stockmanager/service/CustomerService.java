@@ -6,6 +6,7 @@ import com.seckin.stockmanager.exception.ResourceNotFoundException;
 import com.seckin.stockmanager.model.Customer;
 import com.seckin.stockmanager.model.CustomerRole;
 import com.seckin.stockmanager.repository.CustomerRepository;
+import com.seckin.stockmanager.service.CustomerPrincipalCache.CustomerPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.access.AccessDeniedException;
@@ -16,9 +17,12 @@ import org.springframework.stereotype.Service;
 public class CustomerService {
     private static final Logger logger = LoggerFactory.getLogger(CustomerService.class);
     private CustomerRepository customerRepository;
+    private CustomerPrincipalCache principalCache;
 
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           CustomerPrincipalCache principalCache) {
         this.customerRepository = customerRepository;
+        this.principalCache = principalCache;
     }
 
     public Customer getCustomer(String username) {
@@ -28,8 +32,20 @@ public class CustomerService {
         return customerRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Resolves the id, role and password of a customer through the principal cache,
+     * returns null for an unknown username.
+     */
+    public CustomerPrincipal getPrincipal(String username) {
+        return principalCache.get(username, name ->
+                customerRepository.findByUsername(name).map(CustomerPrincipal::of).orElse(null));
+    }
+
     public Customer save(Customer customer) {
-        return customerRepository.save(customer);
+        Customer savedCustomer = customerRepository.save(customer);
+        // registration and role changes have to be visible to the next request
+        principalCache.evict(customer.getUsername());
+        return savedCustomer;
     }
 
     public CustomerDTO addNewCustomer(String username, String password) {
@@ -44,20 +60,20 @@ public class CustomerService {
     }
 
     public Long getCustomerId(String userName) {
-        Customer customer = getCustomer(userName);
+        CustomerPrincipal customer = getPrincipal(userName);
         if(customer==null){
             logger.error("Customer Not found with userName:" +userName);
             throw  new ResourceNotFoundException("Customer Not Found");
         }
-        return customer.getId();
+        return customer.id();
     }
 
     public void validateUserAuthenticated(String customerUserName,
                                           Authentication authentication) {
         String authenticatedUserName = authentication.getName();
-        Customer authenticatedUser = getCustomer(authenticatedUserName);
+        CustomerPrincipal authenticatedUser = getPrincipal(authenticatedUserName);
         if (authenticatedUser == null ||
-                (authenticatedUser.getRole() != CustomerRole.ADMIN
+                (authenticatedUser.role() != CustomerRole.ADMIN
                         && !customerUserName.equals(authenticatedUserName))) {
             logger.error("Access request to different user");
             throw new AccessDeniedException("You can only access your own orders.");
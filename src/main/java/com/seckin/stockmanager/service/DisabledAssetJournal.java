@@ -0,0 +1,20 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetMutationType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "stockmanager.journal.enabled", havingValue = "false", matchIfMissing = true)
+public class DisabledAssetJournal implements AssetJournal {
+
+    @Override
+    public void record(Asset asset, AssetMutationType mutationType) {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,246 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seckin.stockmanager.exception.IdempotencyKeyReusedException;
+import com.seckin.stockmanager.exception.InvalidIdempotencyKeyException;
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.model.IdempotentRequest;
+import com.seckin.stockmanager.repository.IdempotentRequestRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Executes a request sent with an {@code Idempotency-Key} at most once per customer and
+ * key, a retried request gets the response of the first one.
+ * <p>
+ * Responses are kept in a bounded least recently used cache for
+ * {@code stockmanager.idempotency.ttl} and in the {@link IdempotentRequest} table,
+ * which is read on a cache miss so keys survive eviction and restarts. A duplicate
+ * arriving while the first request is still executing waits for its response. The
+ * table row is written before the request executes, so a duplicate sent to another
+ * instance is rejected as a conflict instead of executing again. A failed request
+ * releases its key. A row left incomplete for longer than
+ * {@code stockmanager.idempotency.lease}, by a crash between the claim and the response,
+ * is taken over by the next request with the key, which executes it again.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotentRequestRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Map<RequestKey, Entry> entries;
+
+    public IdempotencyService(IdempotentRequestRepository repository, ObjectMapper objectMapper,
+                              @Value("${stockmanager.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${stockmanager.idempotency.lease:PT1M}") Duration lease,
+                              @Value("${stockmanager.idempotency.max-entries:10000}") int maxEntries) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.entries = Collections.synchronizedMap(
+                new LinkedHashMap<RequestKey, Entry>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<RequestKey, Entry> eldest) {
+                        return size() > maxEntries;
+                    }
+                });
+    }
+
+    /**
+     * Runs the action unless the customer already sent the key, the response of the
+     * action has to be serializable as json. Without a key the action always runs.
+     */
+    public <T> T execute(String idempotencyKey, String customerUserName, String operation,
+                         Object request, Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key must have 1 to "
+                    + MAX_KEY_LENGTH + " characters");
+        }
+        RequestKey key = new RequestKey(customerUserName, idempotencyKey);
+        String requestHash = hash(operation, request);
+        Instant now = Instant.now();
+        Entry entry = new Entry(requestHash, now.plus(ttl));
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+            if (existing == null || existing.isExpired(now)) {
+                entries.put(key, entry);
+                existing = null;
+            }
+        }
+        if (existing != null) {
+            return replay(existing, requestHash, responseType);
+        }
+        try {
+            return executeOnce(key, requestHash, now, responseType, action, entry);
+        } catch (RuntimeException e) {
+            // waiting duplicates fail the same way, later retries execute again
+            entries.remove(key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stockmanager.idempotency.cleanup-interval:PT10M}")
+    @Transactional
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.isExpired(now));
+        }
+        int deleted = repository.deleteCreatedBefore(now.minus(ttl));
+        if (deleted > 0) {
+            logger.info("Deleted {} expired idempotent requests", deleted);
+        }
+    }
+
+    private <T> T executeOnce(RequestKey key, String requestHash, Instant now, Class<T> responseType,
+                              Supplier<T> action, Entry entry) {
+        Optional<IdempotentRequest> stored = findStored(key, now);
+        if (stored.isPresent()) {
+            IdempotentRequest storedRequest = stored.get();
+            checkRequestHash(storedRequest.getRequestHash(), requestHash);
+            if (storedRequest.isCompleted()) {
+                entry.response.complete(storedRequest.getResponse());
+                return fromJson(storedRequest.getResponse(), responseType);
+            }
+            // the conditional delete lets only one instance take over a stale claim
+            if (storedRequest.getCreateDate() == null || !storedRequest.getCreateDate().isBefore(now.minus(lease))
+                    || repository.deleteStaleClaim(storedRequest.getId(), now.minus(lease)) == 0) {
+                throw new LockConflictException("A request with this Idempotency-Key is in progress", null);
+            }
+            logger.warn("Taking over Idempotency-Key {} left incomplete since {}", key.idempotencyKey(),
+                    storedRequest.getCreateDate());
+        }
+        IdempotentRequest claim;
+        try {
+            claim = repository.saveAndFlush(new IdempotentRequest(key.customerUserName(),
+                    key.idempotencyKey(), requestHash));
+        } catch (DataIntegrityViolationException e) {
+            throw new LockConflictException("A request with this Idempotency-Key is in progress", e);
+        }
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            repository.delete(claim);
+            throw e;
+        }
+        String response = toJson(result);
+        claim.complete(response);
+        try {
+            repository.save(claim);
+        } catch (RuntimeException e) {
+            // the action is done, the incomplete row keeps rejecting the key until it expires
+            logger.warn("Response of Idempotency-Key {} could not be stored", key.idempotencyKey(), e);
+        }
+        entry.response.complete(response);
+        return result;
+    }
+
+    private Optional<IdempotentRequest> findStored(RequestKey key, Instant now) {
+        Optional<IdempotentRequest> stored = repository.findByCustomerUserNameAndIdempotencyKey(
+                key.customerUserName(), key.idempotencyKey());
+        if (stored.isPresent() && stored.get().getCreateDate() != null
+                && stored.get().getCreateDate().isBefore(now.minus(ttl))) {
+            // expired but not purged yet, the key can be used again
+            repository.delete(stored.get());
+            return Optional.empty();
+        }
+        return stored;
+    }
+
+    private <T> T replay(Entry entry, String requestHash, Class<T> responseType) {
+        checkRequestHash(entry.requestHash, requestHash);
+        try {
+            return fromJson(entry.response.join(), responseType);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void checkRequestHash(String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private String hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request could not be hashed", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return value == null ? null : objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response could not be serialized", e);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return json == null ? null : objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response could not be deserialized", e);
+        }
+    }
+
+    private record RequestKey(String customerUserName, String idempotencyKey) {
+    }
+
+    private static class Entry {
+        private final String requestHash;
+        private final Instant expiresAt;
+        // json of the response, completed exceptionally when the request fails
+        private final CompletableFuture<String> response = new CompletableFuture<>();
+
+        private Entry(String requestHash, Instant expiresAt) {
+            this.requestHash = requestHash;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(Instant now) {
+            return response.isDone() && expiresAt.isBefore(now);
+        }
+    }
+}
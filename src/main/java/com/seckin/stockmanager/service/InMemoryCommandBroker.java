@@ -0,0 +1,38 @@
+package com.seckin.stockmanager.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "stockmanager.commands.broker", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryCommandBroker implements CommandBroker {
+    private final BlockingQueue<Long> queue;
+
+    public InMemoryCommandBroker(@Value("${stockmanager.commands.queue-capacity:10000}") int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean publish(long commandId) {
+        return queue.offer(commandId);
+    }
+
+    @Override
+    public List<Long> poll(int maxBatchSize, long timeout, TimeUnit unit) throws InterruptedException {
+        Long first = queue.poll(timeout, unit);
+        if (first == null) {
+            return List.of();
+        }
+        List<Long> commandIds = new ArrayList<>(maxBatchSize);
+        commandIds.add(first);
+        queue.drainTo(commandIds, maxBatchSize - 1);
+        return commandIds;
+    }
+}
@@ -0,0 +1,76 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.CandleInterval;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.CandleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Last traded prize per asset in TRY units. Prizes are replaced with a compare and set
+ * by the committed trades and read without locking. After a restart the cache starts
+ * from the close prizes of the last flushed candles.
+ */
+@Component
+public class LastPriceCache {
+    private static final Logger logger = LoggerFactory.getLogger(LastPriceCache.class);
+
+    private final CandleRepository candleRepository;
+    private final Map<String, AtomicReference<LastPrice>> prices = new ConcurrentHashMap<>();
+
+    public LastPriceCache(CandleRepository candleRepository) {
+        this.candleRepository = candleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        candleRepository.findLatest(CandleInterval.SECOND).forEach(candle ->
+                update(candle.getAssetName(), candle.getClosePrize(),
+                        candle.getOpenTime().plus(CandleInterval.SECOND.getLength())));
+        logger.info("Loaded last prices of {} assets", prices.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTradeExecuted(TradeExecutedEvent trade) {
+        update(trade.assetName(), trade.prize(), trade.executedAt());
+    }
+
+    /**
+     * The last prize of the asset or null when it has not been traded.
+     */
+    public Long getPrize(String assetName) {
+        AtomicReference<LastPrice> price = prices.get(assetName);
+        return price == null ? null : price.get().prize();
+    }
+
+    private void update(String assetName, long prize, Instant executedAt) {
+        LastPrice lastPrice = new LastPrice(prize, executedAt);
+        AtomicReference<LastPrice> price = prices.get(assetName);
+        if (price == null) {
+            price = prices.putIfAbsent(assetName, new AtomicReference<>(lastPrice));
+            if (price == null) {
+                return;
+            }
+        }
+        // trades of concurrent transactions may be committed out of order
+        LastPrice current;
+        do {
+            current = price.get();
+            if (current.executedAt().isAfter(executedAt)) {
+                return;
+            }
+        } while (!price.compareAndSet(current, lastPrice));
+    }
+
+    private record LastPrice(long prize, Instant executedAt) {
+    }
+}
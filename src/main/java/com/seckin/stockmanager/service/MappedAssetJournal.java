@@ -0,0 +1,480 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of asset balances in memory mapped segment files.
+ * <p>
+ * Every record holds the full state of one asset after a committed mutation together
+ * with the asset version, so replaying keeps the record with the highest version per
+ * asset no matter in which order concurrent transactions were journaled. A single
+ * writer thread appends the records of all waiting callers and forces the segment
+ * once per batch (group commit). Snapshots hold the latest record of every asset;
+ * recovery loads the newest snapshot and replays the segments written after it.
+ * <p>
+ * The records of a transaction are appended right before it commits, while it still
+ * holds its row locks, so a failed journal write rolls the transaction back. A commit
+ * failing after that leaves a record of a change that did not happen, which the next
+ * record of the same asset supersedes.
+ * <p>
+ * Files in the journal directory:
+ * <pre>
+ * journal-&lt;first sequence&gt;.log   records: int length, int crc32, payload
+ * snapshot-&lt;last sequence&gt;.bin   all balances up to and including the sequence
+ * </pre>
+ */
+@Component
+@ConditionalOnProperty(name = "stockmanager.journal.enabled", havingValue = "true")
+public class MappedAssetJournal implements AssetJournal {
+    private static final Logger logger = LoggerFactory.getLogger(MappedAssetJournal.class);
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x534d4a53;
+    // record length and crc32 in front of every payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    // sequence, mutation type, customer id, version, size, usable size, name length
+    private static final int FIXED_PAYLOAD_SIZE = 8 + 1 + 8 + 4 + 8 + 8 + 2;
+
+    private final EntityManager entityManager;
+    private final Path directory;
+    private final int segmentSize;
+    private final int groupCommitSize;
+    private final BlockingQueue<JournalRequest> queue = new LinkedBlockingQueue<>();
+    // owned by the writer thread once the journal is started
+    private final Map<AssetKey, Entry> balances = new HashMap<>();
+    private long nextSequence = 1;
+    private MappedByteBuffer segment;
+    private Thread writer;
+
+    public MappedAssetJournal(EntityManager entityManager,
+                              @Value("${stockmanager.journal.directory:journal}") String directory,
+                              @Value("${stockmanager.journal.segment-size:67108864}") int segmentSize,
+                              @Value("${stockmanager.journal.group-commit-size:1024}") int groupCommitSize) {
+        this.entityManager = entityManager;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.groupCommitSize = groupCommitSize;
+    }
+
+    /**
+     * State of one asset as journaled.
+     */
+    public record Entry(long customerId, String name, int version, long size, long usableSize) {
+
+        public static Entry of(Asset asset) {
+            return new Entry(asset.getCustomerId(), asset.getName(),
+                    asset.getVersion() == null ? 0 : asset.getVersion(), asset.getSize(),
+                    asset.getUsableSize());
+        }
+
+        public AssetKey key() {
+            return new AssetKey(customerId, name);
+        }
+    }
+
+    private record JournalRequest(Entry entry, AssetMutationType mutationType,
+                                  CompletableFuture<Long> written) {
+        boolean isSnapshot() {
+            return entry == null;
+        }
+    }
+
+    private record WrittenRecord(JournalRequest request, long sequence) {
+    }
+
+    private record PendingRecord(Asset asset, AssetMutationType mutationType) {
+    }
+
+    /**
+     * Records of the current transaction, appended and awaited together before it
+     * commits. Only the last record of an asset is kept, it holds the final state.
+     */
+    private class PendingRecords implements TransactionSynchronization {
+        private final Map<AssetKey, PendingRecord> records = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // flushed first so that the entries hold the versions the commit writes
+            entityManager.flush();
+            records.values().stream()
+                    .map(record -> append(Entry.of(record.asset()), record.mutationType()))
+                    .toList()
+                    .forEach(MappedAssetJournal::await);
+        }
+    }
+
+    /**
+     * Loads the newest readable snapshot and replays the journal records written after
+     * it. Has to be called before {@link #start()}, returns the recovered balances.
+     */
+    public synchronized Map<AssetKey, Entry> recover() throws IOException {
+        Files.createDirectories(directory);
+        balances.clear();
+        long snapshotSequence = loadLatestSnapshot();
+        nextSequence = snapshotSequence + 1;
+        long replayed = 0;
+        for (Path segmentPath : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            replayed += replaySegment(segmentPath, snapshotSequence);
+        }
+        logger.info("Recovered {} asset balances from snapshot {} and {} journal records",
+                balances.size(), snapshotSequence, replayed);
+        return new HashMap<>(balances);
+    }
+
+    /**
+     * Replaces the journaled balances with the given ones and writes them as a
+     * snapshot, older snapshots and segments are deleted. Has to be called before
+     * {@link #start()}.
+     */
+    public synchronized void checkpoint(Collection<Entry> entries) throws IOException {
+        balances.clear();
+        entries.forEach(entry -> balances.put(entry.key(), entry));
+        writeSnapshot(nextSequence - 1);
+    }
+
+    /**
+     * Opens a new segment and starts the writer thread.
+     */
+    public synchronized void start() throws IOException {
+        openSegment();
+        writer = new Thread(this::runWriter, "asset-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void record(Asset asset, AssetMutationType mutationType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            await(append(Entry.of(asset), mutationType));
+            return;
+        }
+        PendingRecords pending = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(PendingRecords.class::isInstance)
+                .map(PendingRecords.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    PendingRecords records = new PendingRecords();
+                    TransactionSynchronizationManager.registerSynchronization(records);
+                    return records;
+                });
+        pending.records.put(new AssetKey(asset.getCustomerId(), asset.getName()),
+                new PendingRecord(asset, mutationType));
+    }
+
+    /**
+     * Queues a record, the returned future completes with its sequence once the
+     * record is forced to disk.
+     */
+    public CompletableFuture<Long> append(Entry entry, AssetMutationType mutationType) {
+        CompletableFuture<Long> written = new CompletableFuture<>();
+        queue.add(new JournalRequest(entry, mutationType, written));
+        return written;
+    }
+
+    /**
+     * Writes a snapshot of all balances after the records queued so far, the
+     * returned future completes with the last sequence it contains.
+     */
+    @Scheduled(fixedDelayString = "${stockmanager.journal.snapshot-interval:PT5M}",
+            initialDelayString = "${stockmanager.journal.snapshot-interval:PT5M}")
+    public CompletableFuture<Long> snapshot() {
+        CompletableFuture<Long> written = new CompletableFuture<>();
+        queue.add(new JournalRequest(null, null, written));
+        return written;
+    }
+
+    private static void await(CompletableFuture<Long> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            logger.error("Asset balance could not be journaled", e.getCause());
+            throw e;
+        }
+    }
+
+    private void runWriter() {
+        List<JournalRequest> batch = new ArrayList<>(groupCommitSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, groupCommitSize - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+        queue.drainTo(batch);
+        writeBatch(batch);
+    }
+
+    private void writeBatch(List<JournalRequest> batch) {
+        List<WrittenRecord> written = new ArrayList<>(batch.size());
+        try {
+            for (JournalRequest request : batch) {
+                if (request.isSnapshot()) {
+                    completeWritten(written);
+                    long sequence = nextSequence - 1;
+                    writeSnapshot(sequence);
+                    openSegment();
+                    request.written().complete(sequence);
+                } else {
+                    written.add(new WrittenRecord(request, writeRecord(request)));
+                }
+            }
+            completeWritten(written);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Asset journal write failed", e);
+            batch.forEach(request -> request.written().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Forces the records of the batch to disk with one call and only then reports them
+     * as written.
+     */
+    private void completeWritten(List<WrittenRecord> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        segment.force();
+        written.forEach(record -> record.request().written().complete(record.sequence()));
+        written.clear();
+    }
+
+    private long writeRecord(JournalRequest request) throws IOException {
+        Entry entry = request.entry();
+        byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(FIXED_PAYLOAD_SIZE + name.length);
+        long sequence = nextSequence;
+        payload.putLong(sequence)
+                .put((byte) request.mutationType().ordinal())
+                .putLong(entry.customerId())
+                .putInt(entry.version())
+                .putLong(entry.size())
+                .putLong(entry.usableSize())
+                .putShort((short) name.length)
+                .put(name);
+        if (segment.remaining() < RECORD_HEADER_SIZE + payload.capacity()) {
+            segment.force();
+            openSegment();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        segment.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+        nextSequence++;
+        balances.merge(entry.key(), entry, MappedAssetJournal::newer);
+        return sequence;
+    }
+
+    private static Entry newer(Entry current, Entry candidate) {
+        return candidate.version() >= current.version() ? candidate : current;
+    }
+
+    private void openSegment() throws IOException {
+        Path segmentPath = directory.resolve(fileName(SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private long replaySegment(Path segmentPath, long snapshotSequence) throws IOException {
+        long replayed = 0;
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < FIXED_PAYLOAD_SIZE || length > buffer.remaining()) {
+                    // end of the written part or a torn record
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Journal {} has a corrupt record, replay of the segment stops",
+                            segmentPath.getFileName());
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                long sequence = record.getLong();
+                record.get();
+                long customerId = record.getLong();
+                int version = record.getInt();
+                long size = record.getLong();
+                long usableSize = record.getLong();
+                byte[] name = new byte[record.getShort()];
+                record.get(name);
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                if (sequence > snapshotSequence) {
+                    Entry entry = new Entry(customerId, new String(name, StandardCharsets.UTF_8),
+                            version, size, usableSize);
+                    balances.merge(entry.key(), entry, MappedAssetJournal::newer);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Writes the snapshot through a temporary file so a crash never leaves a partial
+     * snapshot behind, then removes the files it replaces.
+     */
+    private void writeSnapshot(long sequence) throws IOException {
+        Path snapshotPath = directory.resolve(fileName(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporaryPath = directory.resolve(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(balances.size());
+            for (Entry entry : balances.values()) {
+                out.writeLong(entry.customerId());
+                out.writeUTF(entry.name());
+                out.writeInt(entry.version());
+                out.writeLong(entry.size());
+                out.writeLong(entry.usableSize());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        for (Path oldSnapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(oldSnapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < sequence) {
+                Files.delete(oldSnapshot);
+            }
+        }
+        for (Path oldSegment : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            // the next segment starts after the snapshot, every existing one is covered
+            if (sequenceOf(oldSegment, SEGMENT_PREFIX, SEGMENT_SUFFIX) <= nextSequence) {
+                Files.delete(oldSegment);
+            }
+        }
+        logger.info("Wrote asset journal snapshot {} with {} balances", sequence, balances.size());
+    }
+
+    private long loadLatestSnapshot() throws IOException {
+        List<Path> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                return readSnapshot(snapshots.get(i));
+            } catch (IOException | IllegalStateException e) {
+                logger.warn("Snapshot {} is not readable, trying an older one",
+                        snapshots.get(i).getFileName(), e);
+                balances.clear();
+            }
+        }
+        return 0;
+    }
+
+    private long readSnapshot(Path snapshotPath) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotPath)), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a snapshot file");
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readLong(), in.readUTF(), in.readInt(), in.readLong(),
+                        in.readLong());
+                balances.put(entry.key(), entry);
+            }
+            long expectedChecksum = checked.getChecksum().getValue();
+            if (in.readLong() != expectedChecksum) {
+                throw new IllegalStateException("Snapshot checksum does not match");
+            }
+            return sequence;
+        }
+    }
+
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(prefix) && fileName.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String fileName(String prefix, long sequence, String suffix) {
+        // zero padded so that file names sort in sequence order
+        return prefix + String.format("%020d", sequence) + suffix;
+    }
+
+    private static long sequenceOf(Path path, String prefix, String suffix) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - suffix.length()));
+    }
+}
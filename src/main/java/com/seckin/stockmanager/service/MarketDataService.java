@@ -0,0 +1,52 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.dto.CandleDTO;
+import com.seckin.stockmanager.dto.MarketDepthDTO;
+import com.seckin.stockmanager.dto.PriceLevelDTO;
+import com.seckin.stockmanager.model.CandleInterval;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class MarketDataService {
+    private final MatchingEngine matchingEngine;
+    private final AssetScales assetScales;
+    private final CandleService candleService;
+
+    public MarketDataService(MatchingEngine matchingEngine, AssetScales assetScales,
+                             CandleService candleService) {
+        this.matchingEngine = matchingEngine;
+        this.assetScales = assetScales;
+        this.candleService = candleService;
+    }
+
+    /**
+     * Aggregated PENDING size per prize of an asset, served from the depth the order
+     * book publishes on every commit instead of reading the orders table. At most
+     * {@code stockmanager.market.depth-levels} levels are returned per side.
+     */
+    public MarketDepthDTO getDepth(String assetName, int levels) {
+        OrderBook.Depth depth = matchingEngine.getDepth(assetName);
+        int sizeScale = assetScales.scaleOf(assetName);
+        return new MarketDepthDTO(assetName, toDto(depth.bids(), levels, sizeScale),
+                toDto(depth.asks(), levels, sizeScale));
+    }
+
+    /**
+     * The most recent candles of an asset from memory, oldest first. Older candles are
+     * in the candles table.
+     */
+    public List<CandleDTO> getCandles(String assetName, String interval, int limit) {
+        int sizeScale = assetScales.scaleOf(assetName);
+        return candleService.getCandles(assetName, CandleInterval.fromLabel(interval), limit).stream()
+                .map(candle -> new CandleDTO(candle, assetScales.prizeScale(), sizeScale))
+                .toList();
+    }
+
+    private List<PriceLevelDTO> toDto(List<OrderBook.PriceLevel> levels, int limit, int sizeScale) {
+        return levels.stream().limit(limit)
+                .map(level -> new PriceLevelDTO(level, assetScales.prizeScale(), sizeScale))
+                .toList();
+    }
+}
@@ -0,0 +1,280 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.exception.ResourceNotFoundException;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.FixedPoint;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+
+/**
+ * Continuous price-time priority matching over one {@link OrderBook} per asset.
+ * <p>
+ * A book stays locked by the transaction that changes it until that transaction
+ * completes, so the book never shows orders of an uncommitted transaction. When the
+ * transaction rolls back the book is invalidated and reloaded from the PENDING rows
+ * by its next user. Books are locked before any order or asset row, see
+ * {@link #lockBooks}.
+ */
+@Service
+public class MatchingEngine {
+    private static final Logger logger = LoggerFactory.getLogger(MatchingEngine.class);
+
+    private final OrderRepository orderRepository;
+    private final AssetService assetService;
+    private final AssetScales assetScales;
+    private final StockManagerMetrics metrics;
+    private final CustomerEventPublisher customerEvents;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int depthLevels;
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+
+    public MatchingEngine(OrderRepository orderRepository, AssetService assetService,
+                          AssetScales assetScales, StockManagerMetrics metrics,
+                          CustomerEventPublisher customerEvents, ApplicationEventPublisher eventPublisher,
+                          @Value("${stockmanager.market.depth-levels:50}") int depthLevels) {
+        this.orderRepository = orderRepository;
+        this.assetService = assetService;
+        this.assetScales = assetScales;
+        this.metrics = metrics;
+        this.customerEvents = customerEvents;
+        this.eventPublisher = eventPublisher;
+        this.depthLevels = depthLevels;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadBooks() {
+        Map<String, List<Order>> pendingOrders =
+                orderRepository.findByStatus(OrderStatus.PENDING).stream()
+                        .collect(Collectors.groupingBy(Order::getAssetName));
+        pendingOrders.forEach((assetName, orders) -> {
+            OrderBook book = books.computeIfAbsent(assetName, this::newBook);
+            book.lock();
+            try {
+                book.load(orders);
+            } finally {
+                book.unlock();
+            }
+        });
+        logger.info("Loaded order books for {} assets", pendingOrders.size());
+    }
+
+    /**
+     * Matches a newly created PENDING order against the book of its asset and settles
+     * every fill. Has to be called in the transaction that created the order.
+     */
+    @Transactional
+    public void submit(Order order) {
+        OrderBook book = lockBook(order.getAssetName());
+        book.remove(order.getId());
+        List<OrderBook.Fill> fills = book.match(new OrderBook.BookOrder(order), Instant.now());
+        if (fills.isEmpty()) {
+            return;
+        }
+        // the asset rows of every fill are locked together in one statement, a new order
+        // already holds the row it reserved from, so a lock cycle with another settlement
+        // is possible and ends in a lock failure that is retried
+        Set<AssetKey> keys = new HashSet<>();
+        for (OrderBook.Fill fill : fills) {
+            keys.add(new AssetKey(fill.buyOrder().getCustomerId(), TRY_ASSET_NAME));
+            keys.add(new AssetKey(fill.buyOrder().getCustomerId(), order.getAssetName()));
+            keys.add(new AssetKey(fill.sellOrder().getCustomerId(), TRY_ASSET_NAME));
+            keys.add(new AssetKey(fill.sellOrder().getCustomerId(), order.getAssetName()));
+        }
+        Map<AssetKey, Asset> assets = assetService.getAssetsWithLock(keys);
+        fills.forEach(fill -> settle(order.getAssetName(), fill, assets));
+    }
+
+    /**
+     * Submits orders created in one transaction in the given order. The books of all
+     * involved assets are locked up front so concurrent batches can not deadlock on
+     * each other.
+     */
+    @Transactional
+    public void submitAll(List<Order> orders) {
+        lockBooks(orders.stream().map(Order::getAssetName).toList());
+        orders.forEach(this::submit);
+    }
+
+    /**
+     * Locks the books of the assets in asset name order until the transaction completes.
+     * {@link #submit} locks asset rows while holding a book, so every transaction
+     * changing PENDING orders locks their books before any order or asset row. The
+     * database can not see a cycle between a book and a row lock.
+     */
+    @Transactional
+    public void lockBooks(Collection<String> assetNames) {
+        assetNames.stream().distinct().sorted().forEach(this::lockBook);
+    }
+
+    /**
+     * Takes an order out of its book, used when the order is cancelled or matched
+     * outside of the engine.
+     */
+    @Transactional
+    public void remove(Order order) {
+        lockBook(order.getAssetName()).remove(order.getId());
+    }
+
+    /**
+     * Takes several orders out of their books, the books are locked in asset name order.
+     */
+    @Transactional
+    public void removeAll(List<Order> orders) {
+        lockBooks(orders.stream().map(Order::getAssetName).toList());
+        orders.forEach(order -> books.get(order.getAssetName()).remove(order.getId()));
+    }
+
+    /**
+     * Takes orders out of their books by id, the books are locked in asset name order.
+     */
+    @Transactional
+    public void removeAll(Map<String, List<Long>> orderIdsByAsset) {
+        lockBooks(orderIdsByAsset.keySet());
+        orderIdsByAsset.forEach((assetName, orderIds) -> orderIds.forEach(books.get(assetName)::remove));
+    }
+
+    /**
+     * The committed depth of the book of an asset, read without waiting for the book
+     * lock. An asset without a book has no PENDING orders.
+     */
+    public OrderBook.Depth getDepth(String assetName) {
+        OrderBook book = books.get(assetName);
+        return book == null ? new OrderBook.Depth(List.of(), List.of()) : book.getDepth();
+    }
+
+    private OrderBook newBook(String assetName) {
+        OrderBook book = new OrderBook(assetName, depthLevels);
+        metrics.registerOrderBook(book);
+        return book;
+    }
+
+    private OrderBook lockBook(String assetName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Order book changes require an active transaction");
+        }
+        OrderBook book = books.computeIfAbsent(assetName, this::newBook);
+        book.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    book.publishDepth();
+                } else {
+                    book.invalidate();
+                }
+                book.unlock();
+            }
+        });
+        if (!book.isLoaded()) {
+            book.load(orderRepository.findByAssetNameAndStatus(assetName, OrderStatus.PENDING));
+        }
+        return book;
+    }
+
+    private void settle(String assetName, OrderBook.Fill fill, Map<AssetKey, Asset> assets) {
+        int sizeScale = assetScales.scaleOf(assetName);
+        long quantity = fill.quantity();
+        long tradeValue = FixedPoint.notional(fill.prize(), quantity, sizeScale);
+        long buyerId = fill.buyOrder().getCustomerId();
+        long sellerId = fill.sellOrder().getCustomerId();
+
+        long buySizeBeforeFill = fillOrder(fill.buyOrder().getOrderId(), fill.prize(), quantity);
+        fillOrder(fill.sellOrder().getOrderId(), fill.prize(), quantity);
+        // the part of the buyer's reservation held for the filled size, computed as a
+        // difference so that partial fills never drift from the reserved total
+        long limitPrize = fill.buyOrder().getPrize();
+        long reservedValue = FixedPoint.notional(limitPrize, buySizeBeforeFill, sizeScale)
+                - FixedPoint.notional(limitPrize, buySizeBeforeFill - quantity, sizeScale);
+
+        Asset buyerTry = getReservedAsset(assets, buyerId, TRY_ASSET_NAME, tradeValue);
+        buyerTry.setSize(buyerTry.getSize() - tradeValue);
+        buyerTry.setUsableSize(buyerTry.getUsableSize() + reservedValue - tradeValue);
+        assetService.saveAsset(buyerTry, AssetMutationType.SETTLE);
+
+        Asset sellerAsset = getReservedAsset(assets, sellerId, assetName, quantity);
+        sellerAsset.setSize(sellerAsset.getSize() - quantity);
+        assetService.saveAsset(sellerAsset, AssetMutationType.SETTLE);
+
+        Asset buyerAsset = assets.get(new AssetKey(buyerId, assetName));
+        buyerAsset.setSize(buyerAsset.getSize() + quantity);
+        buyerAsset.setUsableSize(buyerAsset.getUsableSize() + quantity);
+        assetService.saveAsset(buyerAsset, AssetMutationType.SETTLE);
+
+        Asset sellerTry = assets.get(new AssetKey(sellerId, TRY_ASSET_NAME));
+        sellerTry.setSize(sellerTry.getSize() + tradeValue);
+        sellerTry.setUsableSize(sellerTry.getUsableSize() + tradeValue);
+        assetService.saveAsset(sellerTry, AssetMutationType.SETTLE);
+        eventPublisher.publishEvent(new TradeExecutedEvent(assetName, fill.prize(), quantity, Instant.now()));
+    }
+
+    /**
+     * A fully filled order becomes MATCHED with the trade prize. For a partial fill the
+     * order keeps resting with the remaining size and the filled part is recorded as a
+     * separate MATCHED order. Returns the order size before the fill. The order row is
+     * locked and has to be PENDING with at least the filled size, otherwise the book is
+     * out of sync and the transaction fails, which reloads the book.
+     */
+    private long fillOrder(Long orderId, long prize, long quantity) {
+        Order order = orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING)
+                .filter(pendingOrder -> pendingOrder.getSize() >= quantity)
+                .orElseThrow(() -> new LockConflictException("Order with ID " + orderId
+                        + " is no longer pending", null));
+        long sizeBeforeFill = order.getSize();
+        if (sizeBeforeFill > quantity) {
+            order.setSize(sizeBeforeFill - quantity);
+            orderRepository.save(order);
+            Order filledPart = new Order(order.getCustomerId(), order.getAssetName(),
+                    order.getOrderSide(), prize, quantity, OrderStatus.MATCHED);
+            filledPart.setCreateDate(Instant.now());
+            orderRepository.save(filledPart);
+            customerEvents.orderChanged(order);
+            customerEvents.orderChanged(filledPart);
+        } else {
+            order.setPrize(prize);
+            order.setStatus(OrderStatus.MATCHED);
+            orderRepository.save(order);
+            customerEvents.orderChanged(order);
+        }
+        return sizeBeforeFill;
+    }
+
+    /**
+     * The asset holding the reservation of a fill, a reserved asset smaller than the
+     * fill means the reservation is lost.
+     */
+    private Asset getReservedAsset(Map<AssetKey, Asset> assets, long customerId,
+                                   String assetName, long filledSize) {
+        Asset asset = assets.get(new AssetKey(customerId, assetName));
+        if (asset.getSize() < filledSize) {
+            logger.error("Reserved asset {} not found for customer:{}", assetName, customerId);
+            throw new ResourceNotFoundException("Reserved Asset Not Found");
+        }
+        return asset;
+    }
+}
@@ -0,0 +1,35 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.repository.AssetRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads asset rows without a lock. A concurrent change of the same row fails the flush
+ * on the version column and the transaction is retried by {@link ConflictRetryAspect}.
+ */
+@Service
+@ConditionalOnProperty(name = "stockmanager.asset.concurrency-mode", havingValue = "optimistic")
+public class OptimisticAssetLockStrategy implements AssetLockStrategy {
+
+    private final AssetRepository assetRepository;
+
+    public OptimisticAssetLockStrategy(AssetRepository assetRepository) {
+        this.assetRepository = assetRepository;
+    }
+
+    @Override
+    public Asset getAssetForUpdate(long customerId, String assetName) {
+        return assetRepository.findAsset(customerId, assetName).orElse(null);
+    }
+
+    @Override
+    public Map<AssetKey, Asset> getAssetsForUpdate(Collection<AssetKey> keys) {
+        return assetRepository.readAssets(keys);
+    }
+}
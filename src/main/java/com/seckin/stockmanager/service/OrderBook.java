@@ -0,0 +1,299 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderSide;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory book of PENDING orders for a single asset. Bids are kept highest prize
+ * first, asks lowest prize first, and equal prizes are ordered by create date.
+ * All access has to happen while holding the book lock, except reading the published
+ * {@link Depth}.
+ */
+public class OrderBook {
+
+    private static final Comparator<BookOrder> TIME_PRIORITY =
+            Comparator.comparing(BookOrder::getCreateDate,
+                            Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(BookOrder::getOrderId);
+    private static final Comparator<BookOrder> BID_PRIORITY =
+            Comparator.comparingLong(BookOrder::getPrize).reversed()
+                    .thenComparing(TIME_PRIORITY);
+    private static final Comparator<BookOrder> ASK_PRIORITY =
+            Comparator.comparingLong(BookOrder::getPrize).thenComparing(TIME_PRIORITY);
+
+    private final String assetName;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final NavigableSet<BookOrder> bids = new TreeSet<>(BID_PRIORITY);
+    private final NavigableSet<BookOrder> asks = new TreeSet<>(ASK_PRIORITY);
+    private final Map<Long, BookOrder> ordersById = new HashMap<>();
+    // summed size per prize of each side, kept up to date with every change of the book
+    private final NavigableMap<Long, Level> bidLevels = new TreeMap<>(Comparator.reverseOrder());
+    private final NavigableMap<Long, Level> askLevels = new TreeMap<>();
+    private final int depthLevels;
+    private boolean loaded;
+    // copy of the book size that can be read without the lock, e.g. by metrics
+    private volatile int pendingCount;
+    // last published top levels, read without the lock
+    private volatile Depth depth = new Depth(List.of(), List.of());
+
+    public OrderBook(String assetName) {
+        this(assetName, 0);
+    }
+
+    public OrderBook(String assetName, int depthLevels) {
+        this.assetName = assetName;
+        this.depthLevels = depthLevels;
+    }
+
+    public String getAssetName() {
+        return assetName;
+    }
+
+    public void lock() {
+        lock.lock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Marks the book as out of sync with the database, the next lock owner reloads it.
+     */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * Replaces the book with committed PENDING orders and publishes its depth.
+     */
+    public void load(List<Order> pendingOrders) {
+        bids.clear();
+        asks.clear();
+        ordersById.clear();
+        bidLevels.clear();
+        askLevels.clear();
+        pendingOrders.forEach(order -> add(new BookOrder(order)));
+        pendingCount = ordersById.size();
+        loaded = true;
+        publishDepth();
+    }
+
+    public void add(BookOrder order) {
+        ordersById.put(order.getOrderId(), order);
+        sideOf(order.getSide()).add(order);
+        changeLevel(order.getSide(), order.getPrize(), order.getSize(), 1);
+        pendingCount = ordersById.size();
+    }
+
+    public BookOrder remove(Long orderId) {
+        BookOrder order = ordersById.remove(orderId);
+        if (order != null) {
+            sideOf(order.getSide()).remove(order);
+            changeLevel(order.getSide(), order.getPrize(), -order.getSize(), -1);
+            pendingCount = ordersById.size();
+        }
+        return order;
+    }
+
+    public int size() {
+        return ordersById.size();
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Matches the incoming order against the opposite side while prizes cross. Fully
+     * filled resting orders leave the book and any remaining size of the incoming
+     * order rests on its own side. Orders of the same customer never trade with each
+     * other. Resting orders expired at {@code now} leave the book without a fill, their
+     * rows are expired by the {@link OrderExpiryScheduler}.
+     */
+    public List<Fill> match(BookOrder incoming, Instant now) {
+        List<Fill> fills = new ArrayList<>();
+        Iterator<BookOrder> restingOrders = sideOf(opposite(incoming.getSide())).iterator();
+        while (incoming.getSize() > 0 && restingOrders.hasNext()) {
+            BookOrder resting = restingOrders.next();
+            if (!crosses(incoming, resting)) {
+                break;
+            }
+            if (resting.isExpired(now)) {
+                restingOrders.remove();
+                ordersById.remove(resting.getOrderId());
+                changeLevel(resting.getSide(), resting.getPrize(), -resting.getSize(), -1);
+                continue;
+            }
+            if (resting.getCustomerId() == incoming.getCustomerId()) {
+                continue;
+            }
+            long quantity = Math.min(incoming.getSize(), resting.getSize());
+            fills.add(incoming.getSide() == OrderSide.BUY ?
+                    new Fill(incoming, resting, resting.getPrize(), quantity) :
+                    new Fill(resting, incoming, resting.getPrize(), quantity));
+            incoming.setSize(incoming.getSize() - quantity);
+            resting.setSize(resting.getSize() - quantity);
+            if (resting.getSize() <= 0) {
+                restingOrders.remove();
+                ordersById.remove(resting.getOrderId());
+                changeLevel(resting.getSide(), resting.getPrize(), -quantity, -1);
+            } else {
+                changeLevel(resting.getSide(), resting.getPrize(), -quantity, 0);
+            }
+        }
+        if (incoming.getSize() > 0) {
+            add(incoming);
+        }
+        pendingCount = ordersById.size();
+        return fills;
+    }
+
+    /**
+     * The top price levels of both sides as of the last {@link #publishDepth}.
+     */
+    public Depth getDepth() {
+        return depth;
+    }
+
+    /**
+     * Publishes the top levels of the current book to readers of {@link #getDepth}.
+     * Called when the changes of the lock owner are committed, so readers never see
+     * levels of an uncommitted or rolled back transaction.
+     */
+    public void publishDepth() {
+        depth = new Depth(topLevels(bidLevels), topLevels(askLevels));
+    }
+
+    private List<PriceLevel> topLevels(NavigableMap<Long, Level> levels) {
+        List<PriceLevel> topLevels = new ArrayList<>(Math.min(depthLevels, levels.size()));
+        for (Map.Entry<Long, Level> level : levels.entrySet()) {
+            if (topLevels.size() == depthLevels) {
+                break;
+            }
+            topLevels.add(new PriceLevel(level.getKey(), level.getValue().size,
+                    level.getValue().orderCount));
+        }
+        return List.copyOf(topLevels);
+    }
+
+    private void changeLevel(OrderSide side, long prize, long size, int orderCount) {
+        NavigableMap<Long, Level> levels = side == OrderSide.BUY ? bidLevels : askLevels;
+        Level level = levels.computeIfAbsent(prize, it -> new Level());
+        level.size += size;
+        level.orderCount += orderCount;
+        if (level.orderCount <= 0) {
+            levels.remove(prize);
+        }
+    }
+
+    private static boolean crosses(BookOrder incoming, BookOrder resting) {
+        return incoming.getSide() == OrderSide.BUY ?
+                incoming.getPrize() >= resting.getPrize() :
+                incoming.getPrize() <= resting.getPrize();
+    }
+
+    private static OrderSide opposite(OrderSide side) {
+        return side == OrderSide.BUY ? OrderSide.SELL : OrderSide.BUY;
+    }
+
+    private NavigableSet<BookOrder> sideOf(OrderSide side) {
+        return side == OrderSide.BUY ? bids : asks;
+    }
+
+    public static class BookOrder {
+        private final Long orderId;
+        private final long customerId;
+        private final OrderSide side;
+        private final long prize;
+        private final Instant createDate;
+        private final Instant expiresAt;
+        private long size;
+
+        public BookOrder(Order order) {
+            this.orderId = order.getId();
+            this.customerId = order.getCustomerId();
+            this.side = order.getOrderSide();
+            this.prize = order.getPrize();
+            this.createDate = order.getCreateDate();
+            this.expiresAt = order.getExpiresAt();
+            this.size = order.getSize();
+        }
+
+        public Long getOrderId() {
+            return orderId;
+        }
+
+        public long getCustomerId() {
+            return customerId;
+        }
+
+        public OrderSide getSide() {
+            return side;
+        }
+
+        public long getPrize() {
+            return prize;
+        }
+
+        public Instant getCreateDate() {
+            return createDate;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isExpired(Instant now) {
+            return expiresAt != null && !expiresAt.isAfter(now);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+    }
+
+    private static class Level {
+        private long size;
+        private int orderCount;
+    }
+
+    /**
+     * Summed size and number of the PENDING orders at one prize.
+     */
+    public record PriceLevel(long prize, long size, int orderCount) {
+    }
+
+    /**
+     * Price levels of the bids, highest prize first, and of the asks, lowest prize first.
+     */
+    public record Depth(List<PriceLevel> bids, List<PriceLevel> asks) {
+    }
+
+    /**
+     * A trade between a buy and a sell order at the prize of the resting order.
+     */
+    public record Fill(BookOrder buyOrder, BookOrder sellOrder, long prize, long quantity) {
+    }
+}
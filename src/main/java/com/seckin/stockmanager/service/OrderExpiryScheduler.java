@@ -0,0 +1,41 @@
+package com.seckin.stockmanager.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Expires good-till-time orders. Every run works through the orders expired at its
+ * start in transactions of {@code stockmanager.orders.expiry-chunk-size} orders.
+ */
+@Component
+public class OrderExpiryScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(OrderExpiryScheduler.class);
+
+    private final OrderService orderService;
+    private final int chunkSize;
+
+    public OrderExpiryScheduler(OrderService orderService,
+                                @Value("${stockmanager.orders.expiry-chunk-size:500}") int chunkSize) {
+        this.orderService = orderService;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${stockmanager.orders.expiry-interval:PT10S}")
+    public void expireOrders() {
+        Instant now = Instant.now();
+        int scanned;
+        do {
+            try {
+                scanned = orderService.expireOrders(now, chunkSize);
+            } catch (RuntimeException e) {
+                logger.error("Orders could not be expired", e);
+                return;
+            }
+        } while (scanned == chunkSize);
+    }
+}
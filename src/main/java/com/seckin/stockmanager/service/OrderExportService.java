@@ -0,0 +1,88 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.dto.OrderExportFormat;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the complete order history of a customer while it is read from the database,
+ * so the memory used does not depend on the number of orders. Every order is detached
+ * from the persistence context right after it is written.
+ */
+@Service
+public class OrderExportService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+    private static final String CSV_HEADER = "id,assetName,side,orderSize,prize,status,createdDate\n";
+
+    private final OrderRepository orderRepository;
+    private final CustomerService customerService;
+    private final AssetScales assetScales;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(OrderRepository orderRepository, CustomerService customerService,
+                              AssetScales assetScales, EntityManager entityManager,
+                              ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.customerService = customerService;
+        this.assetScales = assetScales;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public void exportOrders(String customerUserName, OrderExportFormat format,
+                             OutputStream outputStream) throws IOException {
+        long customerId = customerService.getCustomerId(customerUserName);
+        OutputStream out = new BufferedOutputStream(outputStream);
+        if (format == OrderExportFormat.CSV) {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        long count = 0;
+        try (Stream<Order> orders = orderRepository.streamByCustomerId(customerId)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                Order order = iterator.next();
+                OrderDTO orderDto = new OrderDTO(order, customerUserName,
+                        assetScales.prizeScale(), assetScales.scaleOf(order.getAssetName()));
+                entityManager.detach(order);
+                if (format == OrderExportFormat.CSV) {
+                    out.write(toCsvLine(orderDto).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    out.write(objectMapper.writeValueAsBytes(orderDto));
+                    out.write('\n');
+                }
+                count++;
+            }
+        }
+        out.flush();
+        logger.info("Exported {} orders of customer:{}", count, customerUserName);
+    }
+
+    private static String toCsvLine(OrderDTO orderDto) {
+        return orderDto.id + "," + csvValue(orderDto.assetName) + "," + orderDto.side + ","
+                + orderDto.orderSize.toPlainString() + "," + orderDto.prize.toPlainString() + ","
+                + orderDto.status + "," + orderDto.createdDate + "\n";
+    }
+
+    private static String csvValue(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -1,21 +1,43 @@
 package com.seckin.stockmanager.service;
 
+import com.seckin.stockmanager.dto.BatchOrderResultDTO;
+import com.seckin.stockmanager.dto.BulkOrderResultDTO;
 import com.seckin.stockmanager.dto.ListOrderRequestDTO;
 import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.dto.PageDTO;
 import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.InvalidAmountException;
+import com.seckin.stockmanager.exception.InvalidCursorException;
+import com.seckin.stockmanager.exception.LockConflictException;
 import com.seckin.stockmanager.exception.ResourceNotFoundException;
 import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.FixedPoint;
 import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderReservation;
 import com.seckin.stockmanager.model.OrderSide;
 import com.seckin.stockmanager.model.OrderStatus;
 import com.seckin.stockmanager.repository.OrderRepository;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
 
@@ -26,51 +48,129 @@ public class OrderService {
     private final AssetService assetService;
 
     private final CustomerService customerService;
+    private final MatchingEngine matchingEngine;
+    private final AssetScales assetScales;
+    private final CustomerEventPublisher customerEvents;
+    private final CustomerReadModel readModel;
 
     public OrderService(OrderRepository orderRepository, AssetService assetService,
-                        CustomerService customerService) {
+                        CustomerService customerService, MatchingEngine matchingEngine,
+                        AssetScales assetScales, CustomerEventPublisher customerEvents,
+                        CustomerReadModel readModel) {
         this.assetService = assetService;
         this.orderRepository = orderRepository;
         this.customerService = customerService;
+        this.matchingEngine = matchingEngine;
+        this.assetScales = assetScales;
+        this.customerEvents = customerEvents;
+        this.readModel = readModel;
     }
 
     @Transactional
+    @RetryOnConflict
+    @Timed(value = "stockmanager.order.create", histogram = true)
     public OrderDTO createOrder(OrderDTO orderDto) {
         Long customerId = customerService.getCustomerId(orderDto.customerUserName);
         String sellingAssetName = getSellingAssetName(orderDto.side, orderDto.assetName);
-        Asset sellingAsset = assetService.getAssetWithLock(customerId,
-                sellingAssetName);
-        if (sellingAsset == null) {
-            logger.error("Selling Asset Not Found");
-            throw new ResourceNotFoundException("Selling Asset Not Found");
-        }
-        Double totalRequiredSize = sellingAssetName.equals(TRY_ASSET_NAME) ?
-                orderDto.prize * orderDto.orderSize : orderDto.orderSize;
-        validateSellingAssetUsableSize(totalRequiredSize, sellingAsset);
-        Order createdOrder = orderRepository.save(orderDto.toOrder(customerId));
-        sellingAsset.setUsableSize(sellingAsset.getUsableSize() - totalRequiredSize);
-
-        // version increase will cause pessimistic locking exception in case of parallel
-        // order request with
-        // same selling asset and prevent incorrect usable size updates
-        assetService.saveAsset(sellingAsset);
-        orderDto.id = createdOrder.getId();
-        orderDto.createdDate = createdOrder.getCreateDate();
-        orderDto.status = createdOrder.getStatus();
-        return orderDto;
-
-    }
-
-    private static void validateSellingAssetUsableSize(Double totalRequiredSize,
-                                                       Asset sellingAsset) {
-        if (sellingAsset == null || sellingAsset.getUsableSize().compareTo(totalRequiredSize) < 0) {
-            throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
+        int sizeScale = assetScales.scaleOf(orderDto.assetName);
+        Order order = orderDto.toOrder(customerId, assetScales.prizeScale(), sizeScale);
+        long totalRequiredSize = getTotalRequiredSize(sellingAssetName, order);
+        matchingEngine.lockBooks(List.of(order.getAssetName()));
+        // one conditional UPDATE checks and reserves the usable size
+        assetService.reserveAsset(customerId, sellingAssetName, totalRequiredSize);
+        Order createdOrder = orderRepository.save(order);
+        customerEvents.orderChanged(createdOrder);
+        matchingEngine.submit(createdOrder);
+        // the request is left unchanged so a retried attempt starts from the same input
+        return new OrderDTO(createdOrder, orderDto.customerUserName, assetScales.prizeScale(), sizeScale);
+
+    }
+
+    /**
+     * Creates a basket of orders in one transaction. Reservations are grouped by selling
+     * asset so every asset row is locked and updated once, and the accepted orders are
+     * inserted as one JDBC batch. An order that can not be reserved is rejected without
+     * failing the rest of the basket.
+     */
+    @Transactional
+    @RetryOnConflict
+    public List<BatchOrderResultDTO> createOrders(List<OrderDTO> orderDtos) {
+        BatchOrderResultDTO[] results = new BatchOrderResultDTO[orderDtos.size()];
+        Order[] orders = new Order[orderDtos.size()];
+        AssetKey[] sellingAssetKeys = new AssetKey[orderDtos.size()];
+        Map<String, Long> customerIds = new HashMap<>();
+        Map<AssetKey, Asset> sellingAssets = new TreeMap<>();
+        for (int i = 0; i < orderDtos.size(); i++) {
+            OrderDTO orderDto = orderDtos.get(i);
+            try {
+                long customerId = customerIds.computeIfAbsent(orderDto.customerUserName,
+                        customerService::getCustomerId);
+                orders[i] = orderDto.toOrder(customerId, assetScales.prizeScale(),
+                        assetScales.scaleOf(orderDto.assetName));
+                sellingAssetKeys[i] = new AssetKey(customerId,
+                        getSellingAssetName(orderDto.side, orderDto.assetName));
+                sellingAssets.put(sellingAssetKeys[i], null);
+            } catch (ResourceNotFoundException | InvalidAmountException e) {
+                results[i] = new BatchOrderResultDTO(i, e.getMessage());
+            }
         }
+        matchingEngine.lockBooks(Arrays.stream(orders).filter(Objects::nonNull)
+                .map(Order::getAssetName).toList());
+        // sorted keys give every basket the same lock order
+        sellingAssets.replaceAll((key, asset) ->
+                assetService.getAssetWithLock(key.customerId(), key.name()));
+
+        List<Order> acceptedOrders = new ArrayList<>();
+        for (int i = 0; i < orderDtos.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Asset sellingAsset = sellingAssets.get(sellingAssetKeys[i]);
+            long totalRequiredSize = getTotalRequiredSize(sellingAssetKeys[i].name(), orders[i]);
+            if (sellingAsset == null) {
+                results[i] = new BatchOrderResultDTO(i, "Selling Asset Not Found");
+            } else if (sellingAsset.getUsableSize() < totalRequiredSize) {
+                results[i] = new BatchOrderResultDTO(i, "Insufficient Asset Usable Size");
+            } else {
+                sellingAsset.setUsableSize(sellingAsset.getUsableSize() - totalRequiredSize);
+                acceptedOrders.add(orders[i]);
+            }
+        }
+        sellingAssets.values().stream().filter(Objects::nonNull).forEach(asset ->
+                assetService.saveAsset(asset, AssetMutationType.RESERVE));
+        orderRepository.saveAll(acceptedOrders);
+        orderRepository.flush();
+        acceptedOrders.forEach(customerEvents::orderChanged);
+        matchingEngine.submitAll(acceptedOrders);
+
+        for (int i = 0; i < orderDtos.size(); i++) {
+            if (results[i] == null) {
+                results[i] = new BatchOrderResultDTO(i, new OrderDTO(orders[i],
+                        orderDtos.get(i).customerUserName, assetScales.prizeScale(),
+                        assetScales.scaleOf(orders[i].getAssetName())));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Size of the selling asset an order reserves, the TRY value of the order for BUY
+     * orders and the order size for SELL orders.
+     */
+    private long getTotalRequiredSize(String sellingAssetName, Order order) {
+        return getTotalRequiredSize(sellingAssetName, order.getAssetName(), order.getPrize(),
+                order.getSize());
     }
 
-    private static void validateSellingAssetSize(Double totalRequiredSize,
+    private long getTotalRequiredSize(String sellingAssetName, String assetName, long prize,
+                                      long size) {
+        return sellingAssetName.equals(TRY_ASSET_NAME) ?
+                FixedPoint.notional(prize, size, assetScales.scaleOf(assetName)) : size;
+    }
+
+    private static void validateSellingAssetSize(long totalRequiredSize,
                                                  Asset sellingAsset) {
-        if (sellingAsset == null || sellingAsset.getSize().compareTo(totalRequiredSize) < 0) {
+        if (sellingAsset == null || sellingAsset.getSize() < totalRequiredSize) {
             throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
         }
     }
@@ -88,19 +188,64 @@ public class OrderService {
         return sellingAssetName;
     }
 
-    public List<OrderDTO> listOrders(ListOrderRequestDTO listOrderRequestDTO) {
+    /**
+     * Lists the customer's orders newest first, one page at a time. The page is read
+     * after the (createDate, id) position of the cursor so deep pages cost the same as
+     * the first one.
+     */
+    public PageDTO<OrderDTO> listOrders(ListOrderRequestDTO listOrderRequestDTO) {
+        return listOrders(listOrderRequestDTO, null);
+    }
+
+    /**
+     * Lists the orders from the {@link CustomerReadModel} when it is enabled, has seen
+     * the changes up to {@code consistencyToken} and keeps the whole page, from the
+     * database otherwise.
+     */
+    public PageDTO<OrderDTO> listOrders(ListOrderRequestDTO listOrderRequestDTO, Long consistencyToken) {
         Long customerId =
                 customerService.getCustomerId(listOrderRequestDTO.customerUserName);
-        return orderRepository.findOrders(customerId,
-                        listOrderRequestDTO.minDate, listOrderRequestDTO.maxDate,
-                        listOrderRequestDTO.orderSide, listOrderRequestDTO.assetName)
-                .stream().map(order -> new OrderDTO(order,
-                        listOrderRequestDTO.customerUserName))
-                .toList();
+        PageCursor cursor = PageCursor.decode(listOrderRequestDTO.cursor);
+        if (cursor != null && cursor.createDate() == null) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+        int pageSize = PageCursor.pageSize(listOrderRequestDTO.pageSize);
+        Instant cursorDate = cursor == null ? null : cursor.createDate();
+        Long cursorId = cursor == null ? null : cursor.id();
+        // one extra row tells whether there is a next page
+        List<Order> orders = readModel.findOrders(customerId,
+                listOrderRequestDTO.minDate, listOrderRequestDTO.maxDate,
+                listOrderRequestDTO.orderSide, listOrderRequestDTO.assetName,
+                listOrderRequestDTO.status, cursorDate, cursorId, pageSize + 1, consistencyToken);
+        if (orders == null) {
+            PageRequest page = PageRequest.of(0, pageSize + 1);
+            orders = cursor == null ?
+                    orderRepository.findOrders(customerId,
+                            listOrderRequestDTO.minDate, listOrderRequestDTO.maxDate,
+                            listOrderRequestDTO.orderSide, listOrderRequestDTO.assetName,
+                            listOrderRequestDTO.status, page) :
+                    orderRepository.findOrdersAfter(customerId,
+                            listOrderRequestDTO.minDate, listOrderRequestDTO.maxDate,
+                            listOrderRequestDTO.orderSide, listOrderRequestDTO.assetName,
+                            listOrderRequestDTO.status, cursorDate, cursorId, page);
+        }
+        String nextCursor = null;
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            Order last = orders.get(pageSize - 1);
+            nextCursor = new PageCursor(last.getCreateDate(), last.getId()).encode();
+        }
+        return new PageDTO<>(orders.stream().map(order -> new OrderDTO(order,
+                        listOrderRequestDTO.customerUserName, assetScales.prizeScale(),
+                        assetScales.scaleOf(order.getAssetName())))
+                .toList(), nextCursor);
     }
 
     @Transactional
+    @RetryOnConflict
+    @Timed(value = "stockmanager.order.delete", histogram = true)
     public void deleteOrder(Long orderId, Authentication authentication) {
+        lockBookOf(orderId);
         Order order =
                 orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING).orElseThrow(() ->
                         new ResourceNotFoundException("Deletable Order with ID" + " " + orderId + " not found"));
@@ -109,18 +254,23 @@ public class OrderService {
         customerService.validateUserAuthenticated(customerUserName, authentication);
         String sellingAssetName =
                 getSellingAssetName(order.getOrderSide(), order.getAssetName());
-        Double totalRequiredSize = sellingAssetName.equals(TRY_ASSET_NAME) ?
-                order.getPrize() * order.getSize() : order.getSize();
-        Asset sellingAsset = assetService.getAssetWithLock(order.getCustomerId(),
-                sellingAssetName);
+        long totalRequiredSize = getTotalRequiredSize(sellingAssetName, order);
+        AssetKey sellingAssetKey = new AssetKey(order.getCustomerId(), sellingAssetName);
+        Asset sellingAsset = assetService.getAssetsWithLock(List.of(sellingAssetKey))
+                .get(sellingAssetKey);
         sellingAsset.setUsableSize(sellingAsset.getUsableSize() + totalRequiredSize);
-        assetService.saveAsset(sellingAsset);
+        assetService.saveAsset(sellingAsset, AssetMutationType.RELEASE);
+        matchingEngine.remove(order);
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
+        customerEvents.orderChanged(order);
     }
 
     @Transactional
+    @RetryOnConflict
+    @Timed(value = "stockmanager.order.match", histogram = true)
     public void matchOrder(Long orderId) {
+        lockBookOf(orderId);
         Order order =
                 orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING).orElseThrow(() ->
                         new ResourceNotFoundException("Matchable Order with ID" + " " + orderId +
@@ -132,26 +282,192 @@ public class OrderService {
             sellingAssetName = order.getAssetName();
             buyingAssetName = TRY_ASSET_NAME;
         }
-        Asset sellingAsset = assetService.getAssetWithLock(order.getCustomerId(),
-                sellingAssetName);
-        Double totalRequiredSize = sellingAssetName.equals(TRY_ASSET_NAME) ?
-                order.getPrize() * order.getSize() : order.getSize();
+        // both rows are locked in one statement, a missing buying asset is created
+        AssetKey sellingAssetKey = new AssetKey(order.getCustomerId(), sellingAssetName);
+        AssetKey buyingAssetKey = new AssetKey(order.getCustomerId(), buyingAssetName);
+        Map<AssetKey, Asset> assets =
+                assetService.getAssetsWithLock(List.of(sellingAssetKey, buyingAssetKey));
+        Asset sellingAsset = assets.get(sellingAssetKey);
+        long totalRequiredSize = getTotalRequiredSize(sellingAssetName, order);
         validateSellingAssetSize(totalRequiredSize, sellingAsset);
+        matchingEngine.remove(order);
         order.setStatus(OrderStatus.MATCHED);
-        Asset buyingAsset = assetService.getAssetWithLock(order.getCustomerId(),
-                buyingAssetName);
-        if (buyingAsset == null) {
-            buyingAsset = assetService.saveAsset(new Asset(order.getCustomerId(),
-                    buyingAssetName, 0d, 0d));
-        }
-        Double sellingSize = totalRequiredSize;
-        Double buyingSize = sellingAssetName.equals(TRY_ASSET_NAME) ? order.getSize() :
-                order.getPrize() * order.getSize();
+        Asset buyingAsset = assets.get(buyingAssetKey);
+        long sellingSize = totalRequiredSize;
+        long buyingSize = sellingAssetName.equals(TRY_ASSET_NAME) ? order.getSize() :
+                FixedPoint.notional(order.getPrize(), order.getSize(),
+                        assetScales.scaleOf(order.getAssetName()));
         sellingAsset.setSize(sellingAsset.getSize() - sellingSize);
         buyingAsset.setUsableSize(buyingAsset.getUsableSize() + buyingSize);
         buyingAsset.setSize(buyingAsset.getSize() + buyingSize);
-        assetService.saveAsset(buyingAsset);
-        assetService.saveAsset(sellingAsset);
+        assetService.saveAsset(buyingAsset, AssetMutationType.SETTLE);
+        assetService.saveAsset(sellingAsset, AssetMutationType.SETTLE);
         orderRepository.save(order);
+        customerEvents.orderChanged(order);
+    }
+
+    /**
+     * Matches a chunk of PENDING orders of a bulk match. The orders and their asset rows
+     * are locked once for the chunk, every asset is saved once with the summed change
+     * and the statuses are set with one UPDATE. Orders that can not be matched are
+     * reported and left unchanged.
+     */
+    @Transactional
+    @RetryOnConflict
+    public List<BulkOrderResultDTO> matchOrders(List<Long> orderIds) {
+        Map<Long, Order> orders = lockPendingOrders(orderIds);
+        Set<AssetKey> keys = new HashSet<>();
+        orders.values().forEach(order -> {
+            String sellingAssetName = getSellingAssetName(order.getOrderSide(), order.getAssetName());
+            keys.add(new AssetKey(order.getCustomerId(), sellingAssetName));
+            keys.add(new AssetKey(order.getCustomerId(), getBuyingAssetName(sellingAssetName, order)));
+        });
+        Map<AssetKey, Asset> assets = assetService.getAssetsWithLock(keys);
+
+        List<BulkOrderResultDTO> results = new ArrayList<>(orderIds.size());
+        List<Order> matchedOrders = new ArrayList<>();
+        Set<Asset> changedAssets = new LinkedHashSet<>();
+        for (Long orderId : orderIds) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                results.add(new BulkOrderResultDTO(orderId, "Matchable Order with ID " + orderId + " not found"));
+                continue;
+            }
+            String sellingAssetName = getSellingAssetName(order.getOrderSide(), order.getAssetName());
+            String buyingAssetName = getBuyingAssetName(sellingAssetName, order);
+            Asset sellingAsset = assets.get(new AssetKey(order.getCustomerId(), sellingAssetName));
+            Asset buyingAsset = assets.get(new AssetKey(order.getCustomerId(), buyingAssetName));
+            long sellingSize = getTotalRequiredSize(sellingAssetName, order);
+            if (sellingAsset.getSize() < sellingSize) {
+                results.add(new BulkOrderResultDTO(orderId, "Insufficient Asset Usable Size"));
+                continue;
+            }
+            long buyingSize = sellingAssetName.equals(TRY_ASSET_NAME) ? order.getSize() :
+                    FixedPoint.notional(order.getPrize(), order.getSize(),
+                            assetScales.scaleOf(order.getAssetName()));
+            sellingAsset.setSize(sellingAsset.getSize() - sellingSize);
+            buyingAsset.setUsableSize(buyingAsset.getUsableSize() + buyingSize);
+            buyingAsset.setSize(buyingAsset.getSize() + buyingSize);
+            changedAssets.add(sellingAsset);
+            changedAssets.add(buyingAsset);
+            matchedOrders.add(order);
+            results.add(new BulkOrderResultDTO(orderId, OrderStatus.MATCHED));
+        }
+        changedAssets.forEach(asset -> assetService.saveAsset(asset, AssetMutationType.SETTLE));
+        completeOrders(matchedOrders, OrderStatus.MATCHED);
+        return results;
+    }
+
+    /**
+     * Cancels a chunk of PENDING orders of a bulk cancel, releasing the reservations of
+     * every asset with one save, see {@link #matchOrders}.
+     */
+    @Transactional
+    @RetryOnConflict
+    public List<BulkOrderResultDTO> cancelOrders(List<Long> orderIds) {
+        Map<Long, Order> orders = lockPendingOrders(orderIds);
+        Set<AssetKey> keys = new HashSet<>();
+        orders.values().forEach(order -> keys.add(new AssetKey(order.getCustomerId(),
+                getSellingAssetName(order.getOrderSide(), order.getAssetName()))));
+        Map<AssetKey, Asset> assets = assetService.getAssetsWithLock(keys);
+
+        List<BulkOrderResultDTO> results = new ArrayList<>(orderIds.size());
+        List<Order> cancelledOrders = new ArrayList<>();
+        Set<Asset> changedAssets = new LinkedHashSet<>();
+        for (Long orderId : orderIds) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                results.add(new BulkOrderResultDTO(orderId, "Deletable Order with ID " + orderId + " not found"));
+                continue;
+            }
+            String sellingAssetName = getSellingAssetName(order.getOrderSide(), order.getAssetName());
+            Asset sellingAsset = assets.get(new AssetKey(order.getCustomerId(), sellingAssetName));
+            sellingAsset.setUsableSize(sellingAsset.getUsableSize()
+                    + getTotalRequiredSize(sellingAssetName, order));
+            changedAssets.add(sellingAsset);
+            cancelledOrders.add(order);
+            results.add(new BulkOrderResultDTO(orderId, OrderStatus.CANCELLED));
+        }
+        changedAssets.forEach(asset -> assetService.saveAsset(asset, AssetMutationType.RELEASE));
+        completeOrders(cancelledOrders, OrderStatus.CANCELLED);
+        return results;
+    }
+
+    /**
+     * Expires up to {@code limit} PENDING orders whose expiry time is before {@code now},
+     * oldest first, and returns the number of orders scanned. The statuses are changed
+     * with one UPDATE and the reservations are released with one UPDATE per asset row,
+     * summed from the reservation columns of the expired orders without loading them.
+     */
+    @Transactional
+    @RetryOnConflict
+    public int expireOrders(Instant now, int limit) {
+        List<Long> ids = orderRepository.findExpiredIds(OrderStatus.PENDING, now,
+                PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        matchingEngine.lockBooks(orderRepository.findAssetNames(ids));
+        // the UPDATE locks the rows, orders matched or cancelled since the scan are skipped
+        int expiredCount = orderRepository.updateStatus(ids, OrderStatus.PENDING, OrderStatus.EXPIRED);
+        List<OrderReservation> expiredOrders =
+                orderRepository.findReservations(ids, OrderStatus.EXPIRED);
+        if (expiredOrders.size() != expiredCount) {
+            // another run expired some of the scanned orders, their reservations are released there
+            throw new LockConflictException("The record was updated by another transaction", null);
+        }
+        // sorted keys give every run the same lock order
+        Map<AssetKey, Long> releasedSizes = new TreeMap<>();
+        Map<String, List<Long>> expiredIdsByAsset = new HashMap<>();
+        for (OrderReservation order : expiredOrders) {
+            String sellingAssetName = getSellingAssetName(order.orderSide(), order.assetName());
+            releasedSizes.merge(new AssetKey(order.customerId(), sellingAssetName),
+                    getTotalRequiredSize(sellingAssetName, order.assetName(), order.prize(),
+                            order.size()), Long::sum);
+            expiredIdsByAsset.computeIfAbsent(order.assetName(), it -> new ArrayList<>())
+                    .add(order.id());
+            if (customerEvents.isObserved(order.customerId())) {
+                Order expiredOrder = new Order(order.customerId(), order.assetName(),
+                        order.orderSide(), order.prize(), order.size(), OrderStatus.EXPIRED);
+                expiredOrder.setId(order.id());
+                customerEvents.orderChanged(expiredOrder);
+            }
+        }
+        releasedSizes.forEach((key, size) ->
+                assetService.releaseAsset(key.customerId(), key.name(), size));
+        matchingEngine.removeAll(expiredIdsByAsset);
+        logger.info("Expired {} orders", expiredOrders.size());
+        return ids.size();
+    }
+
+    private void lockBookOf(Long orderId) {
+        // an order that does not exist is reported by the locked read that follows
+        orderRepository.findAssetNameById(orderId)
+                .ifPresent(assetName -> matchingEngine.lockBooks(List.of(assetName)));
+    }
+
+    private Map<Long, Order> lockPendingOrders(List<Long> orderIds) {
+        matchingEngine.lockBooks(orderRepository.findAssetNames(orderIds));
+        Map<Long, Order> orders = new HashMap<>();
+        orderRepository.findForUpdate(orderIds, OrderStatus.PENDING)
+                .forEach(order -> orders.put(order.getId(), order));
+        return orders;
+    }
+
+    private void completeOrders(List<Order> orders, OrderStatus status) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        matchingEngine.removeAll(orders);
+        List<Long> ids = orders.stream().map(Order::getId).toList();
+        // the rows are locked, every one of them is still PENDING
+        if (orderRepository.updateStatus(ids, OrderStatus.PENDING, status) != ids.size()) {
+            throw new LockConflictException("The record was updated by another transaction", null);
+        }
+        orders.forEach(order -> customerEvents.orderChanged(order, status));
+    }
+
+    private static String getBuyingAssetName(String sellingAssetName, Order order) {
+        return sellingAssetName.equals(TRY_ASSET_NAME) ? order.getAssetName() : TRY_ASSET_NAME;
     }
 }
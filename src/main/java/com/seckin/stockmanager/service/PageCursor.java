@@ -0,0 +1,48 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a keyset page. Orders are paged on (createDate, id),
+ * assets only on id so their cursors have no create date. The encoded form is opaque
+ * to clients.
+ */
+public record PageCursor(Instant createDate, long id) {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.US_ASCII).split(":");
+            if (parts.length == 1) {
+                return new PageCursor(null, Long.parseLong(parts[0]));
+            }
+            if (parts.length == 3) {
+                return new PageCursor(Instant.ofEpochSecond(Long.parseLong(parts[0]),
+                        Long.parseLong(parts[1])), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // reported below
+        }
+        throw new InvalidCursorException("Invalid cursor");
+    }
+
+    public String encode() {
+        String value = createDate == null ? Long.toString(id) :
+                createDate.getEpochSecond() + ":" + createDate.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static int pageSize(Integer requestedPageSize) {
+        return requestedPageSize == null ? DEFAULT_PAGE_SIZE : requestedPageSize;
+    }
+}
@@ -0,0 +1,35 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.repository.AssetRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Takes a PESSIMISTIC_WRITE lock on every asset row read for an update.
+ */
+@Service
+@ConditionalOnProperty(name = "stockmanager.asset.concurrency-mode", havingValue = "pessimistic",
+        matchIfMissing = true)
+public class PessimisticAssetLockStrategy implements AssetLockStrategy {
+
+    private final AssetRepository assetRepository;
+
+    public PessimisticAssetLockStrategy(AssetRepository assetRepository) {
+        this.assetRepository = assetRepository;
+    }
+
+    @Override
+    public Asset getAssetForUpdate(long customerId, String assetName) {
+        return assetRepository.findByCustomerIdAndName(customerId, assetName).orElse(null);
+    }
+
+    @Override
+    public Map<AssetKey, Asset> getAssetsForUpdate(Collection<AssetKey> keys) {
+        return assetRepository.lockAssets(keys);
+    }
+}
@@ -0,0 +1,261 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.AssetExecutorUnavailableException;
+import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.FixedPoint;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+
+/**
+ * Hashes commands by customer id onto a fixed set of single threaded shards. A shard
+ * is the only writer of its customers' assets through this path, so it reads the rows
+ * without a lock, applies a batch of commands serially and flushes the batch in one
+ * transaction. The asset version column still guards against writes of the order
+ * paths, a conflicting batch is re-applied from fresh rows.
+ * <p>
+ * The rows are read once per batch rather than cached in the shard between batches:
+ * reservations, releases and settlements of the order paths change the same rows with
+ * UPDATE statements, so a cached row would be stale and its batch would conflict
+ * whenever the customer trades. Saving a detached row would read it again anyway.
+ * <p>
+ * A caller waits up to {@code stockmanager.asset.shard-timeout} for its shard to start
+ * the command and gives up on it otherwise, a command whose batch already started is
+ * waited for until that transaction completes. Commands still queued when the executor
+ * shuts down fail.
+ */
+@Service
+@ConditionalOnProperty(name = "stockmanager.asset.execution-mode", havingValue = "sharded")
+public class ShardedAssetCommandExecutor implements AssetCommandExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedAssetCommandExecutor.class);
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private final AssetService assetService;
+    private final CustomerService customerService;
+    private final AssetScales assetScales;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long commandTimeoutNanos;
+    private final Shard[] shards;
+    private volatile boolean stopped;
+
+    public ShardedAssetCommandExecutor(AssetService assetService, CustomerService customerService,
+                                       AssetScales assetScales,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${stockmanager.asset.shards:8}") int shardCount,
+                                       @Value("${stockmanager.asset.shard-batch-size:64}") int batchSize,
+                                       @Value("${stockmanager.asset.shard-timeout:PT5S}") Duration commandTimeout) {
+        this.assetService = assetService;
+        this.customerService = customerService;
+        this.assetScales = assetScales;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.commandTimeoutNanos = commandTimeout.toNanos();
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            shards[i].start();
+        }
+    }
+
+    @Override
+    @Timed(value = "stockmanager.asset.deposit", extraTags = {"mode", "sharded"}, histogram = true)
+    public void depositMoney(String customerUserName, BigDecimal amount) {
+        long customerId = customerService.getCustomerId(customerUserName);
+        long amountUnits = FixedPoint.toUnits(amount, assetScales.scaleOf(TRY_ASSET_NAME));
+        execute(customerId, TRY_ASSET_NAME, AssetMutationType.DEPOSIT, tryAsset -> {
+            tryAsset.setSize(tryAsset.getSize() + amountUnits);
+            tryAsset.setUsableSize(tryAsset.getUsableSize() + amountUnits);
+        });
+    }
+
+    @Override
+    @Timed(value = "stockmanager.asset.withdraw", extraTags = {"mode", "sharded"}, histogram = true)
+    public void withdrawMoney(String customerUserName, BigDecimal amount, String iban) {
+        long customerId = customerService.getCustomerId(customerUserName);
+        long amountUnits = FixedPoint.toUnits(amount, assetScales.scaleOf(TRY_ASSET_NAME));
+        execute(customerId, TRY_ASSET_NAME, AssetMutationType.WITHDRAW, tryAsset -> {
+            if (tryAsset.getUsableSize() < amountUnits) {
+                logger.error("Insufficient Asset Usable Size for customer:" + customerUserName);
+                throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
+            }
+            tryAsset.setUsableSize(tryAsset.getUsableSize() - amountUnits);
+            tryAsset.setSize(tryAsset.getSize() - amountUnits);
+        });
+        assetService.sendAmountToIban(customerId, amount, iban);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        for (Shard shard : shards) {
+            shard.interrupt();
+        }
+    }
+
+    /**
+     * Queues the mutation on the customer's shard and waits until its batch is
+     * committed. The mutation has to validate before it changes the asset, a rejected
+     * command leaves the asset untouched for the rest of the batch.
+     */
+    private void execute(long customerId, String assetName, AssetMutationType mutationType,
+                         Consumer<Asset> mutation) {
+        if (stopped) {
+            throw new AssetExecutorUnavailableException("Asset executor is shutting down");
+        }
+        AssetCommand command = new AssetCommand(customerId, assetName, mutationType, mutation,
+                new CompletableFuture<>(), new AtomicBoolean());
+        shards[Math.floorMod(Long.hashCode(customerId), shards.length)].queue.add(command);
+        if (stopped && command.taken().compareAndSet(false, true)) {
+            // the shard may have failed its queue before the command was added
+            throw new AssetExecutorUnavailableException("Asset executor is shutting down");
+        }
+        try {
+            await(command);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Asset command failed", e.getCause());
+        }
+    }
+
+    private void await(AssetCommand command) throws ExecutionException {
+        try {
+            command.result().get(commandTimeoutNanos, TimeUnit.NANOSECONDS);
+            return;
+        } catch (TimeoutException e) {
+            if (command.taken().compareAndSet(false, true)) {
+                throw new AssetExecutorUnavailableException("Asset command was not started in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (command.taken().compareAndSet(false, true)) {
+                throw new AssetExecutorUnavailableException("Asset command was interrupted");
+            }
+        }
+        // the batch of the command already started, its transaction decides the outcome
+        command.result().join();
+    }
+
+    private void applyBatch(List<AssetCommand> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<RuntimeException> failures = transactionTemplate.execute(status -> applyInTransaction(batch));
+                for (int i = 0; i < batch.size(); i++) {
+                    if (failures.get(i) == null) {
+                        batch.get(i).result().complete(null);
+                    } else {
+                        batch.get(i).result().completeExceptionally(failures.get(i));
+                    }
+                }
+                return;
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                if (attempt >= MAX_BATCH_ATTEMPTS) {
+                    logger.error("Asset batch failed after {} attempts", attempt, e);
+                    batch.forEach(command -> command.result().completeExceptionally(e));
+                    return;
+                }
+                logger.warn("Asset batch conflicted with another transaction, retrying");
+            } catch (RuntimeException e) {
+                logger.error("Asset batch failed", e);
+                batch.forEach(command -> command.result().completeExceptionally(e));
+                return;
+            }
+        }
+    }
+
+    private List<RuntimeException> applyInTransaction(List<AssetCommand> batch) {
+        Map<String, Asset> assets = new HashMap<>();
+        // an asset changed by several commands is journaled with the last mutation type
+        Map<Asset, AssetMutationType> changedAssets = new LinkedHashMap<>();
+        List<RuntimeException> failures = new ArrayList<>(batch.size());
+        for (AssetCommand command : batch) {
+            Asset asset = assets.computeIfAbsent(command.customerId() + ":" + command.assetName(),
+                    key -> {
+                        Asset current = assetService.getAsset(command.customerId(), command.assetName());
+                        return current != null ? current :
+                                new Asset(command.customerId(), command.assetName(), 0, 0);
+                    });
+            try {
+                command.mutation().accept(asset);
+                changedAssets.put(asset, command.mutationType());
+                failures.add(null);
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        }
+        changedAssets.forEach(assetService::saveAsset);
+        return failures;
+    }
+
+    /**
+     * {@code taken} is set either by the shard starting the command or by the caller
+     * giving up on it, whichever comes first.
+     */
+    private record AssetCommand(long customerId, String assetName, AssetMutationType mutationType,
+                                Consumer<Asset> mutation, CompletableFuture<Void> result,
+                                AtomicBoolean taken) {
+    }
+
+    private class Shard extends Thread {
+        private final BlockingQueue<AssetCommand> queue = new LinkedBlockingQueue<>();
+
+        Shard(int index) {
+            super("asset-shard-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<AssetCommand> batch = new ArrayList<>(batchSize);
+            try {
+                // the interrupt of shutdown may be swallowed while a batch is applied
+                while (!stopped) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, batchSize - 1);
+                    // commands their callers gave up on are skipped
+                    batch.removeIf(command -> !command.taken().compareAndSet(false, true));
+                    if (!batch.isEmpty()) {
+                        applyBatch(batch);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // stopped while waiting for a command
+            }
+            queue.drainTo(batch);
+            batch.forEach(command -> command.result().completeExceptionally(
+                    new AssetExecutorUnavailableException("Asset executor is shutting down")));
+        }
+    }
+}
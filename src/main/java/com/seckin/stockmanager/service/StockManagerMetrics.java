@@ -0,0 +1,103 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.CandleInterval;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the order and asset hot paths that can not be expressed with {@code @Timed}.
+ * Meters are cached per asset name so the hot paths skip the registry lookup.
+ */
+@Component
+public class StockManagerMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> lockTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> lockConflictCounters = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Counter> failureCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retryCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> exhaustedRetryCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+    private final Map<CandleInterval, Counter> droppedTradeCounters = new ConcurrentHashMap<>();
+
+    public StockManagerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the row lock acquisition of an asset and records how long it took.
+     */
+    public <T> T recordLockWait(String assetName, Supplier<T> lockAcquisition) {
+        return lockTimers.computeIfAbsent(assetName, name -> Timer.builder("stockmanager.asset.lock")
+                        .description("Time to acquire the row lock of an asset")
+                        .tag("asset", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(lockAcquisition);
+    }
+
+    public void lockConflict(String assetName) {
+        lockConflictCounters.computeIfAbsent(assetName, name -> Counter.builder("stockmanager.asset.lock.conflicts")
+                        .description("Asset changes failed on a lock conflict")
+                        .tag("asset", name)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void failure(RuntimeException exception) {
+        failureCounters.computeIfAbsent(exception.getClass(), type -> Counter.builder("stockmanager.failures")
+                        .description("Requests failed with an exception")
+                        .tag("exception", type.getSimpleName())
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void conflictRetry(String method) {
+        retryCounters.computeIfAbsent(method, name -> Counter.builder("stockmanager.conflict.retries")
+                        .description("Transactions re-run after a lock or version conflict")
+                        .tag("method", name)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void conflictRetriesExhausted(String method) {
+        exhaustedRetryCounters.computeIfAbsent(method, name -> Counter.builder("stockmanager.conflict.exhausted")
+                        .description("Calls failed on a conflict after every retry attempt")
+                        .tag("method", name)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void requestRejected(String reason) {
+        rejectionCounters.computeIfAbsent(reason, name -> Counter.builder("stockmanager.requests.rejected")
+                        .description("Requests rejected by the admission control")
+                        .tag("reason", name)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void candleTradesDropped(CandleInterval interval, long count) {
+        droppedTradeCounters.computeIfAbsent(interval, it -> Counter.builder("stockmanager.candles.dropped.trades")
+                        .description("Trades committed after their candle was flushed")
+                        .tag("interval", it.name())
+                        .register(meterRegistry))
+                .increment(count);
+    }
+
+    /**
+     * Publishes the number of PENDING orders in the book as a gauge tagged with its asset.
+     */
+    public void registerOrderBook(OrderBook book) {
+        Gauge.builder("stockmanager.orders.pending", book, OrderBook::getPendingCount)
+                .description("PENDING orders in the order book of an asset")
+                .tag("asset", book.getAssetName())
+                .register(meterRegistry);
+    }
+}
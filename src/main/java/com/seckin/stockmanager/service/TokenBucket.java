@@ -0,0 +1,48 @@
+package com.seckin.stockmanager.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled with {@code ratePerSecond} tokens holding at most {@code burst}.
+ * The bucket is kept as the time it is full again, so taking a token is one compare and
+ * set on an {@link AtomicLong} without a lock. Times are {@link System#nanoTime} values,
+ * which may overflow, so they are only compared by their difference.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    // time a full bucket needs to refill
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates a bucket that is full at {@code nowNanos}.
+     */
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.nanosPerToken = (long) (1_000_000_000L / ratePerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token. Returns 0 when one was taken, otherwise the nanos until the next
+     * token is available.
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - nowNanos > 0 ? current : nowNanos) + nanosPerToken;
+            long waitNanos = next - nowNanos - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean isFull(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
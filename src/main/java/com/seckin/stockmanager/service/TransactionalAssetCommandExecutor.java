@@ -0,0 +1,32 @@
+package com.seckin.stockmanager.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+/**
+ * Runs every mutation in its own transaction as one conditional UPDATE of the asset row,
+ * the row is only locked by that statement until the commit.
+ */
+@Service
+@ConditionalOnProperty(name = "stockmanager.asset.execution-mode", havingValue = "transactional",
+        matchIfMissing = true)
+public class TransactionalAssetCommandExecutor implements AssetCommandExecutor {
+
+    private final AssetService assetService;
+
+    public TransactionalAssetCommandExecutor(AssetService assetService) {
+        this.assetService = assetService;
+    }
+
+    @Override
+    public void depositMoney(String customerUserName, BigDecimal amount) {
+        assetService.depositMoney(customerUserName, amount);
+    }
+
+    @Override
+    public void withdrawMoney(String customerUserName, BigDecimal amount, String iban) {
+        assetService.withdrawMoney(customerUserName, amount, iban);
+    }
+}
@@ -0,0 +1,134 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.dto.AssetValuationDTO;
+import com.seckin.stockmanager.dto.CustomerValuationDTO;
+import com.seckin.stockmanager.dto.PortfolioValuationDTO;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.FixedPoint;
+import com.seckin.stockmanager.repository.AssetRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+
+/**
+ * Values asset holdings in TRY with the last traded prize of every asset from the
+ * {@link LastPriceCache}. Assets that have not been traded yet are left out of the
+ * totals.
+ */
+@Service
+public class ValuationService {
+    private final AssetRepository assetRepository;
+    private final CustomerService customerService;
+    private final LastPriceCache lastPriceCache;
+    private final AssetScales assetScales;
+    private final int customerRangeSize;
+    private final ForkJoinPool pool;
+
+    public ValuationService(AssetRepository assetRepository, CustomerService customerService,
+                            LastPriceCache lastPriceCache, AssetScales assetScales,
+                            @Value("${stockmanager.valuation.parallelism:4}") int parallelism,
+                            @Value("${stockmanager.valuation.customer-range-size:1000}") int customerRangeSize) {
+        this.assetRepository = assetRepository;
+        this.customerService = customerService;
+        this.lastPriceCache = lastPriceCache;
+        this.assetScales = assetScales;
+        this.customerRangeSize = customerRangeSize;
+        // a pool of its own bounds the connections the report holds and keeps the
+        // blocking reads out of the common pool
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public PortfolioValuationDTO getValuation(String customerUserName) {
+        long customerId = customerService.getCustomerId(customerUserName);
+        int tryScale = assetScales.scaleOf(TRY_ASSET_NAME);
+        long totalValue = 0;
+        List<AssetValuationDTO> assets = new ArrayList<>();
+        for (Asset asset : assetRepository.findHoldings(customerId, customerId)) {
+            Long prize = prizeOf(asset.getName());
+            Long value = valueOf(asset, prize);
+            if (value != null) {
+                totalValue += value;
+            }
+            assets.add(new AssetValuationDTO(asset.getName(),
+                    FixedPoint.toDecimal(asset.getSize(), assetScales.scaleOf(asset.getName())),
+                    prize == null ? null : FixedPoint.toDecimal(prize, assetScales.prizeScale()),
+                    value == null ? null : FixedPoint.toDecimal(value, tryScale)));
+        }
+        return new PortfolioValuationDTO(customerUserName, FixedPoint.toDecimal(totalValue, tryScale), assets);
+    }
+
+    /**
+     * Values every customer holding an asset. The customer id range is split in half
+     * until a part has at most {@code stockmanager.valuation.customer-range-size} ids,
+     * every part reads its holdings with one range query and the parts run in parallel.
+     */
+    public List<CustomerValuationDTO> getValuations() {
+        Long minCustomerId = assetRepository.findMinCustomerId();
+        if (minCustomerId == null) {
+            return List.of();
+        }
+        long maxCustomerId = assetRepository.findMaxCustomerId();
+        Map<Long, Long> totals = pool.invoke(new CustomerRangeValuation(minCustomerId, maxCustomerId));
+        int tryScale = assetScales.scaleOf(TRY_ASSET_NAME);
+        return totals.entrySet().stream()
+                .map(total -> new CustomerValuationDTO(total.getKey(),
+                        FixedPoint.toDecimal(total.getValue(), tryScale)))
+                .toList();
+    }
+
+    private Long prizeOf(String assetName) {
+        // TRY is valued at face value
+        return assetName.equals(TRY_ASSET_NAME) ?
+                FixedPoint.toUnits(BigDecimal.ONE, assetScales.prizeScale()) :
+                lastPriceCache.getPrize(assetName);
+    }
+
+    private Long valueOf(Asset asset, Long prize) {
+        return prize == null ? null :
+                FixedPoint.notional(prize, asset.getSize(), assetScales.scaleOf(asset.getName()));
+    }
+
+    private class CustomerRangeValuation extends RecursiveTask<Map<Long, Long>> {
+        private final long fromCustomerId;
+        private final long toCustomerId;
+
+        private CustomerRangeValuation(long fromCustomerId, long toCustomerId) {
+            this.fromCustomerId = fromCustomerId;
+            this.toCustomerId = toCustomerId;
+        }
+
+        @Override
+        protected Map<Long, Long> compute() {
+            if (toCustomerId - fromCustomerId < customerRangeSize) {
+                Map<Long, Long> totals = new TreeMap<>();
+                for (Asset asset : assetRepository.findHoldings(fromCustomerId, toCustomerId)) {
+                    Long value = valueOf(asset, prizeOf(asset.getName()));
+                    totals.merge(asset.getCustomerId(), value == null ? 0 : value, Long::sum);
+                }
+                return totals;
+            }
+            long middle = fromCustomerId + (toCustomerId - fromCustomerId) / 2;
+            CustomerRangeValuation lower = new CustomerRangeValuation(fromCustomerId, middle);
+            CustomerRangeValuation upper = new CustomerRangeValuation(middle + 1, toCustomerId);
+            upper.fork();
+            Map<Long, Long> totals = lower.compute();
+            totals.putAll(upper.join());
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+-- Converts DOUBLE amount columns written by earlier versions into fixed point BIGINT
+-- units. The multipliers have to match stockmanager.asset.scale.* (TRY: 2 decimal
+-- places, every other asset: 0 by default). Values with more decimal places than the
+-- scale are rounded half up.
+
+ALTER TABLE assets ADD COLUMN size_units BIGINT;
+ALTER TABLE assets ADD COLUMN usable_size_units BIGINT;
+UPDATE assets SET
+    size_units = CAST(ROUND(size * CASE WHEN name = 'TRY' THEN 100 ELSE 1 END, 0) AS BIGINT),
+    usable_size_units = CAST(ROUND(usable_size * CASE WHEN name = 'TRY' THEN 100 ELSE 1 END, 0) AS BIGINT);
+ALTER TABLE assets DROP COLUMN size;
+ALTER TABLE assets DROP COLUMN usable_size;
+ALTER TABLE assets ALTER COLUMN size_units RENAME TO size;
+ALTER TABLE assets ALTER COLUMN usable_size_units RENAME TO usable_size;
+ALTER TABLE assets ALTER COLUMN size SET NOT NULL;
+ALTER TABLE assets ALTER COLUMN usable_size SET NOT NULL;
+
+ALTER TABLE orders ADD COLUMN prize_units BIGINT;
+ALTER TABLE orders ADD COLUMN size_units BIGINT;
+UPDATE orders SET
+    prize_units = CAST(ROUND(prize * 100, 0) AS BIGINT),
+    size_units = CAST(ROUND(size * CASE WHEN asset_name = 'TRY' THEN 100 ELSE 1 END, 0) AS BIGINT);
+ALTER TABLE orders DROP COLUMN prize;
+ALTER TABLE orders DROP COLUMN size;
+ALTER TABLE orders ALTER COLUMN prize_units RENAME TO prize;
+ALTER TABLE orders ALTER COLUMN size_units RENAME TO size;
+ALTER TABLE orders ALTER COLUMN prize SET NOT NULL;
+ALTER TABLE orders ALTER COLUMN size SET NOT NULL;
+
+-- Order and asset ids come from pooled sequences instead of identity columns. Hibernate
+-- hands out the block of 50 ids ending at the value it reads, so the sequences restart
+-- 50 above the highest existing id to keep new ids clear of the migrated rows. RESTART
+-- also covers a sequence Hibernate already created at 1 on an earlier start.
+CREATE SEQUENCE IF NOT EXISTS assets_seq INCREMENT BY 50;
+ALTER SEQUENCE assets_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM assets);
+CREATE SEQUENCE IF NOT EXISTS orders_seq INCREMENT BY 50;
+ALTER SEQUENCE orders_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM orders);
@@ -0,0 +1,68 @@
+package com.seckin.stockmanager.benchmark;
+
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.service.MappedAssetJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Reports how long {@link MappedAssetJournal#recover()} takes for growing journal
+ * lengths, once replaying the whole journal and once from a snapshot taken before the
+ * last 10% of the records. Run with {@code ./gradlew journalRecoveryBenchmark}.
+ */
+public class JournalRecoveryBenchmark {
+    private static final int ASSETS = 10_000;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int[] JOURNAL_LENGTHS = {10_000, 100_000, 1_000_000, 5_000_000};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%12s %10s %22s %22s%n", "records", "assets", "full replay (ms)",
+                "snapshot + tail (ms)");
+        for (int journalLength : JOURNAL_LENGTHS) {
+            double fullReplay = measure(journalLength, false);
+            double snapshotAndTail = measure(journalLength, true);
+            System.out.printf("%12d %10d %22.1f %22.1f%n", journalLength, ASSETS, fullReplay,
+                    snapshotAndTail);
+        }
+    }
+
+    private static double measure(int journalLength, boolean withSnapshot) throws IOException {
+        Path directory = Files.createTempDirectory("journal-benchmark");
+        try {
+            MappedAssetJournal journal = new MappedAssetJournal(null, directory.toString(), SEGMENT_SIZE, 1024);
+            journal.recover();
+            journal.start();
+            int snapshotAt = withSnapshot ? journalLength - journalLength / 10 : -1;
+            CompletableFuture<Long> last = null;
+            for (int i = 0; i < journalLength; i++) {
+                if (i == snapshotAt) {
+                    journal.snapshot().join();
+                }
+                last = journal.append(new MappedAssetJournal.Entry(i % ASSETS, "TRY", i / ASSETS,
+                        i, i), AssetMutationType.DEPOSIT);
+            }
+            last.join();
+            journal.close();
+
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long startTime = System.nanoTime();
+                new MappedAssetJournal(null, directory.toString(), SEGMENT_SIZE, 1024).recover();
+                best = Math.min(best, System.nanoTime() - startTime);
+            }
+            return best / 1_000_000.0;
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
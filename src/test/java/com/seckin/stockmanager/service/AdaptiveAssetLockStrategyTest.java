@@ -0,0 +1,79 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.repository.AssetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AdaptiveAssetLockStrategyTest {
+
+    @Mock
+    private AssetRepository assetRepository;
+
+    private AdaptiveAssetLockStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        strategy = new AdaptiveAssetLockStrategy(assetRepository, 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void getAssetForUpdate_ShouldReadWithoutLock_WhenAssetHasNoConflicts() {
+        Asset asset = new Asset(1L, TRY_ASSET_NAME, 100, 100);
+        when(assetRepository.findAsset(1L, TRY_ASSET_NAME)).thenReturn(Optional.of(asset));
+
+        assertEquals(asset, strategy.getAssetForUpdate(1L, TRY_ASSET_NAME));
+        verify(assetRepository, never()).findByCustomerIdAndName(anyLong(), anyString());
+    }
+
+    @Test
+    void getAssetForUpdate_ShouldLockRow_WhenConflictThresholdReached() {
+        Asset asset = new Asset(1L, TRY_ASSET_NAME, 100, 100);
+        when(assetRepository.findById(7L)).thenReturn(Optional.of(asset));
+        when(assetRepository.findByCustomerIdAndName(1L, TRY_ASSET_NAME)).thenReturn(Optional.of(asset));
+        ObjectOptimisticLockingFailureException conflict =
+                new ObjectOptimisticLockingFailureException(Asset.class, 7L);
+
+        strategy.onConflict(conflict);
+        assertFalse(strategy.isPessimistic(new AssetKey(1L, TRY_ASSET_NAME)));
+        strategy.onConflict(conflict);
+
+        assertTrue(strategy.isPessimistic(new AssetKey(1L, TRY_ASSET_NAME)));
+        assertEquals(asset, strategy.getAssetForUpdate(1L, TRY_ASSET_NAME));
+        verify(assetRepository, never()).findAsset(anyLong(), anyString());
+        assertFalse(strategy.isPessimistic(new AssetKey(2L, TRY_ASSET_NAME)));
+    }
+
+    @Test
+    void getAssetsForUpdate_ShouldLockAllRows_WhenOneRowIsPessimistic() {
+        AssetKey hotKey = new AssetKey(1L, TRY_ASSET_NAME);
+        List<AssetKey> keys = List.of(hotKey, new AssetKey(2L, "AAPL"));
+        when(assetRepository.readAssets(keys)).thenReturn(Map.of());
+        when(assetRepository.lockAssets(keys)).thenReturn(Map.of());
+
+        strategy.getAssetsForUpdate(keys);
+        verify(assetRepository, times(1)).readAssets(keys);
+        verify(assetRepository, never()).lockAssets(anyCollection());
+
+        strategy.recordConflict(hotKey);
+        strategy.recordConflict(hotKey);
+        strategy.getAssetsForUpdate(keys);
+
+        verify(assetRepository, times(1)).lockAssets(keys);
+        verify(assetRepository, times(1)).readAssets(keys);
+    }
+}
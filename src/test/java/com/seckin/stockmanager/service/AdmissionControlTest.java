@@ -0,0 +1,114 @@
+package com.seckin.stockmanager.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AdmissionControlTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Mock
+    private StockManagerMetrics metrics;
+
+    private AdmissionControl admissionControl;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // order writes 2/s with a burst of 4, asset writes 1/s with a burst of 1, reads 10/s with a burst of 10
+        admissionControl = new AdmissionControl(metrics, true, 2, 4, 1, 1, 10, 10, 2, Duration.ZERO);
+    }
+
+    @Test
+    void tryAcquireToken_ShouldRejectWithWaitTime_WhenBurstIsUsedUp() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", 0));
+        }
+
+        assertEquals(SECOND / 2, admissionControl.tryAcquireToken("testUser", "POST", "/orders", 0));
+        verify(metrics).requestRejected("rate-limit");
+    }
+
+    @Test
+    void tryAcquireToken_ShouldAcceptAgain_WhenBucketRefilled() {
+        for (int i = 0; i < 4; i++) {
+            admissionControl.tryAcquireToken("testUser", "POST", "/orders", 0);
+        }
+
+        assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", SECOND / 2));
+        assertTrue(admissionControl.tryAcquireToken("testUser", "POST", "/orders", SECOND / 2) > 0);
+    }
+
+    @Test
+    void tryAcquireToken_ShouldLimitEachCustomerAndEndpointGroupSeparately() {
+        assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/assets/deposit", 0));
+        assertTrue(admissionControl.tryAcquireToken("testUser", "POST", "/assets/withdraw", 0) > 0);
+
+        assertEquals(0, admissionControl.tryAcquireToken("otherUser", "POST", "/assets/deposit", 0));
+        assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", 0));
+        assertEquals(0, admissionControl.tryAcquireToken("testUser", "GET", "/assets/list", 0));
+    }
+
+    @Test
+    void tryAcquireToken_ShouldRefill_WhenNanoTimeOverflows() {
+        long beforeOverflow = Long.MAX_VALUE - SECOND / 4;
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", beforeOverflow));
+        }
+        assertTrue(admissionControl.tryAcquireToken("testUser", "POST", "/orders", beforeOverflow) > 0);
+
+        assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", beforeOverflow + SECOND / 2));
+    }
+
+    @Test
+    void isFull_ShouldCompareTimesByDifference_WhenNanoTimeOverflows() {
+        long beforeOverflow = Long.MAX_VALUE - SECOND / 4;
+        TokenBucket bucket = new TokenBucket(2, 4, beforeOverflow);
+
+        assertTrue(bucket.isFull(beforeOverflow));
+        bucket.tryAcquire(beforeOverflow);
+        assertFalse(bucket.isFull(beforeOverflow));
+        assertTrue(bucket.isFull(beforeOverflow + SECOND / 2));
+    }
+
+    @Test
+    void tryAcquireToken_ShouldAccept_WhenRateLimitIsDisabled() {
+        admissionControl = new AdmissionControl(metrics, false, 1, 1, 1, 1, 1, 1, 2, Duration.ZERO);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, admissionControl.tryAcquireToken("testUser", "POST", "/orders", 0));
+        }
+        verifyNoInteractions(metrics);
+    }
+
+    @Test
+    void tryEnter_ShouldShedRequest_WhenAllSlotsAreTaken() throws InterruptedException {
+        assertTrue(admissionControl.tryEnter());
+        assertTrue(admissionControl.tryEnter());
+
+        assertFalse(admissionControl.tryEnter());
+        verify(metrics).requestRejected("overload");
+
+        admissionControl.exit();
+        assertTrue(admissionControl.tryEnter());
+    }
+
+    @Test
+    void removeFullBuckets_ShouldKeepBucketsStillRefilling() {
+        long now = System.nanoTime();
+        admissionControl.tryAcquireToken("testUser", "POST", "/orders", now);
+        admissionControl.tryAcquireToken("otherUser", "POST", "/orders", now - 10 * SECOND);
+
+        admissionControl.removeFullBuckets();
+
+        assertEquals(1, admissionControl.getBucketCount());
+    }
+}
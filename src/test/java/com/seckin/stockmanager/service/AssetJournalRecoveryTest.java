@@ -0,0 +1,86 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.repository.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AssetJournalRecoveryTest {
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private AssetRepository assetRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private MappedAssetJournal newJournal() {
+        return new MappedAssetJournal(entityManager, directory.toString(), 4096, 16);
+    }
+
+    @Test
+    void recover_ShouldRestoreOnlyKnownCustomersWithoutReservations_AfterRestart() throws IOException {
+        // before the restart the admin has an open BUY order and customer 2 registered and deposited
+        MappedAssetJournal journal = newJournal();
+        journal.recover();
+        journal.start();
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 0, 100000, 100000), AssetMutationType.DEPOSIT).join();
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 1, 100000, 60000), AssetMutationType.RESERVE).join();
+        journal.append(new MappedAssetJournal.Entry(2L, TRY_ASSET_NAME, 0, 5000, 5000), AssetMutationType.DEPOSIT).join();
+        journal.close();
+
+        // the in-memory database only holds the seeded admin after the restart
+        when(assetRepository.findAll()).thenReturn(new ArrayList<>());
+        when(customerRepository.findAllIds()).thenReturn(List.of(1L));
+        when(assetRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        MappedAssetJournal restartedJournal = newJournal();
+        new AssetJournalRecovery(restartedJournal, assetRepository, customerRepository,
+                transactionManager).recover();
+        restartedJournal.close();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Asset>> restored = ArgumentCaptor.forClass(List.class);
+        verify(assetRepository).saveAll(restored.capture());
+        assertEquals(1, restored.getValue().size());
+        Asset restoredAsset = restored.getValue().get(0);
+        assertEquals(1L, restoredAsset.getCustomerId());
+        assertEquals(100000, restoredAsset.getSize());
+        assertEquals(100000, restoredAsset.getUsableSize());
+
+        Map<AssetKey, MappedAssetJournal.Entry> checkpointed = newJournal().recover();
+        assertEquals(1, checkpointed.size());
+        assertNull(checkpointed.get(new AssetKey(2L, TRY_ASSET_NAME)));
+    }
+}
@@ -1,16 +1,25 @@
 package com.seckin.stockmanager.service;
 
 import com.seckin.stockmanager.dto.AssetDTO;
+import com.seckin.stockmanager.dto.PageDTO;
 import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.InvalidAmountException;
+import com.seckin.stockmanager.exception.ResourceNotFoundException;
 import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
 import com.seckin.stockmanager.repository.AssetRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.PessimisticLockException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,19 +35,37 @@ class AssetServiceTest {
     @Mock
     private CustomerService customerService;
 
-    @InjectMocks
+    @Spy
+    private AssetScales assetScales = new AssetScales();
+
+    @Mock
+    private AssetJournal assetJournal;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private StockManagerMetrics metrics = new StockManagerMetrics(meterRegistry);
+
+    @Mock
+    private CustomerEventPublisher customerEvents;
+
+    @Mock
+    private CustomerReadModel readModel;
+
     private AssetService assetService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        assetService = new AssetService(assetRepository, customerService, assetScales, assetJournal,
+                new PessimisticAssetLockStrategy(assetRepository), metrics, customerEvents, readModel);
     }
 
     @Test
     void getAssetWithLock_ShouldReturnAsset_WhenAssetExists() {
         Long customerId = 1L;
         String assetName = "AAPL";
-        Asset asset = new Asset(customerId, assetName, 100d, 100d);
+        Asset asset = new Asset(customerId, assetName, 100, 100);
 
         when(assetRepository.findByCustomerIdAndName(customerId, assetName)).thenReturn(Optional.of(asset));
 
@@ -64,110 +91,241 @@ class AssetServiceTest {
 
     @Test
     void saveAsset_ShouldSaveAsset_WhenNoLockException() {
-        Asset asset = new Asset(1L, "AAPL", 100d, 100d);
+        Asset asset = new Asset(1L, "AAPL", 100, 100);
 
         when(assetRepository.save(asset)).thenReturn(asset);
 
-        Asset result = assetService.saveAsset(asset);
+        Asset result = assetService.saveAsset(asset, AssetMutationType.DEPOSIT);
 
         assertEquals(asset, result);
         verify(assetRepository, times(1)).save(asset);
+        verify(assetJournal, times(1)).record(asset, AssetMutationType.DEPOSIT);
+    }
+
+    @Test
+    void saveAsset_ShouldPublishFlushedVersion_WhenAssetExists() {
+        Asset asset = new Asset(5L, 1L, "AAPL", 100, 100, 2);
+        when(assetRepository.save(asset)).thenReturn(asset);
+
+        assetService.saveAsset(asset, AssetMutationType.SETTLE);
+
+        verify(customerEvents, times(1)).assetChanged(asset, 3, AssetMutationType.SETTLE);
+    }
+
+    @Test
+    void getAssetWithLock_ShouldRecordLockWaitPerAsset() {
+        when(assetRepository.findByCustomerIdAndName(1L, "AAPL")).thenReturn(Optional.empty());
+
+        assetService.getAssetWithLock(1L, "AAPL");
+        assetService.getAssetWithLock(1L, "AAPL");
+
+        assertEquals(2, meterRegistry.get("stockmanager.asset.lock").tag("asset", "AAPL").timer().count());
+    }
+
+    @Test
+    void getAssetWithLock_ShouldCountLockConflict_WhenLockCanNotBeAcquired() {
+        when(assetRepository.findByCustomerIdAndName(1L, TRY_ASSET_NAME))
+                .thenThrow(new PessimisticLockingFailureException("lock timeout"));
+
+        assertThrows(PessimisticLockingFailureException.class,
+                () -> assetService.getAssetWithLock(1L, TRY_ASSET_NAME));
+
+        assertEquals(1, meterRegistry.get("stockmanager.asset.lock.conflicts")
+                .tag("asset", TRY_ASSET_NAME).counter().count());
     }
 
     @Test
     void saveAsset_ShouldThrowRuntimeException_WhenPessimisticLockException() {
-        Asset asset = new Asset(1L, "AAPL", 100d, 100d);
+        Asset asset = new Asset(1L, "AAPL", 100, 100);
 
         when(assetRepository.save(asset)).thenThrow(new PessimisticLockException());
 
-        RuntimeException exception = assertThrows(RuntimeException.class, () -> assetService.saveAsset(asset));
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> assetService.saveAsset(asset, AssetMutationType.DEPOSIT));
 
         assertEquals("The record was updated by another transaction", exception.getMessage());
         verify(assetRepository, times(1)).save(asset);
+        verify(assetJournal, never()).record(any(Asset.class), any(AssetMutationType.class));
     }
 
     @Test
     void depositMoney_ShouldIncreaseUsableSizeAndSize_WhenAssetExists() {
         String customerUserName = "testUser";
-        Double amount = 50.0;
+        BigDecimal amount = new BigDecimal("50.00");
         long customerId = 1L;
-        Asset tryAsset = new Asset(customerId, TRY_ASSET_NAME, 100.0, 100.0);
 
         when(customerService.getCustomerId(customerUserName)).thenReturn(customerId);
-        when(assetRepository.findByCustomerIdAndName(customerId, TRY_ASSET_NAME)).thenReturn(Optional.of(tryAsset));
+        when(assetRepository.addToAsset(customerId, TRY_ASSET_NAME, 5000)).thenReturn(1);
 
         assetService.depositMoney(customerUserName, amount);
 
-        assertEquals(150.0, tryAsset.getSize());
-        assertEquals(150.0, tryAsset.getUsableSize());
-        verify(assetRepository, times(1)).save(tryAsset);
+        verify(assetRepository, times(1)).addToAsset(customerId, TRY_ASSET_NAME, 5000);
+        verify(assetRepository, never()).lockAssets(anyCollection());
+        verify(assetRepository, never()).findByCustomerIdAndName(anyLong(), anyString());
     }
 
     @Test
     void depositMoney_ShouldCreateAsset_WhenAssetDoesNotExist() {
         String customerUserName = "testUser";
-        Double amount = 50.0;
+        BigDecimal amount = new BigDecimal("50.00");
         long customerId = 1L;
 
         when(customerService.getCustomerId(customerUserName)).thenReturn(customerId);
-        when(assetRepository.findByCustomerIdAndName(customerId, TRY_ASSET_NAME)).thenReturn(Optional.empty());
+        when(assetRepository.addToAsset(customerId, TRY_ASSET_NAME, 5000)).thenReturn(0, 1);
 
         assetService.depositMoney(customerUserName, amount);
 
-        verify(assetRepository, times(1)).save(argThat(asset ->
-                asset.getSize().equals(amount) &&
-                        asset.getUsableSize().equals(amount) &&
-                        asset.getCustomerId()==customerId &&
-                        asset.getName().equals(TRY_ASSET_NAME)
-        ));
+        verify(assetRepository, times(1)).lockAssets(List.of(new AssetKey(customerId, TRY_ASSET_NAME)));
+        verify(assetRepository, times(2)).addToAsset(customerId, TRY_ASSET_NAME, 5000);
+    }
+
+    @Test
+    void depositMoney_ShouldJournalUpdatedRow() {
+        Asset updatedAsset = new Asset(1L, TRY_ASSET_NAME, 15000, 15000, 3);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetRepository.addToAsset(1L, TRY_ASSET_NAME, 5000)).thenReturn(1);
+        when(assetJournal.isEnabled()).thenReturn(true);
+        when(assetRepository.findSnapshot(1L, TRY_ASSET_NAME)).thenReturn(Optional.of(updatedAsset));
+
+        assetService.depositMoney("testUser", new BigDecimal("50.00"));
+
+        verify(assetJournal, times(1)).record(updatedAsset, AssetMutationType.DEPOSIT);
+    }
+
+    @Test
+    void withdrawMoney_ShouldPublishUpdatedRow_WhenCustomerIsObserved() {
+        Asset updatedAsset = new Asset(1L, TRY_ASSET_NAME, 5000, 5000, 3);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetRepository.removeFromAsset(1L, TRY_ASSET_NAME, 5000)).thenReturn(1);
+        when(customerEvents.isObserved(1L)).thenReturn(true);
+        when(assetRepository.findSnapshot(1L, TRY_ASSET_NAME)).thenReturn(Optional.of(updatedAsset));
+
+        assetService.withdrawMoney("testUser", new BigDecimal("50.00"), "TR000000000000000000000000");
+
+        verify(customerEvents, times(1)).assetChanged(updatedAsset, 3, AssetMutationType.WITHDRAW);
+    }
+
+    @Test
+    void withdrawMoney_ShouldNotReadUpdatedRow_WhenNotJournaledOrStreamed() {
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetRepository.removeFromAsset(1L, TRY_ASSET_NAME, 5000)).thenReturn(1);
+
+        assetService.withdrawMoney("testUser", new BigDecimal("50.00"), "TR000000000000000000000000");
+
+        verify(assetRepository, never()).findSnapshot(anyLong(), anyString());
+    }
+
+    @Test
+    void depositMoney_ShouldThrowException_WhenAmountHasMoreDecimalPlacesThanScale() {
+        String customerUserName = "testUser";
+        BigDecimal amount = new BigDecimal("50.005");
+
+        when(customerService.getCustomerId(customerUserName)).thenReturn(1L);
+
+        assertThrows(InvalidAmountException.class, () -> assetService.depositMoney(customerUserName, amount));
+        verify(assetRepository, never()).save(any(Asset.class));
     }
 
     @Test
     void withdrawMoney_ShouldDecreaseUsableSizeAndSize_WhenSufficientUsableSize() {
         String customerUserName = "testUser";
-        Double amount = 50.0;
+        BigDecimal amount = new BigDecimal("50.00");
         String iban = "TR000000000000000000000000";
         long customerId = 1L;
-        Asset tryAsset = new Asset(customerId, TRY_ASSET_NAME, 100.0, 100.0);
 
         when(customerService.getCustomerId(customerUserName)).thenReturn(customerId);
-        when(assetRepository.findByCustomerIdAndName(customerId, TRY_ASSET_NAME)).thenReturn(Optional.of(tryAsset));
+        when(assetRepository.removeFromAsset(customerId, TRY_ASSET_NAME, 5000)).thenReturn(1);
 
         assetService.withdrawMoney(customerUserName, amount, iban);
 
-        assertEquals(50.0, tryAsset.getSize());
-        assertEquals(50.0, tryAsset.getUsableSize());
-        verify(assetRepository, times(1)).save(tryAsset);
+        verify(assetRepository, times(1)).removeFromAsset(customerId, TRY_ASSET_NAME, 5000);
+        verify(assetJournal, never()).record(any(Asset.class), any(AssetMutationType.class));
     }
 
     @Test
     void withdrawMoney_ShouldThrowException_WhenInsufficientUsableSize() {
         String customerUserName = "testUser";
-        Double amount = 150.0;
+        BigDecimal amount = new BigDecimal("150.00");
         String iban = "TR000000000000000000000000";
         long customerId = 1L;
-        Asset tryAsset = new Asset(customerId, TRY_ASSET_NAME, 100.0, 100.0);
 
         when(customerService.getCustomerId(customerUserName)).thenReturn(customerId);
-        when(assetRepository.findByCustomerIdAndName(customerId, TRY_ASSET_NAME)).thenReturn(Optional.of(tryAsset));
+        when(assetRepository.removeFromAsset(customerId, TRY_ASSET_NAME, 15000)).thenReturn(0);
 
         assertThrows(AssetUsableSizeNotEnoughException.class, () -> assetService.withdrawMoney(customerUserName, amount, iban));
     }
 
+    @Test
+    void reserveAsset_ShouldThrowResourceNotFoundException_WhenAssetDoesNotExist() {
+        when(assetRepository.reserveAsset(1L, "AAPL", 10)).thenReturn(0);
+        when(assetRepository.findAsset(1L, "AAPL")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> assetService.reserveAsset(1L, "AAPL", 10));
+    }
+
+    @Test
+    void reserveAsset_ShouldThrowException_WhenInsufficientUsableSize() {
+        when(assetRepository.reserveAsset(1L, "AAPL", 10)).thenReturn(0);
+        when(assetRepository.findAsset(1L, "AAPL")).thenReturn(Optional.of(new Asset(1L, "AAPL", 5, 5)));
+
+        assertThrows(AssetUsableSizeNotEnoughException.class, () -> assetService.reserveAsset(1L, "AAPL", 10));
+    }
+
+    @Test
+    void releaseAsset_ShouldThrowResourceNotFoundException_WhenAssetDoesNotExist() {
+        when(assetRepository.releaseAsset(1L, TRY_ASSET_NAME, 100)).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> assetService.releaseAsset(1L, TRY_ASSET_NAME, 100));
+    }
+
     @Test
     void listAssets_ShouldReturnAssetDTOList_WhenAssetsExist() {
         String customerUserName = "testUser";
         String assetName = "AAPL";
         long customerId = 1L;
-        Asset asset = new Asset(customerId, assetName, 100.0, 100.0);
+        Asset asset = new Asset(customerId, assetName, 100, 100);
 
         when(customerService.getCustomerId(customerUserName)).thenReturn(customerId);
-        when(assetRepository.findAssets(customerId, assetName)).thenReturn(List.of(asset));
+        when(assetRepository.findAssets(customerId, assetName,
+                PageRequest.of(0, PageCursor.DEFAULT_PAGE_SIZE + 1))).thenReturn(List.of(asset));
+
+        PageDTO<AssetDTO> assets = assetService.listAssets(customerUserName, assetName, null, null);
+
+        assertEquals(1, assets.items.size());
+        assertEquals(asset.getName(), assets.items.get(0).name);
+        assertNull(assets.nextCursor);
+        verify(assetRepository, times(1)).findAssets(customerId, assetName,
+                PageRequest.of(0, PageCursor.DEFAULT_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void listAssets_ShouldReadAfterCursor_WhenCursorIsGiven() {
+        Asset asset = new Asset(6L, 1L, "AAPL", 100, 100, 0);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetRepository.findAssetsAfter(1L, null, 5L, PageRequest.of(0, PageCursor.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(List.of(asset));
+
+        PageDTO<AssetDTO> assets = assetService.listAssets("testUser", null,
+                new PageCursor(null, 5L).encode(), null);
+
+        assertEquals(1, assets.items.size());
+        verify(assetRepository, never()).findAssets(any(), any(), any());
+    }
+
+    @Test
+    void listAssets_ShouldNotQueryDatabase_WhenReadModelServesThePage() {
+        Asset asset = new Asset(5L, 1L, "AAPL", 100, 100, 0);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(readModel.findAssets(1L, null, null, PageCursor.DEFAULT_PAGE_SIZE + 1, 7L))
+                .thenReturn(List.of(asset));
 
-        List<AssetDTO> assets = assetService.listAssets(customerUserName, assetName);
+        PageDTO<AssetDTO> assets = assetService.listAssets("testUser", null, null, null, 7L);
 
-        assertEquals(1, assets.size());
-        assertEquals(asset.getName(), assets.get(0).name);
-        verify(assetRepository, times(1)).findAssets(customerId, assetName);
+        assertEquals(1, assets.items.size());
+        verify(assetRepository, never()).findAssets(any(), any(), any());
     }
 }
@@ -0,0 +1,76 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.seckin.stockmanager.dto.BulkOrderRequestDTO;
+import com.seckin.stockmanager.dto.BulkOrderResultDTO;
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BulkOrderServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private CustomerService customerService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BulkOrderService bulkOrderService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        bulkOrderService = new BulkOrderService(orderService, orderRepository, customerService, objectMapper, 2);
+    }
+
+    @Test
+    void selectOrderIds_ShouldQueryPendingOrders_WhenSelectedByCustomerAndAsset() {
+        BulkOrderRequestDTO request = new BulkOrderRequestDTO();
+        request.customerUserName = "testUser";
+        request.assetName = "AAPL";
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(orderRepository.findIds(1L, "AAPL", OrderStatus.PENDING)).thenReturn(List.of(4L, 5L));
+
+        assertEquals(List.of(4L, 5L), bulkOrderService.selectOrderIds(request));
+    }
+
+    @Test
+    void cancelOrders_ShouldWriteOneLinePerOrder_AndReportFailedChunk() throws Exception {
+        when(orderService.cancelOrders(List.of(1L, 2L))).thenReturn(List.of(
+                new BulkOrderResultDTO(1L, OrderStatus.CANCELLED),
+                new BulkOrderResultDTO(2L, "Deletable Order with ID 2 not found")));
+        when(orderService.cancelOrders(List.of(3L)))
+                .thenThrow(new LockConflictException("The record was updated by another transaction", null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        bulkOrderService.cancelOrders(List.of(1L, 2L, 3L), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertTrue(first.get("accepted").asBoolean());
+        assertEquals("CANCELLED", first.get("status").asText());
+        assertFalse(objectMapper.readTree(lines[1]).get("accepted").asBoolean());
+        JsonNode last = objectMapper.readTree(lines[2]);
+        assertEquals(3L, last.get("orderId").asLong());
+        assertEquals("The record was updated by another transaction", last.get("error").asText());
+    }
+}
@@ -0,0 +1,112 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.CandleInterval;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.CandleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CandleServiceTest {
+
+    @Mock
+    private CandleRepository candleRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CandleService candleService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        candleService = new CandleService(candleRepository, new StockManagerMetrics(meterRegistry),
+                Duration.ZERO);
+    }
+
+    @Test
+    void onTradeExecuted_ShouldUpdateCandlesOfEveryInterval() {
+        Instant minute = Instant.parse("2026-01-01T10:15:00Z");
+
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 10000, 2, minute.plusSeconds(1)));
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 12000, 1, minute.plusSeconds(30)));
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 9000, 3, minute.plusSeconds(59)));
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 9500, 1, minute.plusSeconds(60)));
+
+        List<Candle> minutes = candleService.getCandles("AAPL", CandleInterval.MINUTE, 10);
+        assertEquals(2, minutes.size());
+        Candle first = minutes.get(0);
+        assertEquals(minute, first.getOpenTime());
+        assertEquals(10000, first.getOpenPrize());
+        assertEquals(12000, first.getHighPrize());
+        assertEquals(9000, first.getLowPrize());
+        assertEquals(9000, first.getClosePrize());
+        assertEquals(6, first.getVolume());
+        assertEquals(3, first.getTradeCount());
+        assertEquals(4, candleService.getCandles("AAPL", CandleInterval.SECOND, 10).size());
+        Candle hour = candleService.getCandles("AAPL", CandleInterval.HOUR, 10).get(0);
+        assertEquals(7, hour.getVolume());
+        assertEquals(9500, hour.getClosePrize());
+        assertTrue(candleService.getCandles("MSFT", CandleInterval.MINUTE, 10).isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void flushClosedCandles_ShouldWriteClosedCandlesOnce() {
+        Instant lastHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 10000, 2, lastHour));
+
+        candleService.flushClosedCandles();
+        candleService.flushClosedCandles();
+
+        ArgumentCaptor<List<Candle>> candles = ArgumentCaptor.forClass(List.class);
+        verify(candleRepository, times(1)).saveAll(candles.capture());
+        // the one second candle of an hour ago is older than its ring
+        assertEquals(List.of(CandleInterval.MINUTE, CandleInterval.HOUR),
+                candles.getValue().stream().map(Candle::getCandleInterval).toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void flushClosedCandles_ShouldWriteCandlesAgain_WhenPreviousFlushFailed() {
+        Instant lastHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 10000, 2, lastHour));
+        when(candleRepository.saveAll(anyList())).thenThrow(new RuntimeException("db down")).thenReturn(List.of());
+
+        candleService.flushClosedCandles();
+        candleService.flushClosedCandles();
+        candleService.flushClosedCandles();
+
+        ArgumentCaptor<List<Candle>> candles = ArgumentCaptor.forClass(List.class);
+        verify(candleRepository, times(2)).saveAll(candles.capture());
+        assertEquals(List.of(CandleInterval.MINUTE, CandleInterval.HOUR),
+                candles.getAllValues().get(1).stream().map(Candle::getCandleInterval).toList());
+    }
+
+    @Test
+    void onTradeExecuted_ShouldCountTrade_WhenItsCandleWasFlushed() {
+        Instant lastHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 10000, 2, lastHour));
+        candleService.flushClosedCandles();
+
+        // settled longer than the close delay after the trade
+        candleService.onTradeExecuted(new TradeExecutedEvent("AAPL", 11000, 1, lastHour.plusSeconds(5)));
+        candleService.flushClosedCandles();
+
+        assertEquals(2, candleService.getCandles("AAPL", CandleInterval.HOUR, 10).get(0).getVolume());
+        assertEquals(1, meterRegistry.get("stockmanager.candles.dropped.trades")
+                .tag("interval", CandleInterval.HOUR.name()).counter().count());
+        verify(candleRepository, times(1)).saveAll(anyList());
+    }
+}
@@ -0,0 +1,190 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.seckin.stockmanager.dto.BatchOrderResultDTO;
+import com.seckin.stockmanager.dto.CommandDTO;
+import com.seckin.stockmanager.dto.DepositRequestDTO;
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.exception.CommandQueueFullException;
+import com.seckin.stockmanager.model.AsyncCommand;
+import com.seckin.stockmanager.model.CommandStatus;
+import com.seckin.stockmanager.model.CommandType;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.repository.AsyncCommandRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CommandServiceTest {
+
+    @Mock
+    private AsyncCommandRepository commandRepository;
+
+    @Mock
+    private CommandBroker commandBroker;
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private AssetService assetService;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private CommandService commandService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        StockManagerMetrics metrics = new StockManagerMetrics(new SimpleMeterRegistry());
+        commandService = new CommandService(commandRepository, commandBroker, orderService,
+                assetService, customerService, objectMapper, transactionManager, metrics,
+                new ConflictRetryAspect(metrics, new PessimisticAssetLockStrategy(null), 3,
+                        Duration.ZERO, Duration.ZERO));
+    }
+
+    private AsyncCommand command(long id, CommandType type, Object payload) throws Exception {
+        AsyncCommand command = new AsyncCommand(type, "testUser", objectMapper.writeValueAsString(payload));
+        command.setId(id);
+        return command;
+    }
+
+    private static OrderDTO orderDto(String assetName) {
+        OrderDTO orderDto = new OrderDTO();
+        orderDto.customerUserName = "testUser";
+        orderDto.assetName = assetName;
+        orderDto.side = OrderSide.BUY;
+        orderDto.orderSize = new BigDecimal("1");
+        orderDto.prize = new BigDecimal("10.00");
+        return orderDto;
+    }
+
+    @Test
+    void submit_ShouldSaveAndPublishCommand() {
+        when(commandRepository.save(any(AsyncCommand.class))).thenAnswer(invocation -> {
+            AsyncCommand command = invocation.getArgument(0);
+            command.setId(7L);
+            return command;
+        });
+        when(commandBroker.publish(7L)).thenReturn(true);
+
+        CommandDTO result = commandService.submit(CommandType.CREATE_ORDER, "testUser", orderDto("AAPL"));
+
+        assertEquals(7L, result.id);
+        assertEquals(CommandStatus.QUEUED, result.status);
+        verify(commandBroker, times(1)).publish(7L);
+    }
+
+    @Test
+    void submit_ShouldThrowException_WhenQueueIsFull() {
+        when(commandRepository.save(any(AsyncCommand.class))).thenAnswer(invocation -> {
+            AsyncCommand command = invocation.getArgument(0);
+            command.setId(7L);
+            return command;
+        });
+        when(commandBroker.publish(7L)).thenReturn(false);
+
+        assertThrows(CommandQueueFullException.class,
+                () -> commandService.submit(CommandType.CREATE_ORDER, "testUser", orderDto("AAPL")));
+        ArgumentCaptor<AsyncCommand> savedCommand = ArgumentCaptor.forClass(AsyncCommand.class);
+        verify(commandRepository, times(2)).save(savedCommand.capture());
+        assertEquals(CommandStatus.FAILED, savedCommand.getValue().getStatus());
+    }
+
+    @Test
+    void processBatch_ShouldApplyConsecutiveOrdersAsOneBasket_AndRecordOutcomes() throws Exception {
+        DepositRequestDTO deposit = new DepositRequestDTO();
+        deposit.customerUserName = "testUser";
+        deposit.amount = new BigDecimal("100.00");
+        AsyncCommand firstOrder = command(1L, CommandType.CREATE_ORDER, orderDto("AAPL"));
+        AsyncCommand secondOrder = command(2L, CommandType.CREATE_ORDER, orderDto("MSFT"));
+        AsyncCommand depositCommand = command(3L, CommandType.DEPOSIT, deposit);
+        OrderDTO createdOrder = orderDto("AAPL");
+        createdOrder.id = 11L;
+
+        when(commandRepository.findAllById(List.of(1L, 2L, 3L)))
+                .thenReturn(List.of(depositCommand, secondOrder, firstOrder));
+        when(orderService.createOrders(anyList())).thenReturn(List.of(
+                new BatchOrderResultDTO(0, createdOrder),
+                new BatchOrderResultDTO(1, "Insufficient Asset Usable Size")));
+
+        commandService.processBatch(List.of(1L, 2L, 3L));
+
+        assertEquals(CommandStatus.SUCCEEDED, firstOrder.getStatus());
+        assertEquals(11L, objectMapper.readTree(firstOrder.getResult()).get("id").asLong());
+        assertEquals(CommandStatus.FAILED, secondOrder.getStatus());
+        assertEquals("Insufficient Asset Usable Size", secondOrder.getError());
+        assertEquals(CommandStatus.SUCCEEDED, depositCommand.getStatus());
+        verify(orderService, times(1)).createOrders(argThat(orders -> orders.size() == 2
+                && orders.get(0).assetName.equals("AAPL")));
+        verify(orderService, never()).createOrder(any(OrderDTO.class));
+        verify(assetService, times(1)).depositMoney(eq("testUser"), argThat(amount ->
+                amount.compareTo(new BigDecimal("100.00")) == 0));
+    }
+
+    @Test
+    void processBatch_ShouldMarkCommandFailed_WhenItThrows() throws Exception {
+        AsyncCommand matchCommand = command(1L, CommandType.MATCH_ORDER, 5L);
+
+        when(commandRepository.findAllById(List.of(1L))).thenReturn(List.of(matchCommand));
+        doThrow(new IllegalStateException("Order not matchable")).when(orderService).matchOrder(5L);
+
+        commandService.processBatch(List.of(1L));
+
+        assertEquals(CommandStatus.FAILED, matchCommand.getStatus());
+        assertEquals("Order not matchable", matchCommand.getError());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    @Test
+    void processBatch_ShouldRetryCommandInNewTransaction_WhenItFailsOnConflict() throws Exception {
+        AsyncCommand matchCommand = command(1L, CommandType.MATCH_ORDER, 5L);
+
+        when(commandRepository.findAllById(List.of(1L))).thenReturn(List.of(matchCommand));
+        doThrow(new CannotAcquireLockException("lock timeout")).doNothing()
+                .when(orderService).matchOrder(5L);
+
+        commandService.processBatch(List.of(1L));
+
+        assertEquals(CommandStatus.SUCCEEDED, matchCommand.getStatus());
+        verify(orderService, times(2)).matchOrder(5L);
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void failQueued_ShouldFailOnlyCommandsStillQueued() throws Exception {
+        AsyncCommand applied = command(1L, CommandType.MATCH_ORDER, 5L);
+        applied.succeed(null);
+        AsyncCommand queued = command(2L, CommandType.MATCH_ORDER, 6L);
+
+        when(commandRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(applied, queued));
+
+        commandService.failQueued(List.of(1L, 2L), "Command batch failed");
+
+        assertEquals(CommandStatus.SUCCEEDED, applied.getStatus());
+        assertEquals(CommandStatus.FAILED, queued.getStatus());
+        assertEquals("Command batch failed", queued.getError());
+        verify(commandRepository, times(1)).saveAll(List.of(queued));
+    }
+}
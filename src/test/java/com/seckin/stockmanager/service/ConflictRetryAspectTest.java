@@ -0,0 +1,102 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.LockConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConflictingService target;
+
+    private ConflictingService service;
+
+    @BeforeEach
+    void setUp() {
+        ConflictRetryAspect aspect = new ConflictRetryAspect(new StockManagerMetrics(meterRegistry),
+                new PessimisticAssetLockStrategy(null), 3,
+                Duration.ofMillis(1), Duration.ofMillis(2));
+        target = new ConflictingService();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(aspect);
+        service = proxyFactory.getProxy();
+    }
+
+    @Test
+    void retry_ShouldRerunCall_WhenItFailsOnConflict() {
+        target.failures.add(new CannotAcquireLockException("lock timeout"));
+        target.failures.add(new ObjectOptimisticLockingFailureException(Object.class, 1L));
+
+        assertEquals("done", service.update());
+
+        assertEquals(3, target.calls);
+        assertEquals(2, meterRegistry.get("stockmanager.conflict.retries").counter().count());
+    }
+
+    @Test
+    void retry_ShouldThrowLockConflictException_WhenAttemptsAreUsedUp() {
+        for (int i = 0; i < 3; i++) {
+            target.failures.add(new CannotAcquireLockException("lock timeout"));
+        }
+
+        LockConflictException exception = assertThrows(LockConflictException.class, () -> service.update());
+
+        assertEquals("The record was updated by another transaction", exception.getMessage());
+        assertEquals(3, target.calls);
+        assertEquals(1, meterRegistry.get("stockmanager.conflict.exhausted").counter().count());
+    }
+
+    @Test
+    void retry_ShouldRerunCall_WhenConcurrentFirstInsertViolatesUniqueKey() {
+        // a concurrent first deposit inserts the same TRY row, translated by Spring or not
+        ConstraintViolationException violation = new ConstraintViolationException(
+                "Unique index or primary key violation", new SQLException("23505"), null);
+        target.failures.add(new DataIntegrityViolationException("could not execute statement", violation));
+        target.failures.add(new PersistenceException("could not execute statement", violation));
+
+        assertEquals("done", service.update());
+
+        assertEquals(3, target.calls);
+    }
+
+    @Test
+    void retry_ShouldNotRerunCall_WhenFailureIsNotConflict() {
+        target.failures.add(new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size"));
+
+        assertThrows(AssetUsableSizeNotEnoughException.class, () -> service.update());
+
+        assertEquals(1, target.calls);
+    }
+
+    static class ConflictingService {
+        final Deque<RuntimeException> failures = new ArrayDeque<>();
+        int calls;
+
+        @RetryOnConflict
+        public String update() {
+            calls++;
+            RuntimeException failure = failures.poll();
+            if (failure != null) {
+                throw failure;
+            }
+            return "done";
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetChangedEvent;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomerEventPublisherTest {
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CustomerEventStream eventStream;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void orderChanged_ShouldNotPublish_WhenCustomerIsNotObserved() {
+        CustomerEventPublisher customerEvents = new CustomerEventPublisher(eventPublisher, eventStream, false);
+
+        customerEvents.orderChanged(new Order(1L, "AAPL", OrderSide.BUY, 10000, 1, OrderStatus.PENDING));
+        customerEvents.assetChanged(new Asset(1L, TRY_ASSET_NAME, 100, 100), 0, AssetMutationType.DEPOSIT);
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void orderChanged_ShouldPublishCopyWithNewStatus_WhenCustomerIsSubscribed() {
+        CustomerEventPublisher customerEvents = new CustomerEventPublisher(eventPublisher, eventStream, false);
+        Order order = new Order(1L, "AAPL", OrderSide.BUY, 10000, 1, OrderStatus.PENDING);
+        order.setId(7L);
+        when(eventStream.isSubscribed(1L)).thenReturn(true);
+
+        customerEvents.orderChanged(order, OrderStatus.CANCELLED);
+        order.setSize(0);
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        Order published = ((OrderChangedEvent) event.getValue()).order();
+        assertEquals(7L, published.getId());
+        assertEquals(OrderStatus.CANCELLED, published.getStatus());
+        assertEquals(1, published.getSize());
+    }
+
+    @Test
+    void assetChanged_ShouldPublishCommittedVersion_WhenReadModelIsEnabled() {
+        CustomerEventPublisher customerEvents = new CustomerEventPublisher(eventPublisher, eventStream, true);
+
+        customerEvents.assetChanged(new Asset(5L, 1L, TRY_ASSET_NAME, 100, 100, 2), 3,
+                AssetMutationType.DEPOSIT);
+
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        Asset published = ((AssetChangedEvent) event.getValue()).asset();
+        assertEquals(5L, published.getId());
+        assertEquals(3, published.getVersion());
+        assertTrue(customerEvents.isObserved(2L));
+    }
+}
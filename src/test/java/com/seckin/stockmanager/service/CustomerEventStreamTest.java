@@ -0,0 +1,54 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomerEventStreamTest {
+
+    @Mock
+    private CustomerService customerService;
+
+    private CustomerEventStream eventStream;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        eventStream = new CustomerEventStream(customerService, new AssetScales(),
+                16, Duration.ofMinutes(1), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventStream.shutdown();
+    }
+
+    @Test
+    void subscribe_ShouldMarkOnlyTheCustomerAsSubscribed() {
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+
+        assertNotNull(eventStream.subscribe("testUser"));
+
+        assertTrue(eventStream.isSubscribed(1L));
+        assertFalse(eventStream.isSubscribed(2L));
+    }
+
+    @Test
+    void onOrderChanged_ShouldIgnoreEvent_WhenCustomerHasNoStream() {
+        Order order = new Order(1L, "AAPL", OrderSide.BUY, 10000, 1, OrderStatus.PENDING);
+
+        assertDoesNotThrow(() -> eventStream.onOrderChanged(OrderChangedEvent.of(order, OrderStatus.PENDING)));
+        assertFalse(eventStream.isSubscribed(1L));
+    }
+}
@@ -0,0 +1,181 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetChangedEvent;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderChangedEvent;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class CustomerReadModelTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-05T10:00:00Z");
+
+    @Mock
+    private AssetRepository assetRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private CustomerService customerService;
+
+    private CustomerReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        readModel = new CustomerReadModel(assetRepository, orderRepository, customerService, true, 10, 2);
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+    }
+
+    @Test
+    void findAssets_ShouldReturnNull_WhenReadModelIsDisabled() {
+        CustomerReadModel disabled = new CustomerReadModel(assetRepository, orderRepository,
+                customerService, false, 10, 2);
+
+        assertNull(disabled.findAssets(1L, null, null, 10, null));
+        assertNull(disabled.getConsistencyToken("testUser"));
+        verifyNoInteractions(assetRepository);
+    }
+
+    @Test
+    void findAssets_ShouldLoadOnceAndApplyOnlyNewerVersions() {
+        givenAssets(new Asset(5L, 1L, TRY_ASSET_NAME, 1000, 1000, 2));
+        givenOrders();
+
+        assertEquals(1000, readModel.findAssets(1L, null, null, 10, null).get(0).getSize());
+        readModel.onAssetChanged(assetChanged(new Asset(5L, 1L, TRY_ASSET_NAME, 1500, 1500, 3)));
+        readModel.onAssetChanged(assetChanged(new Asset(5L, 1L, TRY_ASSET_NAME, 900, 900, 2)));
+        readModel.onAssetChanged(assetChanged(new Asset(6L, 1L, "AAPL", 10, 10, 0)));
+
+        List<Asset> assets = readModel.findAssets(1L, null, null, 10, null);
+        assertEquals(2, assets.size());
+        assertEquals(1500, assets.get(0).getSize());
+        assertEquals("AAPL", readModel.findAssets(1L, null, 5L, 10, null).get(0).getName());
+        verify(assetRepository, times(1)).findAssets(1L, null, Pageable.unpaged());
+    }
+
+    @Test
+    void findAssets_ShouldApplyEventsCommittedWhileLoading() {
+        when(assetRepository.findAssets(1L, null, Pageable.unpaged())).thenAnswer(invocation -> {
+            readModel.onAssetChanged(assetChanged(new Asset(5L, 1L, TRY_ASSET_NAME, 1500, 1500, 3)));
+            return List.of(new Asset(5L, 1L, TRY_ASSET_NAME, 1000, 1000, 2));
+        });
+        givenOrders();
+
+        List<Asset> assets = readModel.findAssets(1L, null, null, 10, null);
+
+        assertEquals(1, assets.size());
+        assertEquals(1500, assets.get(0).getSize());
+    }
+
+    @Test
+    void findAssets_ShouldReturnNull_WhenConsistencyTokenIsAhead() {
+        givenAssets();
+        givenOrders();
+
+        readModel.findAssets(1L, null, null, 10, null);
+        long token = readModel.getConsistencyToken("testUser");
+
+        assertNotNull(readModel.findAssets(1L, null, null, 10, token));
+        assertNull(readModel.findAssets(1L, null, null, 10, token + 1));
+        readModel.onAssetChanged(assetChanged(new Asset(5L, 1L, TRY_ASSET_NAME, 10, 10, 0)));
+        assertNotNull(readModel.findAssets(1L, null, null, 10, token + 1));
+    }
+
+    @Test
+    void findOrders_ShouldKeepFinalStatus_WhenLateEventArrives() {
+        Order order = order(1L, NOW, OrderStatus.PENDING, 10);
+        givenAssets();
+        givenOrders(order);
+        readModel.findOrders(1L, null, null, null, null, null, null, null, 10, null);
+
+        Order matched = order(1L, NOW, OrderStatus.MATCHED, 10);
+        readModel.onOrderChanged(OrderChangedEvent.of(matched, OrderStatus.MATCHED));
+        readModel.onOrderChanged(OrderChangedEvent.of(order, OrderStatus.PENDING));
+
+        List<Order> orders = readModel.findOrders(1L, null, null, null, null, null, null, null, 10, null);
+        assertEquals(1, orders.size());
+        assertEquals(OrderStatus.MATCHED, orders.get(0).getStatus());
+    }
+
+    @Test
+    void findOrders_ShouldReturnNull_WhenPageReachesPastKeptOrders() {
+        Order oldest = order(1L, NOW.minusSeconds(20), OrderStatus.PENDING, 10);
+        Order older = order(2L, NOW.minusSeconds(10), OrderStatus.PENDING, 10);
+        givenAssets();
+        givenOrders(older, oldest);
+
+        assertEquals(2, readModel.findOrders(1L, null, null, null, null, null, null, null, 3, null).size());
+        readModel.onOrderChanged(OrderChangedEvent.of(order(3L, NOW, OrderStatus.PENDING, 10),
+                OrderStatus.PENDING));
+
+        List<Order> firstPage = readModel.findOrders(1L, null, null, null, null, null, null, null, 2, null);
+        assertEquals(List.of(3L, 2L), firstPage.stream().map(Order::getId).toList());
+        assertNull(readModel.findOrders(1L, null, null, null, null, null, null, null, 3, null));
+        assertEquals(List.of(2L), readModel.findOrders(1L, null, null, OrderSide.BUY, "AAPL", null,
+                NOW, 3L, 1, null).stream().map(Order::getId).toList());
+    }
+
+    @Test
+    void findOrders_ShouldListCreatedOrder_WhenInsertIsNotFlushed() {
+        givenAssets();
+        givenOrders();
+        readModel.findOrders(1L, null, null, null, null, null, null, null, 10, null);
+
+        // built the way OrderService#createOrder does, the insert has not run yet
+        OrderDTO orderDto = new OrderDTO();
+        orderDto.side = OrderSide.BUY;
+        orderDto.assetName = "AAPL";
+        orderDto.orderSize = new BigDecimal("10");
+        orderDto.prize = new BigDecimal("100.00");
+        Order created = orderDto.toOrder(1L, 2, 0);
+        created.setId(1L);
+        readModel.onOrderChanged(OrderChangedEvent.of(created, OrderStatus.PENDING));
+
+        List<Order> orders = readModel.findOrders(1L, null, null, null, null, null, null, null, 10, null);
+        assertEquals(List.of(1L), orders.stream().map(Order::getId).toList());
+    }
+
+    private void givenAssets(Asset... assets) {
+        when(assetRepository.findAssets(1L, null, Pageable.unpaged())).thenReturn(List.of(assets));
+    }
+
+    private void givenOrders(Order... orders) {
+        when(orderRepository.findOrders(eq(1L), isNull(), isNull(), isNull(), isNull(), isNull(),
+                any(PageRequest.class))).thenReturn(List.of(orders));
+    }
+
+    private static AssetChangedEvent assetChanged(Asset asset) {
+        return AssetChangedEvent.of(asset, asset.getVersion(), AssetMutationType.SETTLE);
+    }
+
+    private static Order order(Long id, Instant createDate, OrderStatus status, long size) {
+        Order order = new Order(1L, "AAPL", OrderSide.BUY, 10000, size, status);
+        order.setId(id);
+        order.setCreateDate(createDate);
+        return order;
+    }
+}
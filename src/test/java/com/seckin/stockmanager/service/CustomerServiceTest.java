@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 
@@ -27,6 +28,9 @@ class CustomerServiceTest {
     @Mock
     private Authentication authentication;
 
+    @Spy
+    private CustomerPrincipalCache principalCache = new CustomerPrincipalCache(100);
+
     @InjectMocks
     private CustomerService customerService;
 
@@ -129,6 +133,38 @@ class CustomerServiceTest {
         verify(customerRepository, times(1)).findByUsername(username);
     }
 
+    @Test
+    void getCustomerId_ShouldUseCachedPrincipal_WhenCalledAgain() {
+        String username = "testUser";
+        Customer customer = new Customer(username, "password");
+        customer.setId(1L);
+
+        when(customerRepository.findByUsername(username)).thenReturn(Optional.of(customer));
+
+        customerService.getCustomerId(username);
+        Long result = customerService.getCustomerId(username);
+
+        assertEquals(1L, result);
+        verify(customerRepository, times(1)).findByUsername(username);
+    }
+
+    @Test
+    void save_ShouldEvictCachedPrincipal() {
+        String username = "testUser";
+        Customer customer = new Customer(username, "password");
+        customer.setId(1L);
+
+        when(customerRepository.findByUsername(username)).thenReturn(Optional.of(customer));
+        when(customerRepository.save(customer)).thenReturn(customer);
+
+        customerService.getCustomerId(username);
+        customer.setRole(CustomerRole.ADMIN);
+        customerService.save(customer);
+
+        assertEquals(CustomerRole.ADMIN, customerService.getPrincipal(username).role());
+        verify(customerRepository, times(2)).findByUsername(username);
+    }
+
     @Test
     void getCustomerId_ShouldThrowException_WhenCustomerDoesNotExist() {
         String username = "nonexistentUser";
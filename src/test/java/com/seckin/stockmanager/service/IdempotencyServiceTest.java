@@ -0,0 +1,209 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.seckin.stockmanager.dto.DepositRequestDTO;
+import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.IdempotencyKeyReusedException;
+import com.seckin.stockmanager.exception.InvalidIdempotencyKeyException;
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.model.IdempotentRequest;
+import com.seckin.stockmanager.repository.IdempotentRequestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotentRequestRepository repository;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private IdempotencyService idempotencyService;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        idempotencyService = new IdempotencyService(repository, objectMapper, Duration.ofHours(1),
+                Duration.ofMinutes(1), 100);
+        when(repository.findByCustomerUserNameAndIdempotencyKey(any(), any())).thenReturn(Optional.empty());
+        when(repository.saveAndFlush(any(IdempotentRequest.class))).thenAnswer(it -> it.getArgument(0));
+    }
+
+    @Test
+    void execute_ShouldReplayResponse_WhenKeyIsSentAgain() {
+        DepositRequestDTO request = deposit("100.00");
+
+        String first = idempotencyService.execute("key-1", "testUser", "POST /assets/deposit", request,
+                String.class, () -> "result-" + executions.incrementAndGet());
+        String second = idempotencyService.execute("key-1", "testUser", "POST /assets/deposit", request,
+                String.class, () -> "result-" + executions.incrementAndGet());
+
+        assertEquals("result-1", first);
+        assertEquals("result-1", second);
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).save(argThat(IdempotentRequest::isCompleted));
+    }
+
+    @Test
+    void execute_ShouldRunAction_WhenNoKeyIsSent() {
+        idempotencyService.execute(null, "testUser", "POST /assets/deposit", deposit("1"), Void.class,
+                () -> { executions.incrementAndGet(); return null; });
+        idempotencyService.execute(null, "testUser", "POST /assets/deposit", deposit("1"), Void.class,
+                () -> { executions.incrementAndGet(); return null; });
+
+        assertEquals(2, executions.get());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void execute_ShouldCoalesceDuplicate_WhileFirstRequestIsInFlight() throws Exception {
+        DepositRequestDTO request = deposit("100.00");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", "testUser", "POST /assets/deposit", request, String.class, () -> {
+                    started.countDown();
+                    await(release);
+                    return "result-" + executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", "testUser", "POST /assets/deposit", request, String.class,
+                        () -> "result-" + executions.incrementAndGet()));
+        release.countDown();
+
+        assertEquals("result-1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("result-1", duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldRejectKey_WhenRequestIsDifferent() {
+        idempotencyService.execute("key-1", "testUser", "POST /assets/deposit", deposit("100.00"),
+                Void.class, () -> null);
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyService.execute("key-1",
+                "testUser", "POST /assets/deposit", deposit("200.00"), Void.class, () -> null));
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyService.execute("key-1",
+                "testUser", "POST /assets/withdraw", deposit("100.00"), Void.class, () -> null));
+    }
+
+    @Test
+    void execute_ShouldReleaseKey_WhenActionFails() {
+        DepositRequestDTO request = deposit("100.00");
+
+        assertThrows(AssetUsableSizeNotEnoughException.class, () -> idempotencyService.execute("key-1",
+                "testUser", "POST /assets/withdraw", request, Void.class, () -> {
+                    throw new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size");
+                }));
+        idempotencyService.execute("key-1", "testUser", "POST /assets/withdraw", request, Void.class,
+                () -> { executions.incrementAndGet(); return null; });
+
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).delete(any(IdempotentRequest.class));
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResponse_WhenKeyIsNotCached() {
+        DepositRequestDTO request = deposit("100.00");
+        // the row is written by the first execution on another instance
+        IdempotencyService otherInstance = new IdempotencyService(repository, objectMapper,
+                Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        otherInstance.execute("key-1", "testUser", "POST /orders", request, String.class, () -> "stored");
+        IdempotentRequest stored = captureStored();
+        when(repository.findByCustomerUserNameAndIdempotencyKey("testUser", "key-1"))
+                .thenReturn(Optional.of(stored));
+
+        String result = idempotencyService.execute("key-1", "testUser", "POST /orders", request,
+                String.class, () -> "result-" + executions.incrementAndGet());
+
+        assertEquals("stored", result);
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldRejectDuplicate_WhenStoredRequestIsIncomplete() {
+        DepositRequestDTO request = deposit("100.00");
+        // the row is written by the first execution on another instance
+        IdempotencyService otherInstance = new IdempotencyService(repository, objectMapper,
+                Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        otherInstance.execute("key-1", "testUser", "POST /orders", request, String.class, () -> "stored");
+        IdempotentRequest stored = captureStored();
+        IdempotentRequest incomplete = new IdempotentRequest("testUser", "key-1", stored.getRequestHash());
+        incomplete.setCreateDate(Instant.now());
+        when(repository.findByCustomerUserNameAndIdempotencyKey("testUser", "key-1"))
+                .thenReturn(Optional.of(incomplete));
+
+        assertThrows(LockConflictException.class, () -> idempotencyService.execute("key-1", "testUser",
+                "POST /orders", request, String.class, () -> "result-" + executions.incrementAndGet()));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldTakeOverClaim_WhenStoredRequestIsIncompleteLongerThanLease() {
+        DepositRequestDTO request = deposit("100.00");
+        // the row is written by the first execution on another instance
+        IdempotencyService otherInstance = new IdempotencyService(repository, objectMapper,
+                Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        otherInstance.execute("key-1", "testUser", "POST /orders", request, String.class, () -> "stored");
+        IdempotentRequest stored = captureStored();
+        // that instance crashed before it stored the response
+        IdempotentRequest abandoned = new IdempotentRequest("testUser", "key-1", stored.getRequestHash());
+        abandoned.setCreateDate(Instant.now().minus(Duration.ofMinutes(2)));
+        when(repository.findByCustomerUserNameAndIdempotencyKey("testUser", "key-1"))
+                .thenReturn(Optional.of(abandoned));
+        when(repository.deleteStaleClaim(any(), any(Instant.class))).thenReturn(1);
+
+        String result = idempotencyService.execute("key-1", "testUser", "POST /orders", request,
+                String.class, () -> "result-" + executions.incrementAndGet());
+
+        assertEquals("result-1", result);
+        verify(repository, times(2)).saveAndFlush(any(IdempotentRequest.class));
+    }
+
+    @Test
+    void execute_ShouldThrowException_WhenKeyIsTooLong() {
+        assertThrows(InvalidIdempotencyKeyException.class, () -> idempotencyService.execute("k".repeat(256),
+                "testUser", "POST /orders", deposit("1"), Void.class, () -> null));
+    }
+
+    private IdempotentRequest captureStored() {
+        ArgumentCaptor<IdempotentRequest> captor = ArgumentCaptor.forClass(IdempotentRequest.class);
+        verify(repository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static DepositRequestDTO deposit(String amount) {
+        DepositRequestDTO request = new DepositRequestDTO();
+        request.customerUserName = "testUser";
+        request.amount = new BigDecimal(amount);
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Candle;
+import com.seckin.stockmanager.model.CandleInterval;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.CandleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LastPriceCacheTest {
+
+    @Mock
+    private CandleRepository candleRepository;
+
+    private LastPriceCache lastPriceCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        lastPriceCache = new LastPriceCache(candleRepository);
+    }
+
+    @Test
+    void onTradeExecuted_ShouldKeepNewestPrize_WhenTradesCommitOutOfOrder() {
+        Instant now = Instant.now();
+
+        lastPriceCache.onTradeExecuted(new TradeExecutedEvent("AAPL", 10000, 1, now));
+        lastPriceCache.onTradeExecuted(new TradeExecutedEvent("AAPL", 9000, 1, now.minusMillis(5)));
+
+        assertEquals(10000, lastPriceCache.getPrize("AAPL"));
+        assertNull(lastPriceCache.getPrize("MSFT"));
+    }
+
+    @Test
+    void load_ShouldStartFromCloseOfLastCandles() {
+        Instant openTime = Instant.parse("2026-01-01T10:00:00Z");
+        when(candleRepository.findLatest(CandleInterval.SECOND)).thenReturn(List.of(
+                new Candle("AAPL", CandleInterval.SECOND, openTime, 10000, 12000, 9000, 11000, 5, 3)));
+
+        lastPriceCache.load();
+        lastPriceCache.onTradeExecuted(new TradeExecutedEvent("AAPL", 9500, 1, openTime.plusMillis(500)));
+
+        assertEquals(11000, lastPriceCache.getPrize("AAPL"));
+    }
+}
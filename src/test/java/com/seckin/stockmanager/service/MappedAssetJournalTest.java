@@ -0,0 +1,132 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MappedAssetJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+
+    private MappedAssetJournal openJournal(int segmentSize) throws IOException {
+        MappedAssetJournal journal = new MappedAssetJournal(entityManager, directory.toString(), segmentSize, 16);
+        journal.recover();
+        journal.start();
+        return journal;
+    }
+
+    private Map<AssetKey, MappedAssetJournal.Entry> recover() throws IOException {
+        return new MappedAssetJournal(entityManager, directory.toString(), 4096, 16).recover();
+    }
+
+    @Test
+    void recover_ShouldKeepHighestVersionPerAsset_WhenRecordsAreOutOfOrder() throws IOException {
+        MappedAssetJournal journal = openJournal(4096);
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 2, 300, 300), AssetMutationType.DEPOSIT).join();
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 1, 200, 200), AssetMutationType.DEPOSIT).join();
+        journal.append(new MappedAssetJournal.Entry(2L, "AAPL", 0, 5, 5), AssetMutationType.SETTLE).join();
+        journal.close();
+
+        Map<AssetKey, MappedAssetJournal.Entry> balances = recover();
+
+        assertEquals(2, balances.size());
+        assertEquals(300, balances.get(new AssetKey(1L, TRY_ASSET_NAME)).size());
+        assertEquals(5, balances.get(new AssetKey(2L, "AAPL")).usableSize());
+    }
+
+    @Test
+    void recover_ShouldLoadSnapshotAndReplayJournalTail() throws IOException {
+        MappedAssetJournal journal = openJournal(4096);
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 0, 100, 100), AssetMutationType.DEPOSIT).join();
+        long snapshotSequence = journal.snapshot().join();
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 1, 100, 40), AssetMutationType.RESERVE).join();
+        journal.close();
+
+        Map<AssetKey, MappedAssetJournal.Entry> balances = recover();
+
+        assertEquals(1L, snapshotSequence);
+        assertEquals(40, balances.get(new AssetKey(1L, TRY_ASSET_NAME)).usableSize());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(path -> path.getFileName().toString().startsWith("snapshot-")).count());
+        }
+    }
+
+    @Test
+    void recover_ShouldStopAtCorruptRecord() throws IOException {
+        MappedAssetJournal journal = openJournal(4096);
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 0, 100, 100), AssetMutationType.DEPOSIT).join();
+        journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, 1, 50, 50), AssetMutationType.WITHDRAW).join();
+        journal.close();
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> path.getFileName().toString().startsWith("journal-")).toList();
+        }
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            // flips a byte in the payload of the second record
+            long secondRecordPayload = 8 + 39 + TRY_ASSET_NAME.length() + 8 + 10;
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), secondRecordPayload);
+        }
+
+        Map<AssetKey, MappedAssetJournal.Entry> balances = recover();
+
+        assertEquals(100, balances.get(new AssetKey(1L, TRY_ASSET_NAME)).size());
+    }
+
+    @Test
+    void record_ShouldAppendLastStateOfEachAssetBeforeCommit_WhenTransactionIsActive() throws IOException {
+        MappedAssetJournal journal = openJournal(4096);
+        Asset asset = new Asset(1L, TRY_ASSET_NAME, 100, 100);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            journal.record(asset, AssetMutationType.DEPOSIT);
+            asset.setUsableSize(60);
+            journal.record(asset, AssetMutationType.RESERVE);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+            assertEquals(1, synchronizations.size());
+            synchronizations.get(0).beforeCommit(false);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        journal.close();
+
+        verify(entityManager).flush();
+        assertEquals(60, recover().get(new AssetKey(1L, TRY_ASSET_NAME)).usableSize());
+    }
+
+    @Test
+    void append_ShouldContinueInNewSegment_WhenSegmentIsFull() throws IOException {
+        MappedAssetJournal journal = openJournal(128);
+        for (int version = 0; version < 10; version++) {
+            journal.append(new MappedAssetJournal.Entry(1L, TRY_ASSET_NAME, version, version, version),
+                    AssetMutationType.DEPOSIT).join();
+        }
+        journal.close();
+
+        Map<AssetKey, MappedAssetJournal.Entry> balances = recover();
+
+        assertEquals(9, balances.get(new AssetKey(1L, TRY_ASSET_NAME)).size());
+    }
+}
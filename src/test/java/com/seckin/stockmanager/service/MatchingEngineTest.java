@@ -0,0 +1,283 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.LockConflictException;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetKey;
+import com.seckin.stockmanager.model.AssetMutationType;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MatchingEngineTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private AssetService assetService;
+
+    @Spy
+    private AssetScales assetScales = new AssetScales();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private StockManagerMetrics metrics = new StockManagerMetrics(meterRegistry);
+
+    @Mock
+    private CustomerEventPublisher customerEvents;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MatchingEngine matchingEngine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        matchingEngine = new MatchingEngine(orderRepository, assetService, assetScales, metrics,
+                customerEvents, eventPublisher, 2);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(it -> it.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static Order order(long id, long customerId, OrderSide side, long prize, long size) {
+        Order order = new Order(customerId, "AAPL", side, prize, size, OrderStatus.PENDING);
+        order.setId(id);
+        order.setCreateDate(Instant.now().plusMillis(id));
+        return order;
+    }
+
+    @Test
+    void submit_ShouldSettleBothCustomers_WhenOrdersCross() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10500, 10);
+        Asset buyerTry = new Asset(1L, TRY_ASSET_NAME, 200000, 95000);
+        Asset sellerStock = new Asset(2L, "AAPL", 10, 0);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+        when(orderRepository.findByIdAndStatus(1L, OrderStatus.PENDING)).thenReturn(Optional.of(restingSell));
+        when(orderRepository.findByIdAndStatus(2L, OrderStatus.PENDING)).thenReturn(Optional.of(incomingBuy));
+        when(assetService.getAssetsWithLock(anyCollection())).thenReturn(new HashMap<>(Map.of(
+                new AssetKey(1L, TRY_ASSET_NAME), buyerTry,
+                new AssetKey(1L, "AAPL"), new Asset(1L, "AAPL", 0, 0),
+                new AssetKey(2L, TRY_ASSET_NAME), new Asset(2L, TRY_ASSET_NAME, 0, 0),
+                new AssetKey(2L, "AAPL"), sellerStock)));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(OrderStatus.MATCHED, restingSell.getStatus());
+        assertEquals(OrderStatus.MATCHED, incomingBuy.getStatus());
+        assertEquals(10000, incomingBuy.getPrize());
+        assertEquals(100000, buyerTry.getSize());
+        assertEquals(100000, buyerTry.getUsableSize());
+        assertEquals(0, sellerStock.getSize());
+        verify(assetService, times(1)).getAssetsWithLock(Set.of(new AssetKey(1L, TRY_ASSET_NAME),
+                new AssetKey(1L, "AAPL"), new AssetKey(2L, TRY_ASSET_NAME), new AssetKey(2L, "AAPL")));
+        verify(assetService, times(1)).saveAsset(argThat(asset ->
+                asset.getCustomerId() == 1L && asset.getName().equals("AAPL")
+                        && asset.getSize() == 10 && asset.getUsableSize() == 10), eq(AssetMutationType.SETTLE));
+        verify(assetService, times(1)).saveAsset(argThat(asset ->
+                asset.getCustomerId() == 2L && asset.getName().equals(TRY_ASSET_NAME)
+                        && asset.getSize() == 100000 && asset.getUsableSize() == 100000), eq(AssetMutationType.SETTLE));
+        verify(eventPublisher, times(1)).publishEvent(argThat((Object event) ->
+                event instanceof TradeExecutedEvent trade && trade.assetName().equals("AAPL")
+                        && trade.prize() == 10000 && trade.quantity() == 10));
+    }
+
+    @Test
+    void submit_ShouldSplitRestingOrder_WhenPartiallyFilled() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10000, 4);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+        when(orderRepository.findByIdAndStatus(1L, OrderStatus.PENDING)).thenReturn(Optional.of(restingSell));
+        when(orderRepository.findByIdAndStatus(2L, OrderStatus.PENDING)).thenReturn(Optional.of(incomingBuy));
+        when(assetService.getAssetsWithLock(anyCollection())).thenReturn(new HashMap<>(Map.of(
+                new AssetKey(1L, TRY_ASSET_NAME), new Asset(1L, TRY_ASSET_NAME, 40000, 0),
+                new AssetKey(1L, "AAPL"), new Asset(1L, "AAPL", 0, 0),
+                new AssetKey(2L, TRY_ASSET_NAME), new Asset(2L, TRY_ASSET_NAME, 0, 0),
+                new AssetKey(2L, "AAPL"), new Asset(2L, "AAPL", 10, 0))));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(OrderStatus.MATCHED, incomingBuy.getStatus());
+        assertEquals(OrderStatus.PENDING, restingSell.getStatus());
+        assertEquals(6, restingSell.getSize());
+        verify(orderRepository, times(1)).save(argThat(order ->
+                order.getCustomerId() == 2L && order.getStatus() == OrderStatus.MATCHED
+                        && order.getSize() == 4));
+        verify(customerEvents, times(1)).orderChanged(restingSell);
+        verify(customerEvents, times(1)).orderChanged(incomingBuy);
+        verify(customerEvents, times(1)).orderChanged(argThat((Order order) ->
+                order.getCustomerId() == 2L && order.getStatus() == OrderStatus.MATCHED));
+    }
+
+    @Test
+    void submit_ShouldFailFill_WhenRestingOrderIsNoLongerPending() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+        // cancelled or expired after the book was loaded
+        when(orderRepository.findByIdAndStatus(1L, OrderStatus.PENDING)).thenReturn(Optional.empty());
+        when(orderRepository.findByIdAndStatus(2L, OrderStatus.PENDING)).thenReturn(Optional.of(incomingBuy));
+        when(assetService.getAssetsWithLock(anyCollection())).thenReturn(new HashMap<>());
+
+        assertThrows(LockConflictException.class, () -> matchingEngine.submit(incomingBuy));
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+    }
+
+    @Test
+    void submit_ShouldRestOrder_WhenPrizesDoNotCross() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 9000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(OrderStatus.PENDING, incomingBuy.getStatus());
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void submit_ShouldDropExpiredRestingOrderWithoutFill() {
+        Order expiredSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        // still PENDING until the next expiry run
+        expiredSell.setExpiresAt(Instant.now().minusSeconds(1));
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(expiredSell));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(OrderStatus.PENDING, incomingBuy.getStatus());
+        verify(orderRepository, never()).findByIdAndStatus(anyLong(), any(OrderStatus.class));
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(it -> it.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals(List.of(), matchingEngine.getDepth("AAPL").asks());
+        assertEquals(List.of(new OrderBook.PriceLevel(10000, 10, 1)), matchingEngine.getDepth("AAPL").bids());
+    }
+
+    @Test
+    void submit_ShouldNotMatchOrdersOfSameCustomer() {
+        Order restingSell = order(1L, 1L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+
+        matchingEngine.submit(incomingBuy);
+
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+    }
+
+    @Test
+    void submit_ShouldReloadBook_WhenPreviousTransactionRolledBack() {
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 9000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of());
+
+        matchingEngine.submit(incomingBuy);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(it -> it.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+
+        matchingEngine.submit(incomingBuy);
+
+        verify(orderRepository, times(2)).findByAssetNameAndStatus("AAPL", OrderStatus.PENDING);
+    }
+
+    @Test
+    void submit_ShouldPublishPendingOrderCountOfBook() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 9000, 10);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(2, meterRegistry.get("stockmanager.orders.pending").tag("asset", "AAPL").gauge().value());
+    }
+
+    @Test
+    void getDepth_ShouldPublishLevels_WhenTransactionCommits() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order secondSell = order(2L, 3L, OrderSide.SELL, 10000, 5);
+        Order farSell = order(3L, 3L, OrderSide.SELL, 12000, 1);
+        Order incomingBuy = order(4L, 1L, OrderSide.BUY, 9000, 7);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING))
+                .thenReturn(List.of(restingSell, secondSell, farSell));
+
+        matchingEngine.submit(incomingBuy);
+
+        assertEquals(List.of(new OrderBook.PriceLevel(10000, 15, 2), new OrderBook.PriceLevel(12000, 1, 1)),
+                matchingEngine.getDepth("AAPL").asks());
+        assertEquals(List.of(), matchingEngine.getDepth("AAPL").bids());
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(it -> it.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertEquals(List.of(new OrderBook.PriceLevel(9000, 7, 1)), matchingEngine.getDepth("AAPL").bids());
+    }
+
+    @Test
+    void getDepth_ShouldKeepCommittedLevels_WhenTransactionRollsBack() {
+        Order restingSell = order(1L, 2L, OrderSide.SELL, 10000, 10);
+        Order incomingBuy = order(2L, 1L, OrderSide.BUY, 10000, 4);
+
+        when(orderRepository.findByAssetNameAndStatus("AAPL", OrderStatus.PENDING)).thenReturn(List.of(restingSell));
+        when(orderRepository.findByIdAndStatus(1L, OrderStatus.PENDING)).thenReturn(Optional.of(restingSell));
+        when(orderRepository.findByIdAndStatus(2L, OrderStatus.PENDING)).thenReturn(Optional.of(incomingBuy));
+        when(assetService.getAssetsWithLock(anyCollection())).thenReturn(new HashMap<>(Map.of(
+                new AssetKey(1L, TRY_ASSET_NAME), new Asset(1L, TRY_ASSET_NAME, 40000, 0),
+                new AssetKey(1L, "AAPL"), new Asset(1L, "AAPL", 0, 0),
+                new AssetKey(2L, TRY_ASSET_NAME), new Asset(2L, TRY_ASSET_NAME, 0, 0),
+                new AssetKey(2L, "AAPL"), new Asset(2L, "AAPL", 10, 0))));
+
+        matchingEngine.submit(incomingBuy);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(it -> it.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertEquals(List.of(new OrderBook.PriceLevel(10000, 10, 1)), matchingEngine.getDepth("AAPL").asks());
+    }
+}
@@ -0,0 +1,96 @@
+package com.seckin.stockmanager.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.seckin.stockmanager.dto.OrderExportFormat;
+import com.seckin.stockmanager.model.Order;
+import com.seckin.stockmanager.model.OrderSide;
+import com.seckin.stockmanager.model.OrderStatus;
+import com.seckin.stockmanager.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OrderExportServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Spy
+    private AssetScales assetScales = new AssetScales();
+
+    @Spy
+    private ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @InjectMocks
+    private OrderExportService orderExportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static Order order(long id, String assetName, long prize) {
+        Order order = new Order(1L, assetName, OrderSide.BUY, prize, 10, OrderStatus.PENDING);
+        order.setId(id);
+        order.setCreateDate(Instant.parse("2024-01-01T10:00:00Z"));
+        return order;
+    }
+
+    @Test
+    void exportOrders_ShouldWriteCsvLinePerOrder_AndDetachEachOrder() throws IOException {
+        Order first = order(1L, "AAPL", 15050);
+        Order second = order(2L, "A,B", 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(orderRepository.streamByCustomerId(1L)).thenReturn(Stream.of(first, second));
+
+        orderExportService.exportOrders("testUser", OrderExportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,assetName,side,orderSize,prize,status,createdDate", lines[0]);
+        assertEquals("1,AAPL,BUY,10,150.50,PENDING,2024-01-01T10:00:00Z", lines[1]);
+        assertEquals("2,\"A,B\",BUY,10,1.00,PENDING,2024-01-01T10:00:00Z", lines[2]);
+        verify(entityManager, times(1)).detach(first);
+        verify(entityManager, times(1)).detach(second);
+    }
+
+    @Test
+    void exportOrders_ShouldWriteJsonObjectPerLine_WhenFormatIsNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(orderRepository.streamByCustomerId(1L)).thenReturn(Stream.of(order(1L, "AAPL", 15050)));
+
+        orderExportService.exportOrders("testUser", OrderExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        JsonNode json = new ObjectMapper().readTree(lines[0]);
+        assertEquals(1L, json.get("id").asLong());
+        assertEquals("testUser", json.get("customerUserName").asText());
+        assertEquals(150.5, json.get("prize").asDouble());
+    }
+}
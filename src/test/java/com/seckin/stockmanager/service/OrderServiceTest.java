@@ -1,20 +1,33 @@
 package com.seckin.stockmanager.service;
 
+import com.seckin.stockmanager.dto.BatchOrderResultDTO;
+import com.seckin.stockmanager.dto.BulkOrderResultDTO;
 import com.seckin.stockmanager.dto.ListOrderRequestDTO;
 import com.seckin.stockmanager.dto.OrderDTO;
+import com.seckin.stockmanager.dto.PageDTO;
 import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.exception.InvalidCursorException;
 import com.seckin.stockmanager.exception.ResourceNotFoundException;
 import com.seckin.stockmanager.model.*;
 import com.seckin.stockmanager.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +44,18 @@ class OrderServiceTest {
     @Mock
     private CustomerService customerService;
 
+    @Mock
+    private MatchingEngine matchingEngine;
+
+    @Spy
+    private AssetScales assetScales = new AssetScales();
+
+    @Mock
+    private CustomerEventPublisher customerEvents;
+
+    @Mock
+    private CustomerReadModel readModel;
+
     @Mock
     private Authentication authentication;
 
@@ -48,22 +73,38 @@ class OrderServiceTest {
         orderDto.customerUserName = "testUser";
         orderDto.side = OrderSide.BUY;
         orderDto.assetName = "Asset";
-        orderDto.orderSize = 10.0;
-        orderDto.prize = 100.0;
+        orderDto.orderSize = new BigDecimal("10");
+        orderDto.prize = new BigDecimal("100.00");
 
-        Asset sellingAsset = new Asset(1L, TRY_ASSET_NAME, 1000.0, 1000.0);
-        Order order = orderDto.toOrder(1L);
+        Order order = orderDto.toOrder(1L, 2, 0);
         order.setId(1L);
 
         when(customerService.getCustomerId(orderDto.customerUserName)).thenReturn(1L);
-        when(assetService.getAssetWithLock(1L, TRY_ASSET_NAME)).thenReturn(sellingAsset);
         when(orderRepository.save(any(Order.class))).thenReturn(order);
 
         OrderDTO result = orderService.createOrder(orderDto);
 
         assertNotNull(result);
         assertEquals(1L, result.id);
-        verify(orderRepository, times(1)).save(any(Order.class));
+        verify(assetService, times(1)).reserveAsset(1L, TRY_ASSET_NAME, 100000);
+        verify(orderRepository, times(1)).save(argThat(it -> it.getPrize() == 10000 && it.getSize() == 10));
+        verify(matchingEngine, times(1)).submit(order);
+    }
+
+    @Test
+    void createOrder_ShouldReturnAndPublishCreateDate_WhenInsertIsNotFlushed() {
+        OrderDTO orderDto = buyOrder("Asset", "10", "100.00");
+
+        when(customerService.getCustomerId(orderDto.customerUserName)).thenReturn(1L);
+        // the pooled sequence id defers the insert, save hands back the unflushed order
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OrderDTO result = orderService.createOrder(orderDto);
+
+        assertNotNull(result.createdDate);
+        ArgumentCaptor<Order> published = ArgumentCaptor.forClass(Order.class);
+        verify(customerEvents).orderChanged(published.capture());
+        assertEquals(result.createdDate, published.getValue().getCreateDate());
     }
 
     @Test
@@ -72,13 +113,15 @@ class OrderServiceTest {
         orderDto.customerUserName = "testUser";
         orderDto.side = OrderSide.BUY;
         orderDto.assetName = "Asset";
-        orderDto.orderSize=10.0;
-        orderDto.prize=1.0;
+        orderDto.orderSize=new BigDecimal("10");
+        orderDto.prize=new BigDecimal("1.00");
 
         when(customerService.getCustomerId(orderDto.customerUserName)).thenReturn(1L);
-        when(assetService.getAssetWithLock(1L, TRY_ASSET_NAME)).thenReturn(null);
+        doThrow(new ResourceNotFoundException("Selling Asset Not Found"))
+                .when(assetService).reserveAsset(1L, TRY_ASSET_NAME, 1000);
 
         assertThrows(ResourceNotFoundException.class, () -> orderService.createOrder(orderDto));
+        verify(orderRepository, never()).save(any(Order.class));
     }
 
     @Test
@@ -87,14 +130,60 @@ class OrderServiceTest {
         orderDto.customerUserName = "testUser";
         orderDto.side = OrderSide.BUY;
         orderDto.assetName = "Asset";
-        orderDto.orderSize = 10000.0;
-        orderDto.prize = 1.0;
-        Asset sellingAsset = new Asset(1L, TRY_ASSET_NAME, 1000.0, 1000.0);
+        orderDto.orderSize = new BigDecimal("10000");
+        orderDto.prize = new BigDecimal("1.00");
 
         when(customerService.getCustomerId(orderDto.customerUserName)).thenReturn(1L);
-        when(assetService.getAssetWithLock(1L, TRY_ASSET_NAME)).thenReturn(sellingAsset);
+        doThrow(new AssetUsableSizeNotEnoughException("Insufficient Asset Usable Size"))
+                .when(assetService).reserveAsset(1L, TRY_ASSET_NAME, 1000000);
 
         assertThrows(AssetUsableSizeNotEnoughException.class, () -> orderService.createOrder(orderDto));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    private static OrderDTO buyOrder(String assetName, String orderSize, String prize) {
+        OrderDTO orderDto = new OrderDTO();
+        orderDto.customerUserName = "testUser";
+        orderDto.side = OrderSide.BUY;
+        orderDto.assetName = assetName;
+        orderDto.orderSize = new BigDecimal(orderSize);
+        orderDto.prize = new BigDecimal(prize);
+        return orderDto;
+    }
+
+    @Test
+    void createOrders_ShouldLockSellingAssetOnce_AndRejectOrdersExceedingUsableSize() {
+        List<OrderDTO> basket = List.of(
+                buyOrder("AAPL", "5", "100.00"),
+                buyOrder("MSFT", "6", "100.00"),
+                buyOrder("GOOG", "1", "0.001"));
+        Asset sellingAsset = new Asset(1L, TRY_ASSET_NAME, 100000, 100000);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetService.getAssetWithLock(1L, TRY_ASSET_NAME)).thenReturn(sellingAsset);
+        when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            long id = 1;
+            for (Order order : orders) {
+                order.setId(id++);
+            }
+            return orders;
+        });
+
+        List<BatchOrderResultDTO> results = orderService.createOrders(basket);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).accepted);
+        assertEquals(1L, results.get(0).order.id);
+        assertFalse(results.get(1).accepted);
+        assertEquals("Insufficient Asset Usable Size", results.get(1).error);
+        assertFalse(results.get(2).accepted);
+        assertEquals(50000, sellingAsset.getUsableSize());
+        verify(customerService, times(1)).getCustomerId("testUser");
+        verify(assetService, times(1)).getAssetWithLock(1L, TRY_ASSET_NAME);
+        verify(assetService, times(1)).saveAsset(sellingAsset, AssetMutationType.RESERVE);
+        verify(orderRepository, times(1)).saveAll(anyList());
+        verify(matchingEngine, times(1)).submitAll(anyList());
     }
 
     @Test
@@ -105,14 +194,89 @@ class OrderServiceTest {
         order.setId(1L);
 
         when(customerService.getCustomerId(request.customerUserName)).thenReturn(1L);
-        when(orderRepository.findOrders(1L, request.minDate, request.maxDate, request.orderSide, request.assetName))
+        when(orderRepository.findOrders(1L, request.minDate, request.maxDate, request.orderSide, request.assetName,
+                request.status, PageRequest.of(0, PageCursor.DEFAULT_PAGE_SIZE + 1)))
                 .thenReturn(List.of(order));
 
-        List<OrderDTO> result = orderService.listOrders(request);
+        PageDTO<OrderDTO> result = orderService.listOrders(request);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(1L, result.get(0).id);
+        assertEquals(1, result.items.size());
+        assertEquals(1L, result.items.get(0).id);
+        assertNull(result.nextCursor);
+    }
+
+    @Test
+    void listOrders_ShouldReturnNextCursor_WhenMoreOrdersThanPageSize() {
+        ListOrderRequestDTO request = new ListOrderRequestDTO();
+        request.customerUserName = "testUser";
+        request.pageSize = 2;
+        Instant now = Instant.now();
+        List<Order> orders = new ArrayList<>();
+        for (long id = 3; id > 0; id--) {
+            Order order = new Order(1L, "AAPL", OrderSide.BUY, 1000, 1, OrderStatus.PENDING);
+            order.setId(id);
+            order.setCreateDate(now.minusSeconds(3 - id));
+            orders.add(order);
+        }
+
+        when(customerService.getCustomerId(request.customerUserName)).thenReturn(1L);
+        when(orderRepository.findOrders(eq(1L), any(), any(), any(), any(), any(),
+                eq(PageRequest.of(0, 3)))).thenReturn(orders);
+
+        PageDTO<OrderDTO> result = orderService.listOrders(request);
+
+        assertEquals(2, result.items.size());
+        PageCursor nextCursor = PageCursor.decode(result.nextCursor);
+        assertEquals(2L, nextCursor.id());
+        assertEquals(orders.get(1).getCreateDate(), nextCursor.createDate());
+    }
+
+    @Test
+    void listOrders_ShouldReadAfterCursor_WhenCursorIsGiven() {
+        Instant cursorDate = Instant.now();
+        ListOrderRequestDTO request = new ListOrderRequestDTO();
+        request.customerUserName = "testUser";
+        request.cursor = new PageCursor(cursorDate, 5L).encode();
+
+        when(customerService.getCustomerId(request.customerUserName)).thenReturn(1L);
+        when(orderRepository.findOrdersAfter(1L, null, null, null, null, null, cursorDate, 5L,
+                PageRequest.of(0, PageCursor.DEFAULT_PAGE_SIZE + 1))).thenReturn(List.of());
+
+        PageDTO<OrderDTO> result = orderService.listOrders(request);
+
+        assertTrue(result.items.isEmpty());
+        verify(orderRepository, never()).findOrders(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void listOrders_ShouldNotQueryDatabase_WhenReadModelServesThePage() {
+        ListOrderRequestDTO request = new ListOrderRequestDTO();
+        request.customerUserName = "testUser";
+        request.status = OrderStatus.PENDING;
+        Order order = new Order(1L, "AAPL", OrderSide.BUY, 1000, 1, OrderStatus.PENDING);
+        order.setId(1L);
+
+        when(customerService.getCustomerId(request.customerUserName)).thenReturn(1L);
+        when(readModel.findOrders(1L, null, null, null, null, OrderStatus.PENDING, null, null,
+                PageCursor.DEFAULT_PAGE_SIZE + 1, 7L)).thenReturn(List.of(order));
+
+        PageDTO<OrderDTO> result = orderService.listOrders(request, 7L);
+
+        assertEquals(1, result.items.size());
+        verify(orderRepository, never()).findOrders(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void listOrders_ShouldThrowException_WhenCursorIsInvalid() {
+        ListOrderRequestDTO request = new ListOrderRequestDTO();
+        request.customerUserName = "testUser";
+        request.cursor = "not a cursor";
+
+        when(customerService.getCustomerId(request.customerUserName)).thenReturn(1L);
+
+        assertThrows(InvalidCursorException.class, () -> orderService.listOrders(request));
+        verify(orderRepository, never()).findOrders(any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -123,21 +287,45 @@ class OrderServiceTest {
         order.setCustomerId(1L);
         order.setStatus(OrderStatus.PENDING);
         order.setOrderSide(OrderSide.BUY);
-        order.setSize(10.0);
-        order.setPrize(10.0);
+        order.setSize(10);
+        order.setPrize(1000);
         order.setAssetName("test");
-        Asset sellingAsset = new Asset(1L, "test", 1000.0, 1000.0);
+        Asset sellingAsset = new Asset(1L, TRY_ASSET_NAME, 100000, 0);
 
         when(orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING)).thenReturn(Optional.of(order));
         when(customerService.getCustomer(order.getCustomerId())).thenReturn(new Customer("testUser", "password"));
-        when(assetService.getAssetWithLock(1L, TRY_ASSET_NAME)).thenReturn(sellingAsset);
+        when(assetService.getAssetsWithLock(List.of(new AssetKey(1L, TRY_ASSET_NAME))))
+                .thenReturn(Map.of(new AssetKey(1L, TRY_ASSET_NAME), sellingAsset));
         doNothing().when(customerService).validateUserAuthenticated(anyString(), any(Authentication.class));
 
         orderService.deleteOrder(orderId, authentication);
 
         assertEquals(OrderStatus.CANCELLED, order.getStatus());
+        assertEquals(10000, sellingAsset.getUsableSize());
+        verify(matchingEngine, times(1)).remove(order);
         verify(orderRepository, times(1)).save(order);
-        verify(assetService, times(1)).saveAsset(sellingAsset);
+        verify(assetService, times(1)).saveAsset(sellingAsset, AssetMutationType.RELEASE);
+        verify(customerEvents, times(1)).orderChanged(order);
+    }
+
+    @Test
+    void deleteOrder_ShouldLockBookBeforeOrderAndAssetRows() {
+        Order order = new Order(1L, "AAPL", OrderSide.SELL, 1000, 10, OrderStatus.PENDING);
+        order.setId(1L);
+        Asset sellingAsset = new Asset(1L, "AAPL", 10, 0);
+
+        when(orderRepository.findAssetNameById(1L)).thenReturn(Optional.of("AAPL"));
+        when(orderRepository.findByIdAndStatus(1L, OrderStatus.PENDING)).thenReturn(Optional.of(order));
+        when(customerService.getCustomer(1L)).thenReturn(new Customer("testUser", "password"));
+        when(assetService.getAssetsWithLock(List.of(new AssetKey(1L, "AAPL"))))
+                .thenReturn(Map.of(new AssetKey(1L, "AAPL"), sellingAsset));
+
+        orderService.deleteOrder(1L, authentication);
+
+        InOrder lockOrder = inOrder(matchingEngine, orderRepository, assetService);
+        lockOrder.verify(matchingEngine).lockBooks(List.of("AAPL"));
+        lockOrder.verify(orderRepository).findByIdAndStatus(1L, OrderStatus.PENDING);
+        lockOrder.verify(assetService).getAssetsWithLock(List.of(new AssetKey(1L, "AAPL")));
     }
 
     @Test
@@ -156,24 +344,28 @@ class OrderServiceTest {
         order.setId(orderId);
         order.setOrderSide(OrderSide.BUY);
         order.setAssetName("Asset");
-        order.setPrize(100.0);
-        order.setSize(10.0);
+        order.setPrize(10000);
+        order.setSize(10);
         order.setStatus(OrderStatus.PENDING);
 
-        Asset sellingAsset = new Asset(order.getCustomerId(), TRY_ASSET_NAME, 1000.0, 1000.0);
-        Asset buyingAsset = new Asset(order.getCustomerId(), order.getAssetName(), 0.0, 0.0);
+        Asset sellingAsset = new Asset(order.getCustomerId(), TRY_ASSET_NAME, 100000, 0);
+        Asset buyingAsset = new Asset(order.getCustomerId(), order.getAssetName(), 0, 0);
 
         when(orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING)).thenReturn(Optional.of(order));
-        when(assetService.getAssetWithLock(order.getCustomerId(), TRY_ASSET_NAME)).thenReturn(sellingAsset);
-        when(assetService.getAssetWithLock(order.getCustomerId(), order.getAssetName())).thenReturn(buyingAsset);
-        when(assetService.saveAsset(any(Asset.class))).thenReturn(buyingAsset);
+        AssetKey sellingAssetKey = new AssetKey(order.getCustomerId(), TRY_ASSET_NAME);
+        AssetKey buyingAssetKey = new AssetKey(order.getCustomerId(), order.getAssetName());
+        when(assetService.getAssetsWithLock(List.of(sellingAssetKey, buyingAssetKey)))
+                .thenReturn(Map.of(sellingAssetKey, sellingAsset, buyingAssetKey, buyingAsset));
 
         orderService.matchOrder(orderId);
 
         assertEquals(OrderStatus.MATCHED, order.getStatus());
+        assertEquals(0, sellingAsset.getSize());
+        assertEquals(10, buyingAsset.getSize());
+        verify(matchingEngine, times(1)).remove(order);
         verify(orderRepository, times(1)).save(order);
-        verify(assetService, times(1)).saveAsset(sellingAsset);
-        verify(assetService, times(1)).saveAsset(buyingAsset);
+        verify(assetService, times(1)).saveAsset(sellingAsset, AssetMutationType.SETTLE);
+        verify(assetService, times(1)).saveAsset(buyingAsset, AssetMutationType.SETTLE);
     }
 
     @Test
@@ -192,15 +384,111 @@ class OrderServiceTest {
         order.setId(orderId);
         order.setOrderSide(OrderSide.SELL);
         order.setAssetName("Asset");
-        order.setPrize(100.0);
-        order.setSize(10.0);
+        order.setPrize(10000);
+        order.setSize(10);
         order.setStatus(OrderStatus.PENDING);
 
-        Asset sellingAsset = new Asset(order.getCustomerId(), order.getAssetName(), 5.0, 5.0);
+        Asset sellingAsset = new Asset(order.getCustomerId(), order.getAssetName(), 5, 5);
 
         when(orderRepository.findByIdAndStatus(orderId, OrderStatus.PENDING)).thenReturn(Optional.of(order));
-        when(assetService.getAssetWithLock(order.getCustomerId(), order.getAssetName())).thenReturn(sellingAsset);
+        AssetKey sellingAssetKey = new AssetKey(order.getCustomerId(), order.getAssetName());
+        AssetKey buyingAssetKey = new AssetKey(order.getCustomerId(), TRY_ASSET_NAME);
+        when(assetService.getAssetsWithLock(List.of(sellingAssetKey, buyingAssetKey)))
+                .thenReturn(Map.of(sellingAssetKey, sellingAsset,
+                        buyingAssetKey, new Asset(order.getCustomerId(), TRY_ASSET_NAME, 0, 0)));
 
         assertThrows(AssetUsableSizeNotEnoughException.class, () -> orderService.matchOrder(orderId));
     }
+
+    private static Order pendingOrder(long id, long customerId, OrderSide side, String assetName, long prize, long size) {
+        Order order = new Order(customerId, assetName, side, prize, size, OrderStatus.PENDING);
+        order.setId(id);
+        return order;
+    }
+
+    @Test
+    void cancelOrders_ShouldReleaseEveryAssetOnce_AndUpdateStatusesTogether() {
+        Order first = pendingOrder(1L, 1L, OrderSide.BUY, "AAPL", 10000, 1);
+        Order second = pendingOrder(2L, 1L, OrderSide.BUY, "MSFT", 5000, 2);
+        Asset tryAsset = new Asset(1L, TRY_ASSET_NAME, 100000, 80000);
+
+        when(orderRepository.findForUpdate(List.of(1L, 2L, 3L), OrderStatus.PENDING)).thenReturn(List.of(first, second));
+        when(assetService.getAssetsWithLock(Set.of(new AssetKey(1L, TRY_ASSET_NAME))))
+                .thenReturn(Map.of(new AssetKey(1L, TRY_ASSET_NAME), tryAsset));
+        when(orderRepository.updateStatus(List.of(1L, 2L), OrderStatus.PENDING, OrderStatus.CANCELLED)).thenReturn(2);
+
+        List<BulkOrderResultDTO> results = orderService.cancelOrders(List.of(1L, 2L, 3L));
+
+        assertEquals(100000, tryAsset.getUsableSize());
+        assertTrue(results.get(0).accepted);
+        assertTrue(results.get(1).accepted);
+        assertFalse(results.get(2).accepted);
+        verify(assetService, times(1)).saveAsset(tryAsset, AssetMutationType.RELEASE);
+        verify(matchingEngine, times(1)).removeAll(List.of(first, second));
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(customerEvents, times(1)).orderChanged(first, OrderStatus.CANCELLED);
+        verify(customerEvents, times(1)).orderChanged(second, OrderStatus.CANCELLED);
+    }
+
+    @Test
+    void matchOrders_ShouldRejectOrder_WhenSellingAssetIsNotEnough() {
+        Order buy = pendingOrder(1L, 1L, OrderSide.BUY, "AAPL", 10000, 1);
+        Order sell = pendingOrder(2L, 2L, OrderSide.SELL, "AAPL", 10000, 5);
+        Asset buyerTry = new Asset(1L, TRY_ASSET_NAME, 10000, 0);
+        Asset buyerStock = new Asset(1L, "AAPL", 0, 0);
+        Asset sellerStock = new Asset(2L, "AAPL", 3, 0);
+        Asset sellerTry = new Asset(2L, TRY_ASSET_NAME, 0, 0);
+
+        when(orderRepository.findForUpdate(List.of(1L, 2L), OrderStatus.PENDING)).thenReturn(List.of(buy, sell));
+        when(assetService.getAssetsWithLock(anyCollection())).thenReturn(Map.of(
+                new AssetKey(1L, TRY_ASSET_NAME), buyerTry, new AssetKey(1L, "AAPL"), buyerStock,
+                new AssetKey(2L, "AAPL"), sellerStock, new AssetKey(2L, TRY_ASSET_NAME), sellerTry));
+        when(orderRepository.updateStatus(List.of(1L), OrderStatus.PENDING, OrderStatus.MATCHED)).thenReturn(1);
+
+        List<BulkOrderResultDTO> results = orderService.matchOrders(List.of(1L, 2L));
+
+        assertEquals(OrderStatus.MATCHED, results.get(0).status);
+        assertEquals("Insufficient Asset Usable Size", results.get(1).error);
+        assertEquals(0, buyerTry.getSize());
+        assertEquals(1, buyerStock.getSize());
+        assertEquals(3, sellerStock.getSize());
+        verify(assetService, never()).saveAsset(sellerStock, AssetMutationType.SETTLE);
+        verify(matchingEngine, times(1)).removeAll(List.of(buy));
+    }
+
+    @Test
+    void expireOrders_ShouldReleaseSummedReservationsPerAsset_WhenOrdersExpired() {
+        Instant now = Instant.now();
+        when(orderRepository.findExpiredIds(OrderStatus.PENDING, now, PageRequest.of(0, 10)))
+                .thenReturn(List.of(1L, 2L, 3L, 4L));
+        when(orderRepository.findAssetNames(List.of(1L, 2L, 3L, 4L))).thenReturn(List.of("AAPL", "MSFT"));
+        when(orderRepository.updateStatus(List.of(1L, 2L, 3L, 4L), OrderStatus.PENDING, OrderStatus.EXPIRED))
+                .thenReturn(3);
+        when(orderRepository.findReservations(List.of(1L, 2L, 3L, 4L), OrderStatus.EXPIRED)).thenReturn(List.of(
+                new OrderReservation(1L, 1L, "AAPL", OrderSide.BUY, 10050, 3),
+                new OrderReservation(2L, 1L, "MSFT", OrderSide.BUY, 5000, 2),
+                new OrderReservation(3L, 2L, "AAPL", OrderSide.SELL, 10000, 7)));
+
+        int scanned = orderService.expireOrders(now, 10);
+
+        assertEquals(4, scanned);
+        verify(assetService, times(1)).releaseAsset(1L, TRY_ASSET_NAME, 40150);
+        verify(assetService, times(1)).releaseAsset(2L, "AAPL", 7);
+        InOrder lockOrder = inOrder(matchingEngine, orderRepository);
+        lockOrder.verify(matchingEngine).lockBooks(List.of("AAPL", "MSFT"));
+        lockOrder.verify(orderRepository).updateStatus(List.of(1L, 2L, 3L, 4L), OrderStatus.PENDING,
+                OrderStatus.EXPIRED);
+        verify(matchingEngine, times(1)).removeAll(Map.of("AAPL", List.of(1L, 3L), "MSFT", List.of(2L)));
+        verify(orderRepository, never()).findForUpdate(anyCollection(), any(OrderStatus.class));
+    }
+
+    @Test
+    void expireOrders_ShouldDoNothing_WhenNoOrderExpired() {
+        Instant now = Instant.now();
+        when(orderRepository.findExpiredIds(OrderStatus.PENDING, now, PageRequest.of(0, 10))).thenReturn(List.of());
+
+        assertEquals(0, orderService.expireOrders(now, 10));
+        verify(orderRepository, never()).updateStatus(anyCollection(), any(OrderStatus.class), any(OrderStatus.class));
+        verify(assetService, never()).releaseAsset(anyLong(), anyString(), anyLong());
+    }
 }
@@ -0,0 +1,117 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.exception.AssetExecutorUnavailableException;
+import com.seckin.stockmanager.exception.AssetUsableSizeNotEnoughException;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.AssetMutationType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ShardedAssetCommandExecutorTest {
+
+    @Mock
+    private AssetService assetService;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ShardedAssetCommandExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = new ShardedAssetCommandExecutor(assetService, customerService,
+                new AssetScales(), transactionManager, 2, 16, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void depositMoney_ShouldIncreaseUsableSizeAndSize_WhenAssetExists() {
+        Asset tryAsset = new Asset(1L, TRY_ASSET_NAME, 10000, 10000);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetService.getAsset(1L, TRY_ASSET_NAME)).thenReturn(tryAsset);
+
+        executor.depositMoney("testUser", new BigDecimal("50.00"));
+
+        assertEquals(15000, tryAsset.getSize());
+        assertEquals(15000, tryAsset.getUsableSize());
+        verify(assetService, times(1)).saveAsset(tryAsset, AssetMutationType.DEPOSIT);
+        verify(assetService, never()).getAssetWithLock(anyLong(), anyString());
+    }
+
+    @Test
+    void withdrawMoney_ShouldThrowException_WhenInsufficientUsableSize() {
+        Asset tryAsset = new Asset(1L, TRY_ASSET_NAME, 10000, 10000);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetService.getAsset(1L, TRY_ASSET_NAME)).thenReturn(tryAsset);
+
+        assertThrows(AssetUsableSizeNotEnoughException.class,
+                () -> executor.withdrawMoney("testUser", new BigDecimal("150.00"), "TR000000000000000000000000"));
+        assertEquals(10000, tryAsset.getUsableSize());
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+        verify(assetService, never()).sendAmountToIban(anyLong(), any(BigDecimal.class), anyString());
+    }
+
+    @Test
+    void depositMoney_ShouldFail_WhenExecutorIsShutDown() {
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+
+        executor.shutdown();
+
+        assertThrows(AssetExecutorUnavailableException.class,
+                () -> executor.depositMoney("testUser", new BigDecimal("50.00")));
+        verify(assetService, never()).saveAsset(any(Asset.class), any(AssetMutationType.class));
+    }
+
+    @Test
+    void depositMoney_ShouldGiveUpOnCommand_WhenShardDoesNotStartItInTime() throws InterruptedException {
+        executor.shutdown();
+        executor = new ShardedAssetCommandExecutor(assetService, customerService,
+                new AssetScales(), transactionManager, 1, 1, Duration.ofMillis(50));
+        Asset tryAsset = new Asset(1L, TRY_ASSET_NAME, 10000, 10000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetService.getAsset(1L, TRY_ASSET_NAME)).thenAnswer(it -> {
+            started.countDown();
+            release.await();
+            return tryAsset;
+        });
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() ->
+                executor.depositMoney("testUser", new BigDecimal("50.00")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertThrows(AssetExecutorUnavailableException.class,
+                () -> executor.depositMoney("testUser", new BigDecimal("20.00")));
+        release.countDown();
+        first.join();
+
+        // the first deposit waited for its running batch, the second one is never applied
+        assertEquals(15000, tryAsset.getSize());
+        verify(assetService, times(1)).saveAsset(tryAsset, AssetMutationType.DEPOSIT);
+    }
+}
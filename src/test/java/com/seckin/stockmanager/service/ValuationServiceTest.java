@@ -0,0 +1,97 @@
+package com.seckin.stockmanager.service;
+
+import com.seckin.stockmanager.dto.CustomerValuationDTO;
+import com.seckin.stockmanager.dto.PortfolioValuationDTO;
+import com.seckin.stockmanager.model.Asset;
+import com.seckin.stockmanager.model.TradeExecutedEvent;
+import com.seckin.stockmanager.repository.AssetRepository;
+import com.seckin.stockmanager.repository.CandleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static com.seckin.stockmanager.service.Constants.TRY_ASSET_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ValuationServiceTest {
+
+    @Mock
+    private AssetRepository assetRepository;
+
+    @Mock
+    private CustomerService customerService;
+
+    @Mock
+    private CandleRepository candleRepository;
+
+    private LastPriceCache lastPriceCache;
+
+    private ValuationService valuationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        lastPriceCache = new LastPriceCache(candleRepository);
+        valuationService = new ValuationService(assetRepository, customerService, lastPriceCache,
+                new AssetScales(), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        valuationService.shutdown();
+    }
+
+    @Test
+    void getValuation_ShouldValueAssetsWithLastPrize_AndSkipUntradedAssets() {
+        when(customerService.getCustomerId("testUser")).thenReturn(1L);
+        when(assetRepository.findHoldings(1L, 1L)).thenReturn(List.of(
+                new Asset(1L, TRY_ASSET_NAME, 10050, 10050),
+                new Asset(1L, "AAPL", 3, 1),
+                new Asset(1L, "MSFT", 5, 5)));
+        lastPriceCache.onTradeExecuted(new TradeExecutedEvent("AAPL", 15025, 1, Instant.now()));
+
+        PortfolioValuationDTO valuation = valuationService.getValuation("testUser");
+
+        assertEquals(new BigDecimal("551.25"), valuation.totalValue);
+        assertEquals(new BigDecimal("100.50"), valuation.assets.get(0).value);
+        assertEquals(new BigDecimal("150.25"), valuation.assets.get(1).prize);
+        assertEquals(new BigDecimal("450.75"), valuation.assets.get(1).value);
+        assertNull(valuation.assets.get(2).prize);
+        assertNull(valuation.assets.get(2).value);
+    }
+
+    @Test
+    void getValuations_ShouldValueEveryCustomerRange() {
+        when(assetRepository.findMinCustomerId()).thenReturn(1L);
+        when(assetRepository.findMaxCustomerId()).thenReturn(5L);
+        when(assetRepository.findHoldings(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long from = invocation.getArgument(0);
+            long to = invocation.getArgument(1);
+            return LongStream.rangeClosed(from, to)
+                    .mapToObj(customerId -> new Asset(customerId, TRY_ASSET_NAME, customerId * 100, 0))
+                    .toList();
+        });
+
+        List<CustomerValuationDTO> valuations = valuationService.getValuations();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), valuations.stream().map(it -> it.customerId).toList());
+        assertEquals(new BigDecimal("5.00"), valuations.get(4).totalValue);
+        verify(assetRepository, atLeast(3)).findHoldings(anyLong(), anyLong());
+        verify(assetRepository, never()).findHoldings(1L, 5L);
+    }
+
+    @Test
+    void getValuations_ShouldReturnEmptyList_WhenThereAreNoAssets() {
+        when(assetRepository.findMinCustomerId()).thenReturn(null);
+
+        assertTrue(valuationService.getValuations().isEmpty());
+    }
+}